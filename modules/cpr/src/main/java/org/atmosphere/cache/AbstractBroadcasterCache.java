@@ -43,7 +43,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * @author Paul Khodchenkov
  * @author Jeanfrancois Arcand
  */
-public abstract class AbstractBroadcasterCache implements BroadcasterCache {
+public abstract class AbstractBroadcasterCache implements SequencedBroadcasterCache {
     private final Logger logger = LoggerFactory.getLogger(AbstractBroadcasterCache.class);
 
     protected final List<CacheMessage> messages = new LinkedList<CacheMessage>();
@@ -139,6 +139,28 @@ public abstract class AbstractBroadcasterCache implements BroadcasterCache {
         return result;
     }
 
+    @Override
+    public List<Object> retrieveFromCache(String broadcasterId, String uuid, String lastMessageId) {
+        if (BroadcastMessage.sequenceOf(lastMessageId) == -1) {
+            return retrieveFromCache(broadcasterId, uuid);
+        }
+
+        List<Object> result = new ArrayList<Object>();
+        readWriteLock.readLock().lock();
+        try {
+            for (CacheMessage cacheMessage : messages) {
+                if (BroadcastMessage.isAfter(cacheMessage.getId(), lastMessageId)) {
+                    result.add(cacheMessage.getMessage());
+                }
+            }
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+
+        logger.trace("Retrieved messages {} after {}", result, lastMessageId);
+        return result;
+    }
+
     /**
      * Set the delay between cache purges.
      *
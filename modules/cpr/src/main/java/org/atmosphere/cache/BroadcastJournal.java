@@ -0,0 +1,398 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append only journal of the messages broadcasted by a {@link org.atmosphere.cpr.Broadcaster}, stored inside a
+ * directory as a sequence of segment files. Every message gets a sequence number, strictly increasing across
+ * restarts, and can be read back using {@link #read(long, int)}. Only Strings and byte arrays are stored: any other message is
+ * stored as its toString value, so reading a journal never instantiates arbitrary classes.
+ * <p/>
+ * Messages are appended sequentially to the last segment through a write buffer, which is written and forced to disk
+ * by {@link #sync()}. The journal doesn't sync by itself: it is up to the caller to invoke {@link #sync()} after every
+ * append or periodically, trading durability of the last messages for throughput. A new segment is started when the
+ * current one exceeds the segment size, and the oldest segments are deleted when there are more than the maximum
+ * number of segments. Segments are read using memory mapping.
+ * <p/>
+ * A record is written as:
+ * <blockquote><pre>
+ *     int length | long sequence | byte type | int crc32 | byte[length] payload
+ * </pre></blockquote>
+ * A sequence number allocated by {@link #reserve()} is stored as a record without payload, so it isn't allocated again
+ * after a restart. When opened, the journal truncates the last segment after its last complete record, discarding a
+ * record torn by a crash.
+ * <p/>
+ * Sequence numbers restart at 1 when the journal is created again, e.g after its directory has been deleted, hence
+ * every journal has an {@link #epoch()}, stored with its segments, to tell its sequence numbers from another one's.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class BroadcastJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastJournal.class);
+
+    private static final String SUFFIX = ".journal";
+    private static final String EPOCH = "epoch";
+    private static final int HEADER = 4 + 8 + 1 + 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte STRING = 0;
+    private static final byte BYTES = 1;
+    private static final byte RESERVED = 2;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final File directory;
+    private final long segmentSize;
+    private final int maxSegments;
+    // The first sequence number of every segment, oldest first.
+    private final LinkedList<Long> segments = new LinkedList<Long>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final String epoch;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long position;
+    private long sequence;
+    private boolean dirty;
+    private boolean closed;
+
+    /**
+     * Open, or create, a journal.
+     *
+     * @param directory   the directory containing the segments.
+     * @param segmentSize the size, in bytes, after which a new segment is started.
+     * @param maxSegments the maximum number of segments kept.
+     * @throws IOException
+     */
+    public BroadcastJournal(File directory, long segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(1, maxSegments);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.getName().endsWith(SUFFIX);
+            }
+        });
+        long[] firsts = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            String n = files[i].getName();
+            firsts[i] = Long.parseLong(n.substring(0, n.length() - SUFFIX.length()));
+        }
+        Arrays.sort(firsts);
+        for (long f : firsts) {
+            segments.add(f);
+        }
+
+        if (segments.isEmpty()) {
+            epoch = createEpoch();
+            sequence = 0;
+            open(1);
+        } else {
+            epoch = readEpoch();
+            recover(segments.getLast());
+        }
+    }
+
+    /**
+     * Append a message.
+     *
+     * @param message a String or a byte[]. Other objects are stored using their toString value.
+     * @return the sequence number of the message.
+     * @throws IOException
+     */
+    public synchronized long append(Object message) throws IOException {
+        if (message instanceof byte[]) {
+            return write(BYTES, (byte[]) message);
+        }
+        return write(STRING, String.valueOf(message).getBytes("UTF-8"));
+    }
+
+    /**
+     * Allocate a sequence number without storing any message.
+     *
+     * @return a sequence number.
+     * @throws IOException
+     */
+    public synchronized long reserve() throws IOException {
+        return write(RESERVED, EMPTY);
+    }
+
+    private long write(byte type, byte[] payload) throws IOException {
+        checkOpen();
+
+        long size = position + buffer.position();
+        if (size > 0 && size + HEADER + payload.length > segmentSize) {
+            roll();
+        }
+
+        long seq = ++sequence;
+        crc.reset();
+        crc.update(payload);
+
+        if (buffer.remaining() < HEADER) {
+            flush();
+        }
+        buffer.putInt(payload.length).putLong(seq).put(type).putInt((int) crc.getValue());
+        if (payload.length <= buffer.remaining()) {
+            buffer.put(payload);
+        } else {
+            flush();
+            if (payload.length <= buffer.capacity()) {
+                buffer.put(payload);
+            } else {
+                channel.write(ByteBuffer.wrap(payload), position);
+                position += payload.length;
+            }
+        }
+        dirty = true;
+        return seq;
+    }
+
+    /**
+     * Return the last allocated sequence number.
+     *
+     * @return the last allocated sequence number.
+     */
+    public synchronized long lastSequence() {
+        return sequence;
+    }
+
+    /**
+     * Write the buffered messages and force them to disk.
+     *
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        if (closed || !dirty) return;
+
+        flush();
+        channel.force(false);
+        dirty = false;
+    }
+
+    /**
+     * Read the stored messages with a sequence number greater than the given one, oldest first. At most the
+     * max last allocated sequence numbers are read, whatever the given one.
+     *
+     * @param after a sequence number, 0 to read every stored message.
+     * @param max   the maximum number of messages to read.
+     * @return the messages.
+     * @throws IOException
+     */
+    public synchronized List<Object> read(long after, int max) throws IOException {
+        checkOpen();
+
+        List<Object> result = new ArrayList<Object>();
+        after = Math.max(after, sequence - max);
+        if (after >= sequence) return result;
+
+        flush();
+        Long[] firsts = segments.toArray(new Long[segments.size()]);
+        for (int i = 0; i < firsts.length; i++) {
+            // Skip the segments whose messages are all older than the requested one.
+            if (i + 1 < firsts.length && firsts[i + 1] <= after + 1) continue;
+
+            boolean current = i == firsts.length - 1;
+            RandomAccessFile f = current ? file : new RandomAccessFile(segment(firsts[i]), "r");
+            try {
+                FileChannel c = f.getChannel();
+                long size = current ? position : c.size();
+                if (size == 0) continue;
+
+                MappedByteBuffer m = c.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                while (m.remaining() >= HEADER) {
+                    int length = m.getInt();
+                    long seq = m.getLong();
+                    byte type = m.get();
+                    m.getInt();
+                    if (length < 0 || length > m.remaining()) break;
+
+                    if (seq <= after || type == RESERVED) {
+                        m.position(m.position() + length);
+                        continue;
+                    }
+                    byte[] payload = new byte[length];
+                    m.get(payload);
+                    result.add(decode(type, payload));
+                }
+            } finally {
+                if (!current) {
+                    f.close();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sync and close the journal.
+     */
+    public synchronized void close() {
+        if (closed) return;
+
+        try {
+            sync();
+            file.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close journal {}", directory, e);
+        }
+        closed = true;
+    }
+
+    public File directory() {
+        return directory;
+    }
+
+    /**
+     * Return the epoch of the journal, set when it is created.
+     *
+     * @return the epoch, without '-'.
+     */
+    public String epoch() {
+        return epoch;
+    }
+
+    private String createEpoch() throws IOException {
+        String e = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, EPOCH)));
+        try {
+            out.writeUTF(e);
+        } finally {
+            out.close();
+        }
+        return e;
+    }
+
+    private String readEpoch() throws IOException {
+        File f = new File(directory, EPOCH);
+        if (!f.exists()) {
+            return createEpoch();
+        }
+
+        DataInputStream in = new DataInputStream(new FileInputStream(f));
+        try {
+            return in.readUTF();
+        } finally {
+            in.close();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Journal " + directory + " is closed");
+        }
+    }
+
+    private File segment(long first) {
+        return new File(directory, String.format("%020d", first) + SUFFIX);
+    }
+
+    private void open(long first) throws IOException {
+        if (segments.isEmpty() || segments.getLast() != first) {
+            segments.add(first);
+        }
+        file = new RandomAccessFile(segment(first), "rw");
+        channel = file.getChannel();
+        position = channel.size();
+    }
+
+    private void roll() throws IOException {
+        sync();
+        file.close();
+        open(sequence + 1);
+
+        while (segments.size() > maxSegments) {
+            File f = segment(segments.removeFirst());
+            if (!f.delete()) {
+                logger.warn("Unable to delete journal segment {}", f);
+            }
+        }
+    }
+
+    /**
+     * Find the last complete record of a segment, truncate what follows it and resume the sequence from there.
+     */
+    private void recover(long first) throws IOException {
+        open(first);
+        sequence = first - 1;
+
+        long valid = 0;
+        if (position > 0) {
+            MappedByteBuffer m = channel.map(FileChannel.MapMode.READ_ONLY, 0, position);
+            while (m.remaining() >= HEADER) {
+                int length = m.getInt();
+                long seq = m.getLong();
+                m.get();
+                int checksum = m.getInt();
+                if (length < 0 || length > m.remaining()) break;
+
+                byte[] payload = new byte[length];
+                m.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) break;
+
+                sequence = seq;
+                valid = m.position();
+            }
+        }
+
+        if (valid != position) {
+            logger.warn("Truncating journal segment {} from {} to {} bytes", segment(first), position, valid);
+            channel.truncate(valid);
+            position = valid;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+
+    private static Object decode(byte type, byte[] payload) throws IOException {
+        return type == BYTES ? payload : new String(payload, "UTF-8");
+    }
+}
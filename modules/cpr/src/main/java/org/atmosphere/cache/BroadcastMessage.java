@@ -15,15 +15,20 @@
  */
 package org.atmosphere.cache;
 
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A wrapper around an object passed to {@link org.atmosphere.cpr.Broadcaster#broadcast(Object)}
+ * A wrapper around an object passed to {@link org.atmosphere.cpr.Broadcaster#broadcast(Object)}. When no id is
+ * supplied, a JVM wide sequence number is used as the message's id. Ids are prefixed by an epoch, the time this class
+ * was loaded, as the sequence restarts with the JVM: ids of different epochs can't be ordered.
  *
  * @author Jeanfrancois Arcand
  */
 public final class BroadcastMessage {
 
+    private final static AtomicLong sequence = new AtomicLong();
+    private final static String EPOCH = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
     public final String id;
     public final Object message;
 
@@ -33,6 +38,75 @@ public final class BroadcastMessage {
     }
 
     public BroadcastMessage(Object message) {
-        this(UUID.randomUUID().toString(), message);
+        this(nextId(), message);
+    }
+
+    /**
+     * Return a new message id, unique inside this JVM.
+     *
+     * @return a new message id
+     */
+    public static String nextId() {
+        return idOf(EPOCH, sequence.incrementAndGet());
+    }
+
+    /**
+     * Return the epoch of the ids generated by {@link #nextId()}.
+     *
+     * @return the epoch
+     */
+    public static String epoch() {
+        return EPOCH;
+    }
+
+    /**
+     * Return the id of a sequence number, as understood by {@link #epochOf(String)} and {@link #sequenceOf(String)}.
+     *
+     * @param epoch    the epoch of the sequence, without '-'
+     * @param sequence a sequence number
+     * @return the message id
+     */
+    public static String idOf(String epoch, long sequence) {
+        return epoch + '-' + Long.toString(sequence, Character.MAX_RADIX);
+    }
+
+    /**
+     * Return the epoch of an id generated by {@link #idOf(String, long)}.
+     *
+     * @param id a message id
+     * @return the epoch, or null if the id wasn't generated by {@link #idOf(String, long)}
+     */
+    public static String epochOf(String id) {
+        return sequenceOf(id) == -1 ? null : id.substring(0, id.indexOf('-'));
+    }
+
+    /**
+     * Return the sequence number of an id generated by {@link #idOf(String, long)}.
+     *
+     * @param id a message id
+     * @return the sequence number, or -1 if the id wasn't generated by {@link #idOf(String, long)}
+     */
+    public static long sequenceOf(String id) {
+        int i = id == null ? -1 : id.indexOf('-');
+        if (i == -1) return -1;
+        try {
+            long seq = Long.parseLong(id.substring(i + 1), Character.MAX_RADIX);
+            return seq < 0 ? -1 : seq;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Tell if a message has to be replayed to a client whose last received message is lastId, that is if its id
+     * follows lastId. An id of another epoch, e.g generated before a restart, can't be compared and is replayed.
+     *
+     * @param id     a message id
+     * @param lastId the id of the last message received by the client, as understood by {@link #sequenceOf(String)}
+     * @return true if the message follows lastId
+     */
+    public static boolean isAfter(String id, String lastId) {
+        long seq = sequenceOf(id);
+        return seq == -1 || !epochOf(id).equals(epochOf(lastId)) || seq > sequenceOf(lastId);
     }
 }
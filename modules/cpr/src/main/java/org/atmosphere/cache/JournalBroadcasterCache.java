@@ -0,0 +1,246 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cache;
+
+import org.atmosphere.cpr.ApplicationConfig;
+import org.atmosphere.cpr.AtmosphereConfig;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.BroadcasterConfig;
+import org.atmosphere.cpr.BroadcasterFactory;
+import org.atmosphere.cpr.BroadcasterListener;
+import org.atmosphere.cpr.BroadcasterListenerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link UUIDBroadcasterCache} that also appends every broadcasted message to a {@link BroadcastJournal} on the
+ * local disk, one per {@link org.atmosphere.cpr.Broadcaster}. Message ids are the journal's sequence numbers, which
+ * survive a restart: a client reconnecting with the id of the last message it received, e.g the Server Side Events
+ * {@link org.atmosphere.cpr.HeaderConfig#LAST_EVENT_ID}, and unknown to the in memory cache because the node has been
+ * restarted or the client has been invalidated, gets the missed messages replayed from the journal.
+ * <p/>
+ * The journal is forced to disk every {@link ApplicationConfig#JOURNALBROADCASTERCACHE_SYNC_INTERVAL} milliseconds,
+ * hence a crash loses at most the messages broadcasted during that interval. A value of 0 forces every message to
+ * disk before it is delivered, at a significant throughput cost.
+ * <p/>
+ * The journals are stored inside {@link ApplicationConfig#JOURNALBROADCASTERCACHE_DIRECTORY}, which must be set. Only
+ * String and byte[] messages are journaled as is, other messages are journaled as their toString value. The journal of
+ * a Broadcaster is closed when the Broadcaster is destroyed, and reopened if the Broadcaster is created again. At most
+ * {@link ApplicationConfig#JOURNALBROADCASTERCACHE_MAX_REPLAY} messages are replayed to a client, whatever the id it
+ * sends.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class JournalBroadcasterCache extends UUIDBroadcasterCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(JournalBroadcasterCache.class);
+
+    private final Map<String, BroadcastJournal> journals = new ConcurrentHashMap<String, BroadcastJournal>();
+    private File directory;
+    private long segmentSize = 64 * 1024 * 1024;
+    private int maxSegments = 16;
+    private long syncInterval = 100;
+    private int maxReplay = 1000;
+    private ScheduledFuture<?> syncFuture;
+    private BroadcasterFactory factory;
+    private final BroadcasterListener onDestroy = new BroadcasterListenerAdapter() {
+        @Override
+        public void onPreDestroy(Broadcaster b) {
+            close(b.getID());
+        }
+    };
+
+    @Override
+    public void configure(BroadcasterConfig config) {
+        super.configure(config);
+
+        AtmosphereConfig c = config.getAtmosphereConfig();
+        String s = c.getInitParameter(ApplicationConfig.JOURNALBROADCASTERCACHE_DIRECTORY);
+        if (s != null) {
+            directory = new File(s);
+        } else if (directory == null) {
+            throw new IllegalStateException(ApplicationConfig.JOURNALBROADCASTERCACHE_DIRECTORY + " must be set");
+        }
+        segmentSize = Long.valueOf(c.getInitParameter(ApplicationConfig.JOURNALBROADCASTERCACHE_SEGMENT_SIZE, String.valueOf(segmentSize)));
+        maxSegments = Integer.valueOf(c.getInitParameter(ApplicationConfig.JOURNALBROADCASTERCACHE_MAX_SEGMENTS, String.valueOf(maxSegments)));
+        syncInterval = Long.valueOf(c.getInitParameter(ApplicationConfig.JOURNALBROADCASTERCACHE_SYNC_INTERVAL, String.valueOf(syncInterval)));
+        maxReplay = Integer.valueOf(c.getInitParameter(ApplicationConfig.JOURNALBROADCASTERCACHE_MAX_REPLAY, String.valueOf(maxReplay)));
+
+        // Broadcasters created from now on notify this cache when they get destroyed.
+        factory = c.getBroadcasterFactory();
+        if (factory != null) {
+            factory.addBroadcasterListener(onDestroy);
+        }
+    }
+
+    @Override
+    public void start() {
+        super.start();
+
+        if (syncInterval > 0 && syncFuture == null) {
+            syncFuture = taskScheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    sync();
+                }
+            }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        if (syncFuture != null) {
+            syncFuture.cancel(false);
+            syncFuture = null;
+        }
+
+        if (factory != null) {
+            factory.removeBroadcasterListener(onDestroy);
+        }
+
+        for (BroadcastJournal j : journals.values()) {
+            j.close();
+        }
+        journals.clear();
+        super.cleanup();
+    }
+
+    @Override
+    protected String nextId(String broadcasterId, String uuid, BroadcastMessage message) {
+        try {
+            BroadcastJournal j = journal(broadcasterId);
+            // Messages cached for a single AtmosphereResource aren't replayed to others, only their id is journaled.
+            long seq = uuid.equals(NULL) ? j.append(message.message) : j.reserve();
+            if (syncInterval <= 0) {
+                j.sync();
+            }
+            return BroadcastMessage.idOf(j.epoch(), seq);
+        } catch (IOException e) {
+            // The in memory id has its own epoch, hence isn't mistaken for a journal's one.
+            logger.warn("Unable to journal message {}", message.message, e);
+            return super.nextId(broadcasterId, uuid, message);
+        }
+    }
+
+    @Override
+    public List<Object> retrieveFromCache(String broadcasterId, String uuid, String lastMessageId) {
+        long last = BroadcastMessage.sequenceOf(lastMessageId);
+        // In memory ids are those issued while the journal was failing.
+        if (last == -1 || activeClients().containsKey(uuid) || BroadcastMessage.epochOf(lastMessageId).equals(BroadcastMessage.epoch())) {
+            return super.retrieveFromCache(broadcasterId, uuid, lastMessageId);
+        }
+
+        cacheCandidate(broadcasterId, uuid);
+        try {
+            BroadcastJournal j = journal(broadcasterId);
+            String epoch = BroadcastMessage.epochOf(lastMessageId);
+            // An id of another journal can't be compared with this one's, the most recent messages are replayed.
+            List<Object> result = j.read(epoch.equals(j.epoch()) ? last : 0, maxReplay);
+            logger.trace("Replayed for AtmosphereResource {} journaled messages {} after {}", uuid, result, lastMessageId);
+            return result;
+        } catch (IOException e) {
+            logger.warn("Unable to read journal for Broadcaster {}", broadcasterId, e);
+            return emptyList;
+        }
+    }
+
+    /**
+     * Return the {@link BroadcastJournal} of a {@link org.atmosphere.cpr.Broadcaster}, opening it if needed.
+     *
+     * @param broadcasterId the {@link org.atmosphere.cpr.Broadcaster#getID()}
+     * @return the {@link BroadcastJournal}
+     * @throws IOException
+     */
+    public BroadcastJournal journal(String broadcasterId) throws IOException {
+        BroadcastJournal j = journals.get(broadcasterId);
+        if (j == null) {
+            synchronized (journals) {
+                j = journals.get(broadcasterId);
+                if (j == null) {
+                    if (directory == null) {
+                        throw new IOException(ApplicationConfig.JOURNALBROADCASTERCACHE_DIRECTORY + " must be set");
+                    }
+                    j = new BroadcastJournal(new File(directory, fileName(broadcasterId)), segmentSize, maxSegments);
+                    journals.put(broadcasterId, j);
+                }
+            }
+        }
+        return j;
+    }
+
+    /**
+     * Close the {@link BroadcastJournal} of a {@link org.atmosphere.cpr.Broadcaster}, if opened. It is opened again
+     * the next time it is used.
+     *
+     * @param broadcasterId the {@link org.atmosphere.cpr.Broadcaster#getID()}
+     */
+    public void close(String broadcasterId) {
+        BroadcastJournal j;
+        synchronized (journals) {
+            j = journals.remove(broadcasterId);
+        }
+        if (j != null) {
+            logger.trace("Closing journal of Broadcaster {}", broadcasterId);
+            j.close();
+        }
+    }
+
+    /**
+     * Force the journals to disk.
+     */
+    public void sync() {
+        for (BroadcastJournal j : journals.values()) {
+            try {
+                j.sync();
+            } catch (IOException e) {
+                logger.warn("Unable to sync journal {}", j.directory(), e);
+            }
+        }
+    }
+
+    public JournalBroadcasterCache setDirectory(File directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    public JournalBroadcasterCache setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+        return this;
+    }
+
+    public JournalBroadcasterCache setMaxReplay(int maxReplay) {
+        this.maxReplay = maxReplay;
+        return this;
+    }
+
+    private static String fileName(String broadcasterId) {
+        try {
+            return URLEncoder.encode(broadcasterId, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
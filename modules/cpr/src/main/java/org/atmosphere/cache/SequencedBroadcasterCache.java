@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cache;
+
+import org.atmosphere.cpr.BroadcasterCache;
+
+import java.util.List;
+
+/**
+ * A {@link BroadcasterCache} able to retrieve the messages following a given message id, as generated by
+ * {@link BroadcastMessage#nextId()}. This is used to replay the messages missed by a client reconnecting with the
+ * id of the last message it received, e.g the Server Side Events {@link org.atmosphere.cpr.HeaderConfig#LAST_EVENT_ID}.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public interface SequencedBroadcasterCache extends BroadcasterCache {
+
+    /**
+     * Retrieve the cached messages created after the message identified by lastMessageId.
+     *
+     * @param broadcasterId the {@link org.atmosphere.cpr.Broadcaster#getID()}
+     * @param uuid          the {@link org.atmosphere.cpr.AtmosphereResource#uuid()}
+     * @param lastMessageId the id of the last message received by the client.
+     * @return a List of messages (String).
+     */
+    List<Object> retrieveFromCache(String broadcasterId, String uuid, String lastMessageId);
+}
@@ -16,7 +16,12 @@
 
 package org.atmosphere.cache;
 
+import org.atmosphere.cpr.ApplicationConfig;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.AtmosphereResourceEvent;
+import org.atmosphere.cpr.AtmosphereResourceEventListenerAdapter;
 import org.atmosphere.cpr.AtmosphereResourceFactory;
+import org.atmosphere.cpr.BroadcasterConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,10 +29,18 @@ import javax.servlet.http.HttpSession;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Simple {@link org.atmosphere.cpr.BroadcasterCache} that use an {@link javax.servlet.http.HttpSession} to cache
  * messages.
+ * <p/>
+ * The position of a client is kept in memory while its {@link AtmosphereResource} is connected, and written to the
+ * {@link HttpSession} when the AtmosphereResource gets suspended, resumed or disconnected, or at most once every
+ * {@link ApplicationConfig#SESSIONBROADCASTERCACHE_FLUSH_INTERVAL}, so a replicated or persisted session isn't written
+ * for every cached message.
  *
  * @author Jeanfrancois Arcand
  *
@@ -37,9 +50,20 @@ public class SessionBroadcasterCache extends AbstractBroadcasterCache {
     private static final Logger logger = LoggerFactory.getLogger(SessionBroadcasterCache.class);
     private static final String ERROR_MESSAGE = "Session was null. The request has been recycled by the underlying container";
 
+    // AtmosphereResource's uuid -> the positions of the connected AtmosphereResource.
+    private final ConcurrentHashMap<String, Cursors> cursors = new ConcurrentHashMap<String, Cursors>();
+    private long flushInterval = TimeUnit.SECONDS.toNanos(1);
+
     public SessionBroadcasterCache() {
     }
 
+    @Override
+    public void configure(BroadcasterConfig config) {
+        super.configure(config);
+        flushInterval = TimeUnit.MILLISECONDS.toNanos(
+                Long.valueOf(config.getAtmosphereConfig().getInitParameter(ApplicationConfig.SESSIONBROADCASTERCACHE_FLUSH_INTERVAL, "1000")));
+    }
+
     @Override
     public CacheMessage addToCache(String broadcasterId, String uuid, BroadcastMessage message) {
         long now = System.nanoTime();
@@ -47,17 +71,9 @@ public class SessionBroadcasterCache extends AbstractBroadcasterCache {
 
         if (uuid.equals(NULL)) return cacheMessage;
 
-        try {
-            HttpSession session = AtmosphereResourceFactory.getDefault().find(uuid).session();
-            if (session == null) {
-                logger.error(ERROR_MESSAGE);
-                return cacheMessage;
-            }
-
-            session.setAttribute(broadcasterId, String.valueOf(now));
-        } catch (IllegalStateException ex) {
-            logger.trace("", ex);
-            logger.warn("The Session has been invalidated. Message will be lost.");
+        Cursors c = cursors(uuid);
+        if (c != null) {
+            c.update(broadcasterId, now);
         }
         return cacheMessage;
     }
@@ -68,6 +84,12 @@ public class SessionBroadcasterCache extends AbstractBroadcasterCache {
             throw new IllegalArgumentException("AtmosphereResource can't be null");
         }
 
+        Cursors c = cursors.get(uuid);
+        Long cursor = c != null ? c.positions.get(broadcasterId) : null;
+        if (cursor != null) {
+            return get(cursor);
+        }
+
         List<Object> result = new ArrayList<Object>();
         try {
             HttpSession session = AtmosphereResourceFactory.getDefault().find(uuid).session();
@@ -76,16 +98,111 @@ public class SessionBroadcasterCache extends AbstractBroadcasterCache {
                 return result;
             }
 
-            String cacheHeaderTimeStr = (String)session.getAttribute(broadcasterId);
-            if (cacheHeaderTimeStr == null) return result;
-            Long cacheHeaderTime = Long.valueOf(cacheHeaderTimeStr);
+            Object cacheHeaderTime = session.getAttribute(broadcasterId);
             if (cacheHeaderTime == null) return result;
 
-            return get(cacheHeaderTime);
+            // Sessions may still hold the String position written by previous versions.
+            return get(cacheHeaderTime instanceof Long ? (Long) cacheHeaderTime : Long.valueOf(cacheHeaderTime.toString()));
         } catch (IllegalStateException ex) {
             logger.trace("", ex);
             logger.warn("The Session has been invalidated. Unable to retrieve cached messages");
             return Collections.emptyList();
         }
     }
+
+    private Cursors cursors(String uuid) {
+        Cursors c = cursors.get(uuid);
+        if (c != null) return c;
+
+        AtmosphereResource r = AtmosphereResourceFactory.getDefault().find(uuid);
+        if (r == null) {
+            logger.trace("No AtmosphereResource {}", uuid);
+            return null;
+        }
+
+        HttpSession session;
+        try {
+            session = r.session();
+        } catch (IllegalStateException ex) {
+            logger.trace("", ex);
+            logger.warn("The Session has been invalidated. Message will be lost.");
+            return null;
+        }
+        if (session == null) {
+            logger.error(ERROR_MESSAGE);
+            return null;
+        }
+
+        c = new Cursors(uuid, session);
+        Cursors previous = cursors.putIfAbsent(uuid, c);
+        if (previous != null) return previous;
+
+        r.addEventListener(c);
+        return c;
+    }
+
+    /**
+     * The positions, by Broadcaster, of a connected {@link AtmosphereResource}.
+     */
+    private final class Cursors extends AtmosphereResourceEventListenerAdapter {
+
+        private final String uuid;
+        private final HttpSession session;
+        private final ConcurrentHashMap<String, Long> positions = new ConcurrentHashMap<String, Long>();
+        private volatile long lastFlush;
+
+        private Cursors(String uuid, HttpSession session) {
+            this.uuid = uuid;
+            this.session = session;
+            // System.nanoTime() has an arbitrary origin, so the first interval starts now rather than at 0.
+            this.lastFlush = System.nanoTime();
+        }
+
+        void update(String broadcasterId, long position) {
+            positions.put(broadcasterId, position);
+            if (position - lastFlush >= flushInterval) {
+                flush();
+            }
+        }
+
+        void flush() {
+            lastFlush = System.nanoTime();
+            try {
+                for (Map.Entry<String, Long> e : positions.entrySet()) {
+                    session.setAttribute(e.getKey(), e.getValue());
+                }
+            } catch (IllegalStateException ex) {
+                logger.trace("", ex);
+                logger.warn("The Session has been invalidated. Message will be lost.");
+            }
+        }
+
+        void release(AtmosphereResource r) {
+            cursors.remove(uuid, this);
+            if (r != null) {
+                r.removeEventListener(this);
+            }
+            flush();
+        }
+
+        @Override
+        public void onSuspend(AtmosphereResourceEvent event) {
+            flush();
+        }
+
+        @Override
+        public void onResume(AtmosphereResourceEvent event) {
+            release(event.getResource());
+        }
+
+        @Override
+        public void onDisconnect(AtmosphereResourceEvent event) {
+            release(event.getResource());
+        }
+
+        @Override
+        public void onClose(AtmosphereResourceEvent event) {
+            release(event.getResource());
+        }
+    }
 }
@@ -32,7 +32,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
@@ -47,7 +46,7 @@ import java.util.concurrent.TimeUnit;
  * @author Paul Khodchenkov
  * @author Jeanfrancois Arcand
  */
-public class UUIDBroadcasterCache implements BroadcasterCache {
+public class UUIDBroadcasterCache implements SequencedBroadcasterCache {
 
     private final static Logger logger = LoggerFactory.getLogger(UUIDBroadcasterCache.class);
 
@@ -146,7 +145,7 @@ public class UUIDBroadcasterCache implements BroadcasterCache {
             logger.trace("Active clients {}", activeClients());
         }
 
-        String messageId = UUID.randomUUID().toString();
+        String messageId = nextId(broadcasterId, uuid, message);
         CacheMessage cacheMessage = new CacheMessage(messageId, e, uuid);
         if (uuid.equals(NULL)) {
             //no clients are connected right now, caching message for all active clients
@@ -160,6 +159,19 @@ public class UUIDBroadcasterCache implements BroadcasterCache {
         return cacheMessage;
     }
 
+    /**
+     * Return the id of a message added to the cache. Ids must be ordered as expected by
+     * {@link BroadcastMessage#isAfter(String, String)}.
+     *
+     * @param broadcasterId the {@link org.atmosphere.cpr.Broadcaster#getID()}
+     * @param uuid          the {@link AtmosphereResource#uuid()}, or {@link #NULL}
+     * @param message       the {@link BroadcastMessage}
+     * @return the message's id
+     */
+    protected String nextId(String broadcasterId, String uuid, BroadcastMessage message) {
+        return BroadcastMessage.nextId();
+    }
+
     @Override
     public List<Object> retrieveFromCache(String broadcasterId, String uuid) {
 
@@ -185,6 +197,28 @@ public class UUIDBroadcasterCache implements BroadcasterCache {
         return result;
     }
 
+    @Override
+    public List<Object> retrieveFromCache(String broadcasterId, String uuid, String lastMessageId) {
+        if (BroadcastMessage.sequenceOf(lastMessageId) == -1) {
+            return retrieveFromCache(broadcasterId, uuid);
+        }
+
+        List<Object> result = new ArrayList<Object>();
+        cacheCandidate(broadcasterId, uuid);
+        ClientQueue clientQueue = messages.remove(uuid);
+        if (clientQueue != null) {
+            for (CacheMessage cacheMessage : clientQueue.getQueue()) {
+                // Skip what the client already received.
+                if (BroadcastMessage.isAfter(cacheMessage.getId(), lastMessageId)) {
+                    result.add(cacheMessage.getMessage());
+                }
+            }
+        }
+
+        logger.trace("Retrieved for AtmosphereResource {} cached messages {} after {}", uuid, result, lastMessageId);
+        return result;
+    }
+
     @Override
     public BroadcasterCache clearCache(String broadcasterId, String uuid, CacheMessage message) {
         ClientQueue clientQueue;
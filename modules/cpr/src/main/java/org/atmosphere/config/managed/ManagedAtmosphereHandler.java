@@ -452,11 +452,11 @@ public class ManagedAtmosphereHandler extends AbstractReflectorAtmosphereHandler
                 }
                 break;
             case BROADCASTER:
-                r.getBroadcaster().broadcast(o);
+                Utils.broadcastAndForget(r.getBroadcaster(), o);
                 break;
             case ALL:
                 for (Broadcaster b : r.getAtmosphereConfig().getBroadcasterFactory().lookupAll()) {
-                    b.broadcast(o);
+                    Utils.broadcastAndForget(b, o);
                 }
                 break;
 
@@ -24,6 +24,7 @@ import org.atmosphere.cpr.AtmosphereResponse;
 import org.atmosphere.cpr.WebSocketProcessorFactory;
 import org.atmosphere.handler.AbstractReflectorAtmosphereHandler;
 import org.atmosphere.util.IOUtils;
+import org.atmosphere.util.Utils;
 import org.atmosphere.websocket.WebSocket;
 import org.atmosphere.websocket.WebSocketProcessor;
 import org.slf4j.Logger;
@@ -153,7 +154,7 @@ public class EmbeddedWebSocketHandler {
         public void onRequest(AtmosphereResource resource) throws IOException {
             String body = IOUtils.readEntirelyAsString(resource).toString();
             if (!body.isEmpty()) {
-                resource.getBroadcaster().broadcast(body);
+                Utils.broadcastAndForget(resource.getBroadcaster(), body);
             }
         }
     };
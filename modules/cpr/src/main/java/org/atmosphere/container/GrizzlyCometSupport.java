@@ -34,7 +34,6 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import java.io.IOException;
 
-import static org.atmosphere.cpr.ApplicationConfig.MAX_INACTIVE;
 
 /**
  * Comet Portable Runtime implementation on top of Grizzly 1.5 and up.
@@ -160,7 +159,7 @@ public class GrizzlyCometSupport extends AsynchronousProcessor {
             throws IOException, ServletException {
 
         Action action = super.cancelled(req, res);
-        if (req.getAttribute(MAX_INACTIVE) != null && Long.class.cast(req.getAttribute(MAX_INACTIVE)) == -1) {
+        if (req.maxInactive() == -1) {
             resume(req, CometEngine.getEngine().getCometContext(atmosphereCtx));
         }
         return action;
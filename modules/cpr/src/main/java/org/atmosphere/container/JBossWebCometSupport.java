@@ -32,7 +32,6 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.ServletException;
 import java.io.IOException;
 
-import static org.atmosphere.cpr.ApplicationConfig.MAX_INACTIVE;
 
 /**
  * Comet Portable Runtime implementation on top of Tomcat AIO.
@@ -128,7 +127,7 @@ public class JBossWebCometSupport extends AsynchronousProcessor {
     public Action cancelled(AtmosphereRequest req, AtmosphereResponse res) throws IOException, ServletException {
 
         Action action = super.cancelled(req, res);
-        if (req.getAttribute(MAX_INACTIVE) != null && Long.class.cast(req.getAttribute(MAX_INACTIVE)) == -1) {
+        if (req.maxInactive() == -1) {
             HttpEvent event = (HttpEvent) req.getAttribute(HTTP_EVENT);
             if (event == null) {
                 return action;
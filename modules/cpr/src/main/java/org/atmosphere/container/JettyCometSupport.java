@@ -33,7 +33,6 @@ import javax.servlet.ServletException;
 import java.io.IOException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
-import static org.atmosphere.cpr.ApplicationConfig.MAX_INACTIVE;
 
 /**
  * Comet Portable Runtime implementation on top of Jetty's Continuation.
@@ -122,7 +121,7 @@ public class JettyCometSupport extends AsynchronousProcessor {
             throws IOException, ServletException {
 
         Action action = super.cancelled(req, res);
-        if (req.getAttribute(MAX_INACTIVE) != null && Long.class.cast(req.getAttribute(MAX_INACTIVE)) == -1) {
+        if (req.maxInactive() == -1) {
             Continuation c = ContinuationSupport.getContinuation(req, null);
             if (c != null) {
                 c.resume();
@@ -33,7 +33,6 @@ import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import java.io.IOException;
 
-import static org.atmosphere.cpr.ApplicationConfig.MAX_INACTIVE;
 
 /**
  * This class is used when the {@link org.atmosphere.cpr.AtmosphereFramework} detect the container
@@ -137,7 +136,7 @@ public class Servlet30CometSupport extends AsynchronousProcessor {
             throws IOException, ServletException {
 
         Action action = super.cancelled(req, res);
-        if (req.getAttribute(MAX_INACTIVE) != null && Long.class.cast(req.getAttribute(MAX_INACTIVE)) == -1) {
+        if (req.maxInactive() == -1) {
             endAsyncContext(req);
         }
         return action;
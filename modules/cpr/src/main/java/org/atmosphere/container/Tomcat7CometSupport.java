@@ -38,7 +38,6 @@ import javax.servlet.ServletException;
 import java.io.IOException;
 import java.lang.reflect.Field;
 
-import static org.atmosphere.cpr.ApplicationConfig.MAX_INACTIVE;
 
 /**
  * Comet Portable Runtime implementation on top of Tomcat AIO.
@@ -228,7 +227,7 @@ public class Tomcat7CometSupport extends AsynchronousProcessor {
     public Action cancelled(AtmosphereRequest req, AtmosphereResponse res) throws IOException, ServletException {
 
         Action action = super.cancelled(req, res);
-        if (req.getAttribute(MAX_INACTIVE) != null && Long.class.cast(req.getAttribute(MAX_INACTIVE)) == -1) {
+        if (req.maxInactive() == -1) {
             CometEvent event = (CometEvent) req.getAttribute(COMET_EVENT);
             if (event == null) return action;
             bz51881(event);
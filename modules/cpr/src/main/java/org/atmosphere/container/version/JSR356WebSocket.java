@@ -15,13 +15,11 @@
  */
 package org.atmosphere.container.version;
 
-import org.atmosphere.cache.BroadcastMessage;
 import org.atmosphere.cpr.ApplicationConfig;
 import org.atmosphere.cpr.AtmosphereConfig;
-import org.atmosphere.cpr.AtmosphereResource;
-import org.atmosphere.cpr.Broadcaster;
 import org.atmosphere.cpr.WebSocketProcessorFactory;
 import org.atmosphere.websocket.WebSocket;
+import org.atmosphere.websocket.WebSocketOutboundQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,10 +28,10 @@ import javax.websocket.SendResult;
 import javax.websocket.Session;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.Semaphore;
 
 /**
- * Asynchronous based {@link Session} websocket
+ * Asynchronous based {@link Session} websocket. Writes never block: frames are queued and sent one at a time by a
+ * {@link WebSocketOutboundQueue}.
  *
  * @author Jeanfrancois Arcand
  */
@@ -41,11 +39,12 @@ public class JSR356WebSocket extends WebSocket {
 
     private final Logger logger = LoggerFactory.getLogger(JSR356WebSocket.class);
     private final Session session;
-    private final Semaphore semaphore = new Semaphore(1, true);
+    private final WebSocketOutboundQueue outbound;
 
     public JSR356WebSocket(Session session, AtmosphereConfig config) {
         super(config);
         this.session = session;
+        this.outbound = new Outbound(config);
         // https://issues.apache.org/bugzilla/show_bug.cgi?id=56026
         String s = config.getInitParameter(ApplicationConfig.WEBSOCKET_IDLETIME);
         if (s != null) {
@@ -58,36 +57,20 @@ public class JSR356WebSocket extends WebSocket {
         return session.isOpen();
     }
 
+    @Override
+    public boolean isWritable() {
+        return outbound.isWritable();
+    }
+
     @Override
     public WebSocket write(String s) throws IOException {
-        try {
-            try {
-                semaphore.acquireUninterruptibly();
-                session.getAsyncRemote().sendText(s, new WriteResult(resource(), s));
-            } catch (IllegalStateException e) {
-                semaphore.release();
-                throw e;
-            }
-        } catch (NullPointerException e) {
-            patchGlassFish(e);
-        }
+        outbound.offer(s);
         return this;
     }
 
     @Override
     public WebSocket write(byte[] data, int offset, int length) throws IOException {
-        try {
-            semaphore.acquireUninterruptibly();
-            ByteBuffer b = ByteBuffer.wrap(data, offset, length);
-            session.getAsyncRemote().sendBinary(ByteBuffer.wrap(data, offset, length),
-                    new WriteResult(resource(), b.array()));
-        } catch (NullPointerException e) {
-            patchGlassFish(e);
-            semaphore.release();
-        } catch (IllegalStateException e) {
-            semaphore.release();
-            throw e;
-        }
+        outbound.offer(ByteBuffer.wrap(data, offset, length));
         return this;
     }
 
@@ -100,6 +83,7 @@ public class JSR356WebSocket extends WebSocket {
     @Override
     public void close() {
         logger.trace("WebSocket.close() for AtmosphereResource {}", resource() != null ? resource().uuid() : "null");
+        outbound.clear();
         try {
             session.close();
             // Tomcat may throw  https://gist.github.com/jfarcand/6702738
@@ -108,24 +92,42 @@ public class JSR356WebSocket extends WebSocket {
         }
     }
 
+    private final class Outbound extends WebSocketOutboundQueue {
+
+        private Outbound(AtmosphereConfig config) {
+            super(JSR356WebSocket.this, config);
+        }
+
+        @Override
+        protected boolean send(Object frame) {
+            try {
+                if (frame instanceof String) {
+                    session.getAsyncRemote().sendText((String) frame, new WriteResult(frame));
+                } else {
+                    session.getAsyncRemote().sendBinary((ByteBuffer) frame, new WriteResult(frame));
+                }
+                return true;
+            } catch (NullPointerException e) {
+                patchGlassFish(e);
+            } catch (IllegalStateException e) {
+                logger.trace("WebSocket {} failed to write {}", resource(), frame);
+                logger.trace("", e);
+            }
+            return false;
+        }
+    }
+
     private final class WriteResult implements SendHandler {
 
-        private final AtmosphereResource r;
-        private final Object message;
+        private final Object frame;
 
-        private WriteResult(AtmosphereResource r, Object message) {
-            this.r = r;
-            this.message = message;
+        private WriteResult(Object frame) {
+            this.frame = frame;
         }
 
         @Override
         public void onResult(SendResult result) {
-            semaphore.release();
-            if (!result.isOK() || result.getException() != null) {
-                logger.trace("WebSocket {} failed to write {}", r, message);
-                Broadcaster b = r.getBroadcaster();
-                b.getBroadcasterConfig().getBroadcasterCache().addToCache(b.getID(), r.uuid(), new BroadcastMessage(message));
-            }
+            outbound.sent(frame, result.isOK() && result.getException() == null);
         }
     }
-}
\ No newline at end of file
+}
@@ -15,20 +15,38 @@
 */
 package org.atmosphere.container.version;
 
+import org.atmosphere.cpr.ApplicationConfig;
 import org.atmosphere.cpr.AtmosphereConfig;
 import org.atmosphere.websocket.WebSocket;
+import org.atmosphere.websocket.WebSocketOutboundQueue;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Jetty 9 websocket. Writes are asynchronous, and the number of frames queued inside Jetty is bounded: above
+ * {@link ApplicationConfig#WEBSOCKET_OUTBOUND_HIGH_WATER_MARK} outstanding frames, new frames are handled by the
+ * {@link WebSocketOutboundQueue.OVERFLOW} policy until the client catches up with
+ * {@link ApplicationConfig#WEBSOCKET_OUTBOUND_LOW_WATER_MARK}.
+ */
 public class Jetty9WebSocket extends WebSocket {
 
     private final Session webSocketConnection;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile boolean overflowed;
+    private final int highWaterMark;
+    private final int lowWaterMark;
+    private final WebSocketOutboundQueue.OVERFLOW overflow;
 
     public Jetty9WebSocket(Session webSocketConnection, AtmosphereConfig config) {
         super(config);
         this.webSocketConnection = webSocketConnection;
+        this.highWaterMark = Integer.valueOf(config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_HIGH_WATER_MARK, "1000"));
+        this.lowWaterMark = Integer.valueOf(config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_LOW_WATER_MARK, String.valueOf(highWaterMark / 2)));
+        this.overflow = WebSocketOutboundQueue.overflowPolicy(config);
     }
 
     @Override
@@ -36,18 +54,40 @@ public class Jetty9WebSocket extends WebSocket {
         return webSocketConnection.isOpen();
     }
 
+    @Override
+    public boolean isWritable() {
+        return !overflowed;
+    }
+
     @Override
     public WebSocket write(String s) throws IOException {
-        if (isOpen()) webSocketConnection.getRemote().sendStringByFuture(s);
+        if (!isOpen()) return this;
+
+        Object message = WebSocketOutboundQueue.message(this);
+        if (accept(s, message)) webSocketConnection.getRemote().sendString(s, new WriteResult(s, message));
         return this;
     }
 
     @Override
     public WebSocket write(byte[] b, int offset, int length) throws IOException {
-        if (isOpen()) webSocketConnection.getRemote().sendBytesByFuture(ByteBuffer.wrap(b, offset, length));
+        if (!isOpen()) return this;
+
+        ByteBuffer frame = ByteBuffer.wrap(b, offset, length);
+        Object message = WebSocketOutboundQueue.message(this);
+        if (accept(frame, message)) webSocketConnection.getRemote().sendBytes(frame, new WriteResult(frame, message));
         return this;
     }
 
+    private boolean accept(Object frame, Object message) {
+        if (overflowed || outstanding.get() >= highWaterMark) {
+            overflowed = true;
+            WebSocketOutboundQueue.overflow(this, overflow, frame, message);
+            return false;
+        }
+        outstanding.incrementAndGet();
+        return true;
+    }
+
     @Override
     public void close() {
         if (!isOpen()) return;
@@ -59,4 +99,33 @@ public class Jetty9WebSocket extends WebSocket {
             logger.trace("Close error", e);
         }
     }
+
+    private final class WriteResult implements WriteCallback {
+
+        private final Object frame;
+        private final Object message;
+
+        private WriteResult(Object frame, Object message) {
+            this.frame = frame;
+            this.message = message;
+        }
+
+        @Override
+        public void writeFailed(Throwable t) {
+            logger.trace("WebSocket {} failed to write {}", resource(), frame);
+            WebSocketOutboundQueue.cache(Jetty9WebSocket.this, frame, message);
+            done();
+        }
+
+        @Override
+        public void writeSuccess() {
+            done();
+        }
+
+        private void done() {
+            if (outstanding.decrementAndGet() <= lowWaterMark) {
+                overflowed = false;
+            }
+        }
+    }
 }
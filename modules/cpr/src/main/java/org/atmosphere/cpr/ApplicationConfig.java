@@ -15,6 +15,8 @@
  */
 package org.atmosphere.cpr;
 
+import org.atmosphere.cache.JournalBroadcasterCache;
+import org.atmosphere.cache.SessionBroadcasterCache;
 import org.atmosphere.cache.UUIDBroadcasterCache;
 import org.atmosphere.client.TrackMessageSizeInterceptor;
 import org.atmosphere.container.JSR356AsyncSupport;
@@ -24,6 +26,8 @@ import org.atmosphere.interceptor.HeartbeatInterceptor;
 import org.atmosphere.interceptor.JavaScriptProtocol;
 import org.atmosphere.interceptor.SSEAtmosphereInterceptor;
 import org.atmosphere.util.EndpointMapper;
+import org.atmosphere.util.MetricsRegistry;
+import org.atmosphere.util.UUIDProvider;
 import org.atmosphere.websocket.DefaultWebSocketProcessor;
 import org.atmosphere.websocket.WebSocketProcessor;
 import org.atmosphere.websocket.WebSocketProtocol;
@@ -616,6 +620,15 @@ public interface ApplicationConfig {
      * Value: org.atmosphere.interceptor.AtmosphereResourceStateRecovery.timeout
      */
     String STATE_RECOVERY_TIMEOUT = AtmosphereResourceStateRecovery.class.getName() + ".timeout";
+    /**
+     * The file where the {@link AtmosphereResourceStateRecovery} saves the states of the {@link AtmosphereResource}s
+     * when the application is stopped, and restores them from when it is started, so clients reconnecting after a
+     * restart are associated back with their existing {@link Broadcaster}s.
+     * <p/>
+     * Default: none, states aren't saved<br>
+     * Value: org.atmosphere.interceptor.AtmosphereResourceStateRecovery.snapshot
+     */
+    String STATE_RECOVERY_SNAPSHOT = AtmosphereResourceStateRecovery.class.getName() + ".snapshot";
     /**
      * jsr356 Path mapping length for add(ServerEndpointConfig.Builder.create(JSR356Endpoint.class, "/{path}/{path/...}").
      * Default: 5
@@ -766,5 +779,252 @@ public interface ApplicationConfig {
      * Value: org.atmosphere.interceptor.HeartbeatInterceptor.resumeOnHeartbeat
      */
     String RESUME_ON_HEARTBEAT = HeartbeatInterceptor.class.getName() + ".resumeOnHeartbeat";
+    /**
+     * The {@link org.atmosphere.util.UUIDProvider} used to generate {@link AtmosphereResource#uuid()} and {@link Broadcaster} ids.
+     * The ids are used as tracking ids, {@link org.atmosphere.util.FastUUIDProvider} must only be used when they are never
+     * exposed to untrusted clients.
+     * <p/>
+     * Default: org.atmosphere.util.DefaultUUIDProvider<br>
+     * Value: org.atmosphere.util.UUIDProvider
+     */
+    String UUID_PROVIDER = UUIDProvider.class.getName();
+    /**
+     * Build a single, immutable request template per WebSocket connection when the connection opens and derive every
+     * message's {@link AtmosphereRequest} from it, replacing only the body. This avoids re-computing the path,
+     * request URI, headers and query strings for every WebSocket message.
+     * <p/>
+     * Default: false
+     * Value: org.atmosphere.websocket.protocol.SimpleHttpProtocol.requestTemplate
+     */
+    String WEBSOCKET_REQUEST_TEMPLATE = SimpleHttpProtocol.class.getName() + ".requestTemplate";
+    /**
+     * The maximum size, in bytes, of a request's body read by Atmosphere, e.g. by
+     * {@link org.atmosphere.interceptor.BroadcastOnPostAtmosphereInterceptor} or the managed services. Larger bodies
+     * are discarded.
+     * <p/>
+     * Default: -1 (unlimited)
+     * Value: org.atmosphere.cpr.maxRequestBodySize
+     */
+    String MAX_REQUEST_BODY_SIZE = "org.atmosphere.cpr.maxRequestBodySize";
+    /**
+     * The number of threads used to scan the application's jar files for annotations when no annotation index has been
+     * generated at build time (see {@link org.atmosphere.util.annotation.AnnotationIndexProcessor}). Set to 1 to scan
+     * sequentially.
+     * <p/>
+     * Default: the number of available processors
+     * Value: org.atmosphere.cpr.annotation.scanningThreads
+     */
+    String ANNOTATION_SCANNING_THREADS = "org.atmosphere.cpr.annotation.scanningThreads";
+    /**
+     * The {@link org.atmosphere.util.MetricsRegistry} recording publish rates, fan-out and write latencies, cache hits
+     * and suspended connections.
+     * <p/>
+     * Default: org.atmosphere.util.NoOpMetricsRegistry<br>
+     * Value: org.atmosphere.util.MetricsRegistry
+     */
+    String METRICS_REGISTRY = MetricsRegistry.class.getName();
+    /**
+     * Trace one message out of N from its publication to its write, reporting the time spent in every stage to the
+     * {@link org.atmosphere.cpr.BroadcastTraceListener}s. 1 traces every message, 0 disables tracing.
+     * <p/>
+     * Default: 0<br>
+     * Value: org.atmosphere.cpr.Broadcaster.traceSampling
+     */
+    String BROADCAST_TRACE_SAMPLING = "org.atmosphere.cpr.Broadcaster.traceSampling";
+    /**
+     * Replace a {@link org.atmosphere.cpr.Conflatable} message queued for an AtmosphereResource, but not yet written,
+     * by a newer message sharing the same conflation key. Conflation doesn't apply when
+     * {@link #OUT_OF_ORDER_BROADCAST} is set.
+     * <p/>
+     * Default: false<br>
+     * Value: org.atmosphere.cpr.Broadcaster.conflation
+     */
+    String BROADCASTER_CONFLATION = "org.atmosphere.cpr.Broadcaster.conflation";
+    /**
+     * Collect the messages broadcasted to all AtmosphereResources during a window of the given milliseconds, and
+     * deliver them as a single batch. This trades a bounded latency for a much higher throughput when a Broadcaster
+     * receives many small messages. AtmosphereHandlers and BroadcasterListeners still get every message on its own,
+     * and every message is cached under its own id. Batching doesn't apply when {@link #OUT_OF_ORDER_BROADCAST} or
+     * {@link #BROADCASTER_SHARED_DISPATCHER} is set, or when {@link org.atmosphere.cpr.PerRequestBroadcastFilter}s are
+     * installed.
+     * <p/>
+     * Default: 0 (disabled)<br>
+     * Value: org.atmosphere.cpr.Broadcaster.batchWindow
+     */
+    String BROADCASTER_BATCH_WINDOW = "org.atmosphere.cpr.Broadcaster.batchWindow";
+    /**
+     * The maximum number of messages of a batch. See {@link #BROADCASTER_BATCH_WINDOW}.
+     * <p/>
+     * Default: 100<br>
+     * Value: org.atmosphere.cpr.Broadcaster.batchSize
+     */
+    String BROADCASTER_BATCH_SIZE = "org.atmosphere.cpr.Broadcaster.batchSize";
+    /**
+     * The number of frames waiting to be written to an asynchronous WebSocket above which new frames are handled by the
+     * {@link #WEBSOCKET_OUTBOUND_OVERFLOW_POLICY}.
+     * <p/>
+     * Default: 1000<br>
+     * Value: org.atmosphere.websocket.outbound.highWaterMark
+     */
+    String WEBSOCKET_OUTBOUND_HIGH_WATER_MARK = "org.atmosphere.websocket.outbound.highWaterMark";
+    /**
+     * The number of frames waiting to be written to an asynchronous WebSocket below which an overflowed WebSocket
+     * accepts new frames again.
+     * <p/>
+     * Default: half of {@link #WEBSOCKET_OUTBOUND_HIGH_WATER_MARK}<br>
+     * Value: org.atmosphere.websocket.outbound.lowWaterMark
+     */
+    String WEBSOCKET_OUTBOUND_LOW_WATER_MARK = "org.atmosphere.websocket.outbound.lowWaterMark";
+    /**
+     * Merge the text frames waiting to be written to an asynchronous WebSocket into a single frame. Only enable it when
+     * the client can split the messages, for example with the {@link org.atmosphere.client.TrackMessageSizeInterceptor}.
+     * <p/>
+     * Default: false<br>
+     * Value: org.atmosphere.websocket.outbound.coalescing
+     */
+    String WEBSOCKET_OUTBOUND_COALESCING = "org.atmosphere.websocket.outbound.coalescing";
+    /**
+     * What to do with the frames written to an asynchronous WebSocket once it has overflowed: DROP, CACHE or CLOSE. See
+     * {@link org.atmosphere.websocket.WebSocketOutboundQueue.OVERFLOW}.
+     * <p/>
+     * Default: CACHE<br>
+     * Value: org.atmosphere.websocket.outbound.overflowPolicy
+     */
+    String WEBSOCKET_OUTBOUND_OVERFLOW_POLICY = "org.atmosphere.websocket.outbound.overflowPolicy";
+    /**
+     * Make Broadcasters lightweight mailboxes: a Broadcaster only submits a dispatching or writing task when it has
+     * messages to deliver, and the task returns its thread as soon as there are none left instead of waiting for
+     * {@link #BROADCASTER_WAIT_TIME}. Combined with {@link #BROADCASTER_SHARABLE_THREAD_POOLS}, many Broadcasters are
+     * served by a fixed set of threads. {@link #OUT_OF_ORDER_BROADCAST} is not supported in this mode.
+     * <p/>
+     * Default: false<br>
+     * Value: org.atmosphere.cpr.Broadcaster.sharedDispatcher
+     */
+    String BROADCASTER_SHARED_DISPATCHER = "org.atmosphere.cpr.Broadcaster.sharedDispatcher";
+    /**
+     * The minimum time, in milliseconds, between two writes of a client's position to the HttpSession by the
+     * {@link org.atmosphere.cache.SessionBroadcasterCache}. The position is also written when the AtmosphereResource
+     * gets suspended, resumed or disconnected. 0 writes it every time a message is cached.
+     * <p/>
+     * Default: 1000<br>
+     * Value: org.atmosphere.cache.SessionBroadcasterCache.flushInterval
+     */
+    String SESSIONBROADCASTERCACHE_FLUSH_INTERVAL = SessionBroadcasterCache.class.getName() + ".flushInterval";
+    /**
+     * The address, host:port, the {@link org.atmosphere.util.cluster.NIOClusterTransport} listens on for messages
+     * sent by the other nodes of the cluster. Must be set to an address reachable by the other nodes when they don't
+     * run on the same host. Only the connections from the addresses listed in {@link #CLUSTER_PEERS} are accepted.
+     * <p/>
+     * Default: 127.0.0.1:7070<br>
+     * Value: org.atmosphere.cluster.localAddress
+     */
+    String CLUSTER_LOCAL_ADDRESS = "org.atmosphere.cluster.localAddress";
+    /**
+     * A comma separated list of host:port the {@link org.atmosphere.util.cluster.NIOClusterTransport} sends the
+     * messages of the {@link org.atmosphere.util.cluster.ClusterBroadcaster} to.
+     * <p/>
+     * Default: none<br>
+     * Value: org.atmosphere.cluster.peers
+     */
+    String CLUSTER_PEERS = "org.atmosphere.cluster.peers";
+    /**
+     * The maximum number of messages the {@link org.atmosphere.util.cluster.NIOClusterTransport} writes to a peer in
+     * a single frame.
+     * <p/>
+     * Default: 256<br>
+     * Value: org.atmosphere.cluster.batchSize
+     */
+    String CLUSTER_BATCH_SIZE = "org.atmosphere.cluster.batchSize";
+    /**
+     * The maximum size, in bytes, of a message sent by the {@link org.atmosphere.util.cluster.NIOClusterTransport}.
+     * Larger messages aren't sent, and a frame larger than {@link #CLUSTER_BATCH_SIZE} messages of this size closes
+     * the connection it is read from. Must be the same on every node.
+     * <p/>
+     * Default: 65536<br>
+     * Value: org.atmosphere.cluster.maxMessageSize
+     */
+    String CLUSTER_MAX_MESSAGE_SIZE = "org.atmosphere.cluster.maxMessageSize";
+    /**
+     * The maximum number of messages the {@link org.atmosphere.util.cluster.NIOClusterTransport} queues for a peer.
+     * New messages are dropped once reached, e.g while the peer is down.
+     * <p/>
+     * Default: 10000<br>
+     * Value: org.atmosphere.cluster.maxPending
+     */
+    String CLUSTER_MAX_PENDING = "org.atmosphere.cluster.maxPending";
+    /**
+     * The timeout, in milliseconds, of a connection of the {@link org.atmosphere.util.cluster.NIOClusterTransport} to
+     * a peer.
+     * <p/>
+     * Default: 5000<br>
+     * Value: org.atmosphere.cluster.connectTimeout
+     */
+    String CLUSTER_CONNECT_TIMEOUT = "org.atmosphere.cluster.connectTimeout";
+    /**
+     * The {@link org.atmosphere.util.cluster.ClusterTransport} used by the
+     * {@link org.atmosphere.util.cluster.ClusterBroadcaster}.
+     * <p/>
+     * Default: org.atmosphere.util.cluster.NIOClusterTransport<br>
+     * Value: org.atmosphere.cluster.transport
+     */
+    String CLUSTER_TRANSPORT = "org.atmosphere.cluster.transport";
+    /**
+     * The directory where the {@link org.atmosphere.cache.JournalBroadcasterCache} stores its journals, one sub
+     * directory per {@link org.atmosphere.cpr.Broadcaster}. Required: pick a directory only the application can read,
+     * as the journals contain the broadcasted messages.
+     * <p/>
+     * Default: none<br>
+     * Value: org.atmosphere.cache.JournalBroadcasterCache.directory
+     */
+    String JOURNALBROADCASTERCACHE_DIRECTORY = JournalBroadcasterCache.class.getName() + ".directory";
+    /**
+     * The size, in bytes, after which the {@link org.atmosphere.cache.JournalBroadcasterCache} starts a new journal
+     * segment.
+     * <p/>
+     * Default: 67108864<br>
+     * Value: org.atmosphere.cache.JournalBroadcasterCache.segmentSize
+     */
+    String JOURNALBROADCASTERCACHE_SEGMENT_SIZE = JournalBroadcasterCache.class.getName() + ".segmentSize";
+    /**
+     * The number of journal segments kept, per {@link org.atmosphere.cpr.Broadcaster}, by the
+     * {@link org.atmosphere.cache.JournalBroadcasterCache}. Older segments are deleted.
+     * <p/>
+     * Default: 16<br>
+     * Value: org.atmosphere.cache.JournalBroadcasterCache.maxSegments
+     */
+    String JOURNALBROADCASTERCACHE_MAX_SEGMENTS = JournalBroadcasterCache.class.getName() + ".maxSegments";
+    /**
+     * The interval, in milliseconds, between two syncs of the journals to disk by the
+     * {@link org.atmosphere.cache.JournalBroadcasterCache}. 0 syncs every message.
+     * <p/>
+     * Default: 100<br>
+     * Value: org.atmosphere.cache.JournalBroadcasterCache.syncInterval
+     */
+    String JOURNALBROADCASTERCACHE_SYNC_INTERVAL = JournalBroadcasterCache.class.getName() + ".syncInterval";
+    /**
+     * The maximum number of journaled messages the {@link org.atmosphere.cache.JournalBroadcasterCache} replays to a
+     * reconnecting client. Only the most recent ones are replayed.
+     * <p/>
+     * Default: 1000<br>
+     * Value: org.atmosphere.cache.JournalBroadcasterCache.maxReplay
+     */
+    String JOURNALBROADCASTERCACHE_MAX_REPLAY = JournalBroadcasterCache.class.getName() + ".maxReplay";
+    /**
+     * Deliver the messages broadcasted with a {@link Broadcaster.PRIORITY} by order of priority instead of in order,
+     * see {@link org.atmosphere.cpr.DefaultBroadcaster#broadcast(Object, Broadcaster.PRIORITY)}.
+     * <p/>
+     * Default: false<br>
+     * Value: org.atmosphere.cpr.Broadcaster.priorities
+     */
+    String BROADCASTER_PRIORITIES = "org.atmosphere.cpr.Broadcaster.priorities";
+    /**
+     * The number of messages of higher priorities a {@link org.atmosphere.cpr.DefaultBroadcaster} delivers while a
+     * message of a lower priority is waiting, see {@link Broadcaster.PRIORITY}. Once reached, the oldest message of
+     * the lower priority is delivered first, bounding its delay.
+     * <p/>
+     * Default: 16<br>
+     * Value: org.atmosphere.cpr.Broadcaster.priorityStarvationLimit
+     */
+    String BROADCASTER_PRIORITY_STARVATION_LIMIT = "org.atmosphere.cpr.Broadcaster.priorityStarvationLimit";
 }
 
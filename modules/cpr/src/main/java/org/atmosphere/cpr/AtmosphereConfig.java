@@ -16,6 +16,8 @@
 package org.atmosphere.cpr;
 
 import org.atmosphere.config.AtmosphereHandlerConfig;
+import org.atmosphere.util.MetricsRegistry;
+import org.atmosphere.util.UUIDProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -280,6 +282,24 @@ public class AtmosphereConfig {
         return framework.metaBroadcaster();
     }
 
+    /**
+     * Return the {@link UUIDProvider} used to generate {@link AtmosphereResource#uuid()} and {@link Broadcaster} ids.
+     *
+     * @return the {@link UUIDProvider}
+     */
+    public UUIDProvider uuidProvider() {
+        return framework.uuidProvider();
+    }
+
+    /**
+     * Return the {@link MetricsRegistry} recording the framework's metrics.
+     *
+     * @return the {@link MetricsRegistry}
+     */
+    public MetricsRegistry metricsRegistry() {
+        return framework.metricsRegistry();
+    }
+
     /**
      * A shutdown hook that will be called when the {@link AtmosphereFramework#destroy} method gets invoked. An
      * Application can register one of more hooks.
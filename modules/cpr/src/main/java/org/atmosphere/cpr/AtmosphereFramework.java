@@ -41,11 +41,15 @@ import org.atmosphere.interceptor.SSEAtmosphereInterceptor;
 import org.atmosphere.interceptor.WebSocketMessageSuspendInterceptor;
 import org.atmosphere.util.AtmosphereConfigReader;
 import org.atmosphere.util.DefaultEndpointMapper;
+import org.atmosphere.util.DefaultUUIDProvider;
 import org.atmosphere.util.EndpointMapper;
 import org.atmosphere.util.IOUtils;
 import org.atmosphere.util.IntrospectionUtils;
+import org.atmosphere.util.MetricsRegistry;
+import org.atmosphere.util.NoOpMetricsRegistry;
 import org.atmosphere.util.ServletContextFactory;
 import org.atmosphere.util.ServletProxyFactory;
+import org.atmosphere.util.UUIDProvider;
 import org.atmosphere.util.Version;
 import org.atmosphere.util.analytics.FocusPoint;
 import org.atmosphere.util.analytics.JGoogleAnalyticsTracker;
@@ -90,9 +94,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -200,6 +204,7 @@ public class AtmosphereFramework {
     protected boolean scanDone = false;
     protected String annotationProcessorClassName = "org.atmosphere.cpr.DefaultAnnotationProcessor";
     protected final List<BroadcasterListener> broadcasterListeners = new ArrayList<BroadcasterListener>();
+    protected final List<BroadcastTraceListener> broadcastTraceListeners = new CopyOnWriteArrayList<BroadcastTraceListener>();
     protected String webSocketProcessorClassName = DefaultWebSocketProcessor.class.getName();
     protected boolean webSocketProtocolInitialized = false;
     protected EndpointMapper<AtmosphereHandlerWrapper> endpointMapper = new DefaultEndpointMapper<AtmosphereHandlerWrapper>();
@@ -220,6 +225,8 @@ public class AtmosphereFramework {
     protected final List<BroadcasterConfig.FilterManipulator> filterManipulators = new ArrayList<BroadcasterConfig.FilterManipulator>();
     protected AtmosphereResourceFactory arFactory;
     protected MetaBroadcaster metaBroadcaster;
+    protected UUIDProvider uuidProvider = new DefaultUUIDProvider();
+    protected MetricsRegistry metricsRegistry = new NoOpMetricsRegistry();
     protected final Class<? extends AtmosphereInterceptor>[] defaultInterceptors = new Class[]{
             // Add CORS support
             CorsInterceptor.class,
@@ -844,6 +851,8 @@ public class AtmosphereFramework {
             doInitParams(scFacade);
             doInitParamsForWebSocket(scFacade);
             objectFactory = lookupDefaultObjectFactoryType();
+            configureUUIDProvider();
+            configureMetricsRegistry();
             asyncSupportListener(newClassInstance(AsyncSupportListener.class, AsyncSupportListenerAdapter.class));
 
             configureObjectFactory();
@@ -1552,6 +1561,30 @@ public class AtmosphereFramework {
         webSocketProtocol.configure(config);
     }
 
+    protected void configureUUIDProvider() {
+        String s = servletConfig.getInitParameter(ApplicationConfig.UUID_PROVIDER);
+        if (s != null) {
+            try {
+                uuidProvider = newClassInstance(UUIDProvider.class, (Class<UUIDProvider>) IOUtils.loadClass(this.getClass(), s));
+                logger.info("Installed UUIDProvider {} ", s);
+            } catch (Exception ex) {
+                logger.error("Cannot load the UUIDProvider {}", s, ex);
+            }
+        }
+    }
+
+    protected void configureMetricsRegistry() {
+        String s = servletConfig.getInitParameter(ApplicationConfig.METRICS_REGISTRY);
+        if (s != null) {
+            try {
+                metricsRegistry = newClassInstance(MetricsRegistry.class, (Class<MetricsRegistry>) IOUtils.loadClass(this.getClass(), s));
+                logger.info("Installed MetricsRegistry {} ", s);
+            } catch (Exception ex) {
+                logger.error("Cannot load the MetricsRegistry {}", s, ex);
+            }
+        }
+    }
+
     public void initEndpointMapper() {
         String s = servletConfig.getInitParameter(ApplicationConfig.ENDPOINT_MAPPER);
         if (s != null) {
@@ -1610,6 +1643,7 @@ public class AtmosphereFramework {
         objectFactoryType.clear();
         inspectors.clear();
         broadcasterListeners.clear();
+        broadcastTraceListeners.clear();
         packages.clear();
         annotationPackages.clear();
         excludedInterceptors.clear();
@@ -1937,7 +1971,7 @@ public class AtmosphereFramework {
      * @param req {@link AtmosphereRequest}
      */
     public AtmosphereFramework configureRequestResponse(AtmosphereRequest req, AtmosphereResponse res) throws UnsupportedEncodingException {
-        req.setAttribute(PROPERTY_USE_STREAM, useStreamForFlushingComments);
+        req.useStream(useStreamForFlushingComments);
         req.setAttribute(BROADCASTER_CLASS, broadcasterClassName);
         req.setAttribute(ATMOSPHERE_CONFIG, config);
         req.setAttribute(FrameworkConfig.THROW_EXCEPTION_ON_CLONED_REQUEST, "" + config.isThrowExceptionOnCloned());
@@ -1974,7 +2008,7 @@ public class AtmosphereFramework {
         }
 
         if (s == null || s.equals("0")) {
-            s = UUID.randomUUID().toString();
+            s = uuidProvider.generateUuid();
             res.setHeader(HeaderConfig.X_FIRST_REQUEST, "true");
             res.setHeader(X_ATMOSPHERE_TRACKING_ID, s);
         } else {
@@ -2427,6 +2461,20 @@ public class AtmosphereFramework {
         return this;
     }
 
+    /**
+     * Add a {@link BroadcastTraceListener} receiving the {@link BroadcastTrace} of the messages sampled by all
+     * {@link Broadcaster}s. See {@link ApplicationConfig#BROADCAST_TRACE_SAMPLING}.
+     */
+    public AtmosphereFramework addBroadcastTraceListener(BroadcastTraceListener l) {
+        broadcastTraceListeners.add(l);
+        return this;
+    }
+
+    public AtmosphereFramework removeBroadcastTraceListener(BroadcastTraceListener l) {
+        broadcastTraceListeners.remove(l);
+        return this;
+    }
+
     /**
      * Add {@link BroadcasterCacheListener} to the {@link BroadcasterCache}.
      */
@@ -2557,8 +2605,12 @@ public class AtmosphereFramework {
                     });
 
                     if (jars != null) {
-                        for (File file : jars) {
-                            annotationProcessor.scan(file);
+                        if (DefaultAnnotationProcessor.class.isAssignableFrom(annotationProcessor.getClass())) {
+                            DefaultAnnotationProcessor.class.cast(annotationProcessor).scan(jars);
+                        } else {
+                            for (File file : jars) {
+                                annotationProcessor.scan(file);
+                            }
                         }
                     }
                 }
@@ -2870,6 +2922,10 @@ public class AtmosphereFramework {
         return broadcasterListeners;
     }
 
+    public List<BroadcastTraceListener> broadcastTraceListeners() {
+        return broadcastTraceListeners;
+    }
+
     public boolean sharedThreadPools() {
         return sharedThreadPools;
     }
@@ -2930,4 +2986,44 @@ public class AtmosphereFramework {
         return this;
     }
 
+    /**
+     * Return the {@link UUIDProvider} used to generate {@link AtmosphereResource#uuid()} and {@link Broadcaster} ids.
+     *
+     * @return the {@link UUIDProvider}
+     */
+    public UUIDProvider uuidProvider() {
+        return uuidProvider;
+    }
+
+    /**
+     * Set the {@link UUIDProvider}.
+     *
+     * @param uuidProvider {@link UUIDProvider}
+     * @return this
+     */
+    public AtmosphereFramework uuidProvider(UUIDProvider uuidProvider) {
+        this.uuidProvider = uuidProvider;
+        return this;
+    }
+
+    /**
+     * Return the {@link MetricsRegistry} recording the framework's metrics.
+     *
+     * @return the {@link MetricsRegistry}
+     */
+    public MetricsRegistry metricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Set the {@link MetricsRegistry}. {@link Broadcaster}s already created keep using the previous one.
+     *
+     * @param metricsRegistry {@link MetricsRegistry}
+     * @return this
+     */
+    public AtmosphereFramework metricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        return this;
+    }
+
 }
@@ -15,6 +15,7 @@
  */
 package org.atmosphere.cpr;
 
+import org.atmosphere.interceptor.HeartbeatInterceptor;
 import org.atmosphere.util.FakeHttpSession;
 import org.atmosphere.util.QueryStringDecoder;
 import org.atmosphere.util.ReaderInputStream;
@@ -58,9 +59,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.atmosphere.cpr.ApplicationConfig.MAX_INACTIVE;
+import static org.atmosphere.cpr.ApplicationConfig.PROPERTY_USE_STREAM;
+import static org.atmosphere.cpr.DefaultBroadcaster.ASYNC_TOKEN;
+import static org.atmosphere.cpr.FrameworkConfig.MESSAGE_ID;
+import static org.atmosphere.cpr.FrameworkConfig.MESSAGE_WRITTEN;
 import static org.atmosphere.cpr.HeaderConfig.X_ATMOSPHERE;
+import static org.atmosphere.interceptor.HeartbeatInterceptor.HEARTBEAT_FUTURE;
 
 /**
  * An Atmosphere request representation. An {@link AtmosphereRequest} is a two-way communication channel between the
@@ -85,12 +94,30 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
     private AtomicBoolean streamSet = new AtomicBoolean();
     private AtomicBoolean readerSet = new AtomicBoolean();
     private String uuid;
+    private final static String[] FRAMEWORK_ATTRIBUTES = new String[]{MAX_INACTIVE, ASYNC_TOKEN, HEARTBEAT_FUTURE,
+            PROPERTY_USE_STREAM, MESSAGE_WRITTEN, MESSAGE_ID};
+    // Framework state updated on every write. Stored in fields instead of the attributes to avoid hashing and boxing,
+    // but still available using the attribute's API. Unlike setAttribute, the typed setters don't forward the value
+    // to the wrapped container's request.
+    private volatile long maxInactive;
+    private volatile Object asyncToken;
+    private volatile Future<?> heartbeatFuture;
+    private volatile Boolean useStream;
+    private volatile boolean messageWritten;
+    private volatile String messageId;
 
     private AtmosphereRequest(Builder b) {
         super(b.request == null ? new NoOpsRequest() : b.request);
         if (b.request == null) b.request(new NoOpsRequest());
 
         this.b = b;
+        // Attributes copied by wrap() or cloneRequest(), or set on the Builder, may contain framework keys.
+        for (String s : FRAMEWORK_ATTRIBUTES) {
+            Object o = b.localAttributes.get(s);
+            if (o != null && setFrameworkAttribute(s, o)) {
+                b.localAttributes.remove(s);
+            }
+        }
     }
 
     private ServletInputStream configureStream() {
@@ -456,9 +483,11 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
         if (!queryComputed) {
             queryComputed = true;
             Map<String, String[]> m = (isNotNoOps() ? b.request.getParameterMap() : Collections.<String, String[]>emptyMap());
+            Map<String, String[]> values = new HashMap<String, String[]>(m.size());
             for (String e : m.keySet()) {
-                b.queryStrings.put(e, getParameterValues(e));
+                values.put(e, getParameterValues(e));
             }
+            b.queryStrings.putAll(values);
         }
         return Collections.unmodifiableMap(b.queryStrings);
     }
@@ -674,7 +703,11 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
             removeAttribute(s);
             return;
         }
-        b.localAttributes.put(s, o);
+
+        if (!setFrameworkAttribute(s, o)) {
+            b.localAttributes.put(s, o);
+        }
+        // Code reading the wrapped container's request, like Filters, must keep seeing the attributes.
         if (isNotNoOps()) {
             b.request.setAttribute(s, o);
         }
@@ -717,7 +750,12 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
      */
     @Override
     public Object getAttribute(String s) {
-        return b.localAttributes.get(s) != null ? b.localAttributes.get(s) : (isNotNoOps() ? b.request.getAttribute(s) : null);
+        if (isFrameworkAttribute(s)) {
+            // The wrapped request's value may be stale as the typed setters don't forward.
+            return getFrameworkAttribute(s);
+        }
+        Object o = b.localAttributes.get(s);
+        return o != null ? o : (isNotNoOps() ? b.request.getAttribute(s) : null);
     }
 
     /**
@@ -725,12 +763,171 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
      */
     @Override
     public void removeAttribute(String name) {
+        removeFrameworkAttribute(name);
         b.localAttributes.remove(name);
         if (isNotNoOps()) {
             b.request.removeAttribute(name);
         }
     }
 
+    /**
+     * The last time, in milliseconds, a message was written or the {@link AtmosphereResource} was inspected. This is
+     * the typed value of the {@link ApplicationConfig#MAX_INACTIVE} attribute.
+     *
+     * @return the last activity time, -1 if the resource has been marked as idle, 0 if never set.
+     */
+    public long maxInactive() {
+        return maxInactive;
+    }
+
+    /**
+     * Set the {@link ApplicationConfig#MAX_INACTIVE} value without boxing it. Unlike {@link #setAttribute(String, Object)},
+     * the value is not forwarded to the wrapped container's request.
+     *
+     * @param maxInactive the last activity time, or -1 to mark the resource as idle.
+     * @return this
+     */
+    public AtmosphereRequest maxInactive(long maxInactive) {
+        this.maxInactive = maxInactive;
+        return this;
+    }
+
+    /**
+     * The last {@link DefaultBroadcaster#ASYNC_TOKEN} set on this request.
+     *
+     * @return the last asynchronous write token, or null
+     */
+    public Object asyncToken() {
+        return asyncToken;
+    }
+
+    public AtmosphereRequest asyncToken(Object asyncToken) {
+        this.asyncToken = asyncToken;
+        return this;
+    }
+
+    /**
+     * The {@link HeartbeatInterceptor#HEARTBEAT_FUTURE} associated with this request.
+     *
+     * @return the heartbeat {@link Future}, or null
+     */
+    public Future<?> heartbeatFuture() {
+        return heartbeatFuture;
+    }
+
+    public AtmosphereRequest heartbeatFuture(Future<?> heartbeatFuture) {
+        this.heartbeatFuture = heartbeatFuture;
+        return this;
+    }
+
+    /**
+     * The typed value of the {@link ApplicationConfig#PROPERTY_USE_STREAM} attribute.
+     *
+     * @return true if the {@link javax.servlet.ServletOutputStream} must be used, or null if never set.
+     */
+    public Boolean useStream() {
+        return useStream;
+    }
+
+    public AtmosphereRequest useStream(Boolean useStream) {
+        this.useStream = useStream;
+        return this;
+    }
+
+    /**
+     * True if a {@link Broadcaster} has written a message using this request, e.g the
+     * {@link FrameworkConfig#MESSAGE_WRITTEN} attribute.
+     *
+     * @return true if a message has been written.
+     */
+    public boolean messageWritten() {
+        return messageWritten;
+    }
+
+    public AtmosphereRequest messageWritten(boolean messageWritten) {
+        this.messageWritten = messageWritten;
+        return this;
+    }
+
+    /**
+     * The id of the message a {@link Broadcaster} is writing using this request, e.g the
+     * {@link FrameworkConfig#MESSAGE_ID} attribute.
+     *
+     * @return the id of the message being written, or null.
+     */
+    public String messageId() {
+        return messageId;
+    }
+
+    public AtmosphereRequest messageId(String messageId) {
+        this.messageId = messageId;
+        return this;
+    }
+
+    private static boolean is(String name, String key) {
+        return name == key || key.equals(name);
+    }
+
+    private static boolean isFrameworkAttribute(String s) {
+        for (String a : FRAMEWORK_ATTRIBUTES) {
+            if (is(s, a)) return true;
+        }
+        return false;
+    }
+
+    private boolean setFrameworkAttribute(String s, Object o) {
+        if (is(s, MAX_INACTIVE) && Number.class.isAssignableFrom(o.getClass())) {
+            maxInactive = Number.class.cast(o).longValue();
+        } else if (is(s, ASYNC_TOKEN)) {
+            asyncToken = o;
+        } else if (is(s, HEARTBEAT_FUTURE) && Future.class.isAssignableFrom(o.getClass())) {
+            heartbeatFuture = (Future<?>) o;
+        } else if (is(s, PROPERTY_USE_STREAM) && Boolean.class.isAssignableFrom(o.getClass())) {
+            useStream = (Boolean) o;
+        } else if (is(s, MESSAGE_WRITTEN)) {
+            messageWritten = Boolean.valueOf(o.toString());
+        } else if (is(s, MESSAGE_ID)) {
+            messageId = o.toString();
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private Object getFrameworkAttribute(String s) {
+        if (is(s, MAX_INACTIVE)) {
+            long l = maxInactive;
+            return l == 0 ? null : Long.valueOf(l);
+        } else if (is(s, ASYNC_TOKEN)) {
+            return asyncToken;
+        } else if (is(s, HEARTBEAT_FUTURE)) {
+            return heartbeatFuture;
+        } else if (is(s, PROPERTY_USE_STREAM)) {
+            return useStream;
+        } else if (is(s, MESSAGE_WRITTEN)) {
+            return messageWritten ? "true" : null;
+        } else if (is(s, MESSAGE_ID)) {
+            return messageId;
+        }
+        return null;
+    }
+
+    private void removeFrameworkAttribute(String s) {
+        if (is(s, MAX_INACTIVE)) {
+            maxInactive = 0;
+        } else if (is(s, ASYNC_TOKEN)) {
+            asyncToken = null;
+        } else if (is(s, HEARTBEAT_FUTURE)) {
+            heartbeatFuture = null;
+        } else if (is(s, PROPERTY_USE_STREAM)) {
+            useStream = null;
+        } else if (is(s, MESSAGE_WRITTEN)) {
+            messageWritten = false;
+        } else if (is(s, MESSAGE_ID)) {
+            messageId = null;
+        }
+    }
+
     /**
      * Return the locally added attributes.
      *
@@ -1030,6 +1227,13 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
                 l.add(e.nextElement());
             }
         }
+        for (String s : FRAMEWORK_ATTRIBUTES) {
+            if (getFrameworkAttribute(s) != null) {
+                l.add(s);
+            } else {
+                l.remove(s);
+            }
+        }
         return Collections.enumeration(l);
     }
 
@@ -1061,6 +1265,12 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
         if (!force) return;
 
         b.localAttributes.clear();
+        maxInactive = 0;
+        asyncToken = null;
+        heartbeatFuture = null;
+        useStream = null;
+        messageWritten = false;
+        messageId = null;
         if (bis != null) {
             try {
                 bis.close();
@@ -1098,12 +1308,12 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
         private String methodType;
         private String contentType;
         private Long contentLength;
-        private Map<String, String> headers = Collections.synchronizedMap(new HashMap<String, String>());
-        private Map<String, String[]> queryStrings = Collections.synchronizedMap(new HashMap<String, String[]>());
+        private Map<String, String> headers;
+        private Map<String, String[]> queryStrings;
         private String servletPath = "";
         private String requestURI;
         private String requestURL;
-        private Map<String, Object> localAttributes = new ConcurrentHashMap<String, Object>();
+        private Map<String, Object> localAttributes;
         private InputStream inputStream;
         private Reader reader;
         private String remoteAddr = "";
@@ -1114,8 +1324,8 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
         private int localPort = 0;
         private boolean dispatchRequestAsynchronously;
         private boolean destroyable = true;
-        private Set<Cookie> cookies =  Collections.synchronizedSet(new HashSet<Cookie>());
-        private final Set<Locale> locales = Collections.synchronizedSet(new HashSet<Locale>());
+        private Set<Cookie> cookies;
+        private final Set<Locale> locales;
         private Principal principal = null;
         private String authType = null;
         private String contextPath = "";
@@ -1130,6 +1340,58 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
         public Body body;
 
         public Builder() {
+            headers = Collections.synchronizedMap(new HashMap<String, String>());
+            queryStrings = Collections.synchronizedMap(new HashMap<String, String[]>());
+            // Written often by the framework during the life of a suspended request.
+            localAttributes = new ConcurrentHashMap<String, Object>();
+            cookies = new CopyOnWriteArraySet<Cookie>();
+            locales = new CopyOnWriteArraySet<Locale>();
+        }
+
+        private Builder(Builder template) {
+            request = template.request;
+            pathInfo = template.pathInfo;
+            encoding = template.encoding;
+            methodType = template.methodType;
+            contentType = template.contentType;
+            contentLength = template.contentLength;
+            headers = copy(template.headers);
+            queryStrings = copy(template.queryStrings);
+            servletPath = template.servletPath;
+            requestURI = template.requestURI;
+            requestURL = template.requestURL;
+            localAttributes = new ConcurrentHashMap<String, Object>(template.localAttributes);
+            remoteAddr = template.remoteAddr;
+            remoteHost = template.remoteHost;
+            remotePort = template.remotePort;
+            localAddr = template.localAddr;
+            localName = template.localName;
+            localPort = template.localPort;
+            dispatchRequestAsynchronously = template.dispatchRequestAsynchronously;
+            destroyable = template.destroyable;
+            cookies = new CopyOnWriteArraySet<Cookie>(template.cookies);
+            locales = new CopyOnWriteArraySet<Locale>(template.locales);
+            principal = template.principal;
+            authType = template.authType;
+            contextPath = template.contextPath;
+            serverName = template.serverName;
+            serverPort = template.serverPort;
+            webSocketFakeSession = template.webSocketFakeSession;
+            queryString = template.queryString;
+            isSecure = template.isSecure;
+            lazyRemote = template.lazyRemote;
+            lazyLocal = template.lazyLocal;
+        }
+
+        /**
+         * Create a new {@link Builder} using this instance as a template. The returned {@link Builder} gets its own copies
+         * of the headers, query strings, attributes, cookies and locales of this instance, so a derived request can't
+         * modify the template or the other derived requests.
+         *
+         * @return a new {@link Builder} derived from this instance.
+         */
+        public Builder derive() {
+            return new Builder(this);
         }
 
         public Builder destroyable(boolean destroyable) {
@@ -1193,7 +1455,7 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
         }
 
         public Builder attributes(Map<String, Object> attributes) {
-            localAttributes = Collections.synchronizedMap(attributes);
+            localAttributes = ConcurrentHashMap.class.isAssignableFrom(attributes.getClass()) ? attributes : Collections.synchronizedMap(attributes);
             return this;
         }
 
@@ -1335,6 +1597,12 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
             this.principal = userPrincipal;
             return this;
         }
+
+        private static <K, V> Map<K, V> copy(Map<K, V> m) {
+            synchronized (m) {
+                return Collections.synchronizedMap(new HashMap<K, V>(m));
+            }
+        }
     }
 
     public final static class Body {
@@ -1853,12 +2121,14 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
         }
 
         Builder b = new Builder();
+        Map<String, Object> attributes = new HashMap<String, Object>();
         Enumeration<String> e = request.getAttributeNames();
         String s;
         while (e.hasMoreElements()) {
             s = e.nextElement();
-            b.localAttributes.put(s, request.getAttribute(s));
+            attributes.put(s, request.getAttribute(s));
         }
+        b.localAttributes.putAll(attributes);
         return b.request(request).build();
     }
 
@@ -1876,12 +2146,7 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
         HttpServletRequest r;
 
         Cookie[] cs = request.getCookies();
-        Set<Cookie> hs = Collections.synchronizedSet(new HashSet());
-        if (cs != null) {
-            for (Cookie c : cs) {
-                hs.add(c);
-            }
-        }
+        Set<Cookie> hs = cs != null ? new CopyOnWriteArraySet<Cookie>(Arrays.asList(cs)) : new CopyOnWriteArraySet<Cookie>();
 
         boolean isWrapped = false;
         if (AtmosphereRequest.class.isAssignableFrom(request.getClass())) {
@@ -1934,30 +2199,34 @@ public class AtmosphereRequest extends HttpServletRequestWrapper {
     }
 
     private static void load(HttpServletRequest request, Builder b) {
+        // Collect first so every map is filled with a single putAll.
+        Map<String, String> headers = new HashMap<String, String>();
         Enumeration<String> e = request.getHeaderNames();
         String s;
         while (e.hasMoreElements()) {
             s = e.nextElement();
-            b.headers.put(s, request.getHeader(s));
+            headers.put(s, request.getHeader(s));
         }
+        b.headers.putAll(headers);
 
+        Map<String, Object> attributes = new HashMap<String, Object>();
         e = request.getAttributeNames();
         while (e.hasMoreElements()) {
             s = e.nextElement();
-            b.localAttributes.put(s, request.getAttribute(s));
+            attributes.put(s, request.getAttribute(s));
         }
+        b.localAttributes.putAll(attributes);
 
+        Map<String, String[]> queryStrings = new HashMap<String, String[]>();
         e = request.getParameterNames();
         while (e.hasMoreElements()) {
             s = e.nextElement();
-            b.queryStrings.put(s, request.getParameterValues(s));
+            queryStrings.put(s, request.getParameterValues(s));
         }
+        b.queryStrings.putAll(queryStrings);
         b.queryString = request.getQueryString();
 
-        Enumeration<Locale> l = request.getLocales();
-        while (l.hasMoreElements()) {
-            b.locale(l.nextElement());
-        }
+        b.locales.addAll(Collections.list(request.getLocales()));
     }
 
     private static final class LazyComputation {
@@ -270,6 +270,10 @@ public final class AtmosphereResourceFactory {
      * @return all {@link Broadcaster} associated with a {@link AtmosphereResource#uuid}
      */
     public final Set<Broadcaster> broadcasters(String uuid) {
+        if (DefaultBroadcasterFactory.class.isAssignableFrom(broadcasterFactory.getClass())) {
+            return DefaultBroadcasterFactory.class.cast(broadcasterFactory).broadcasters(uuid);
+        }
+
         Collection<Broadcaster> l = broadcasterFactory.lookupAll();
         Set<Broadcaster> h = new HashSet<Broadcaster>();
         for (Broadcaster b : l) {
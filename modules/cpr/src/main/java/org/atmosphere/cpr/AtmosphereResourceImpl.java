@@ -25,7 +25,6 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.util.Enumeration;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -77,6 +76,8 @@ public class AtmosphereResourceImpl implements AtmosphereResource {
     protected HttpSession session;
     private boolean disableSuspendEvent;
     private TRANSPORT transport;
+    // The transport the suspended connection has been recorded with.
+    private volatile TRANSPORT suspendedTransport;
     private boolean forceBinaryWrite;
     private final AtomicBoolean suspended = new AtomicBoolean();
     private WebSocket webSocket;
@@ -118,7 +119,7 @@ public class AtmosphereResourceImpl implements AtmosphereResource {
         if (s == null) {
             s = response.getHeader(HeaderConfig.X_ATMOSPHERE_TRACKING_ID);
         }
-        uuid = s == null ? UUID.randomUUID().toString() : s;
+        uuid = s == null ? config.uuidProvider().generateUuid() : s;
 
         if (config.isSupportSession()) {
             // Keep a reference to an HttpSession in case the associated request get recycled by the underlying container.
@@ -243,7 +244,7 @@ public class AtmosphereResourceImpl implements AtmosphereResource {
 
         try {
             if (!isResumed.getAndSet(true) && isInScope.get()) {
-                suspended.set(false);
+                released();
                 logger.trace("AtmosphereResource {} is resuming", uuid());
 
                 action.type(Action.TYPE.RESUME);
@@ -343,7 +344,10 @@ public class AtmosphereResourceImpl implements AtmosphereResource {
         if (event.isSuspended() || disableSuspend) return this;
 
         if (!event.isResumedOnTimeout()) {
-            suspended.set(true);
+            if (!suspended.getAndSet(true)) {
+                suspendedTransport = transport;
+                config.metricsRegistry().connectionSuspended(suspendedTransport);
+            }
 
             Enumeration<String> connection = req.getHeaders("Connection");
             if (connection == null) {
@@ -387,7 +391,7 @@ public class AtmosphereResourceImpl implements AtmosphereResource {
 
                 broadcaster = config.getBroadcasterFactory().lookup(clazz, id, false);
                 if (broadcaster == null || broadcaster.getAtmosphereResources().size() > 0) {
-                    broadcaster = config.getBroadcasterFactory().lookup(clazz, id + "/" + UUID.randomUUID(), true);
+                    broadcaster = config.getBroadcasterFactory().lookup(clazz, id + "/" + config.uuidProvider().generateUuid(), true);
                 }
             }
 
@@ -450,7 +454,7 @@ public class AtmosphereResourceImpl implements AtmosphereResource {
 
             Broadcaster.SCOPE scope = broadcaster.getScope();
             synchronized (this) {
-                String id = scope != Broadcaster.SCOPE.REQUEST ? broadcaster.getID() : broadcaster.getID() + ".recovered" + UUID.randomUUID();
+                String id = scope != Broadcaster.SCOPE.REQUEST ? broadcaster.getID() : broadcaster.getID() + ".recovered" + config.uuidProvider().generateUuid();
 
                 // Another Thread may have added the Broadcaster.
                 broadcaster = config.getBroadcasterFactory().lookup(id, true);
@@ -722,10 +726,16 @@ public class AtmosphereResourceImpl implements AtmosphereResource {
         return this;
     }
 
+    private void released() {
+        if (suspended.getAndSet(false)) {
+            config.metricsRegistry().connectionReleased(suspendedTransport);
+        }
+    }
+
     public void cancel() throws IOException {
         try {
             if (!isCancelled.getAndSet(true)) {
-                suspended.set(false);
+                released();
                 logger.trace("Cancelling {}", uuid);
 
                 if (config.getBroadcasterFactory() != null) {
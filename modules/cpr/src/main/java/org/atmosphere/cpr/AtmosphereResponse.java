@@ -917,9 +917,14 @@ public class AtmosphereResponse extends HttpServletResponseWrapper {
 
     private boolean isUsingStream() {
         if (atmosphereRequest != null) {
-            Object s = atmosphereRequest.getAttribute(PROPERTY_USE_STREAM);
+            Boolean s = atmosphereRequest.useStream();
+            if (s == null) {
+                // Set by an application using the attribute on the wrapped request.
+                Object o = atmosphereRequest.getAttribute(PROPERTY_USE_STREAM);
+                s = o != null ? (Boolean) o : null;
+            }
             if (s != null) {
-                usingStream.set((Boolean) s);
+                usingStream.set(s);
             }
         }
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+/**
+ * The {@link System#nanoTime()} checkpoints of a sampled message, from the moment it is queued by a
+ * {@link Broadcaster} until it has been written to an {@link AtmosphereResource}. A trace is delivered to the
+ * {@link BroadcastTraceListener}s once per {@link AtmosphereResource} the message has been written to.
+ * <p/>
+ * Tracing is enabled by setting {@link ApplicationConfig#BROADCAST_TRACE_SAMPLING}.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public final class BroadcastTrace {
+
+    public enum STAGE {
+        /**
+         * The message has been queued by {@link Broadcaster#broadcast(Object)}, after the {@link BroadcastFilter}s ran.
+         */
+        QUEUED,
+        /**
+         * The message has been taken from the queue by a dispatching thread.
+         */
+        DISPATCHED,
+        /**
+         * The message has been transformed and added to the {@link org.atmosphere.cache.BroadcasterCache}.
+         */
+        CACHED,
+        /**
+         * The message has been queued for the {@link AtmosphereResource}'s write.
+         */
+        WRITE_QUEUED,
+        /**
+         * A writing thread is about to write the message.
+         */
+        WRITE_STARTED,
+        /**
+         * The message has been written, including the {@link AtmosphereInterceptor}s transformations.
+         */
+        WRITTEN
+    }
+
+    private final static STAGE[] STAGES = STAGE.values();
+
+    private final long[] stamps;
+
+    public BroadcastTrace() {
+        stamps = new long[STAGES.length];
+    }
+
+    private BroadcastTrace(long[] stamps) {
+        this.stamps = stamps.clone();
+    }
+
+    /**
+     * Record the current time for a stage.
+     *
+     * @param stage the {@link STAGE}
+     * @return this
+     */
+    public BroadcastTrace stamp(STAGE stage) {
+        stamps[stage.ordinal()] = System.nanoTime();
+        return this;
+    }
+
+    /**
+     * Return the time, as returned by {@link System#nanoTime()}, a stage has been reached at.
+     *
+     * @param stage the {@link STAGE}
+     * @return the time, or 0 if the stage hasn't been reached
+     */
+    public long stampOf(STAGE stage) {
+        return stamps[stage.ordinal()];
+    }
+
+    /**
+     * Return the nanoseconds elapsed between two stages.
+     *
+     * @param from the first {@link STAGE}
+     * @param to   the last {@link STAGE}
+     * @return the nanoseconds, or -1 if one of the stages hasn't been reached
+     */
+    public long latency(STAGE from, STAGE to) {
+        long f = stamps[from.ordinal()];
+        long t = stamps[to.ordinal()];
+        return f == 0 || t == 0 ? -1 : t - f;
+    }
+
+    /**
+     * Return the nanoseconds elapsed between a stage and the one preceding it.
+     *
+     * @param stage the {@link STAGE}
+     * @return the nanoseconds, or -1 for {@link STAGE#QUEUED} or if one of the stages hasn't been reached
+     */
+    public long latency(STAGE stage) {
+        return stage.ordinal() == 0 ? -1 : latency(STAGES[stage.ordinal() - 1], stage);
+    }
+
+    /**
+     * Return the nanoseconds elapsed between the message's publication and its write.
+     *
+     * @return the nanoseconds, or -1 if the message hasn't been written
+     */
+    public long total() {
+        return latency(STAGE.QUEUED, STAGE.WRITTEN);
+    }
+
+    /**
+     * Copy this trace so the per {@link AtmosphereResource} stages can be recorded independently.
+     *
+     * @return a copy
+     */
+    public BroadcastTrace copy() {
+        return new BroadcastTrace(stamps);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("BroadcastTrace{");
+        for (int i = 1; i < STAGES.length; i++) {
+            if (i > 1) b.append(", ");
+            b.append(STAGES[i]).append('=').append(latency(STAGES[i]));
+        }
+        return b.append('}').toString();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+/**
+ * Receive the {@link BroadcastTrace} of sampled messages, once per {@link AtmosphereResource} a message has been
+ * written to. Listeners are added using {@link AtmosphereFramework#addBroadcastTraceListener(BroadcastTraceListener)}
+ * and the sampling rate configured using {@link ApplicationConfig#BROADCAST_TRACE_SAMPLING}.
+ * <p/>
+ * This method is invoked by the writing threads, hence an implementation must be thread safe and must not block. A
+ * typical implementation records {@link BroadcastTrace#latency(BroadcastTrace.STAGE)} of every stage in a histogram.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public interface BroadcastTraceListener {
+
+    /**
+     * Invoked when a sampled message has been written.
+     *
+     * @param b     the {@link Broadcaster}
+     * @param r     the {@link AtmosphereResource} the message has been written to
+     * @param trace the {@link BroadcastTrace}
+     */
+    void onTrace(Broadcaster b, AtmosphereResource r, BroadcastTrace trace);
+}
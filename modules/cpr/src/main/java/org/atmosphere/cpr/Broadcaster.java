@@ -57,6 +57,14 @@ public interface Broadcaster {
         FIFO, REJECT
     }
 
+    /**
+     * The priority of a message. When {@link ApplicationConfig#BROADCASTER_PRIORITIES} is set, messages of a higher
+     * priority are delivered before the queued messages of a lower one, which makes them a good fit for control messages.
+     */
+    enum PRIORITY {
+        LOW, NORMAL, HIGH
+    }
+
     /**
      * Configure a Broadcaster.
      * @param name
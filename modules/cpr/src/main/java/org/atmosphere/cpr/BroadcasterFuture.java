@@ -16,23 +16,27 @@
 
 package org.atmosphere.cpr;
 
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simple {@link Future} that can be used when awaiting for a {@link Broadcaster} to finish
  * its broadcast operation to {@link AtmosphereHandler}.
+ * <p/>
+ * Completion is tracked using a single atomic counter. Threads only synchronize when {@link #get()} is invoked
+ * before the operation completes, so a {@link Broadcaster} pays no locking cost when nobody waits on the future.
  *
  * @author Jeanfrancois Arcand
  */
 public class BroadcasterFuture<E> implements Future {
 
-    private final CountDownLatch latch;
-    private boolean isCancelled = false;
-    private boolean isDone = false;
+    private final AtomicInteger count;
+    private volatile boolean isCancelled = false;
+    private volatile boolean isDone = false;
+    private volatile boolean waiting = false;
     private final E msg;
     private final Future<?> innerFuture;
 
@@ -52,9 +56,10 @@ public class BroadcasterFuture<E> implements Future {
         this.msg = msg;
         this.innerFuture = innerFuture;
         if (innerFuture == null) {
-            latch = new CountDownLatch(latchCount);
+            if (latchCount < 0) throw new IllegalArgumentException("count < 0");
+            count = new AtomicInteger(latchCount);
         } else {
-            latch = null;
+            count = null;
         }
     }
 
@@ -66,9 +71,8 @@ public class BroadcasterFuture<E> implements Future {
         }
         isCancelled = true;
 
-        while (latch.getCount() > 0) {
-            latch.countDown();
-        }
+        count.set(0);
+        signal();
         return isCancelled;
     }
 
@@ -99,8 +103,8 @@ public class BroadcasterFuture<E> implements Future {
     public BroadcasterFuture<E> done() {
         isDone = true;
 
-        if (latch != null) {
-            latch.countDown();
+        if (count != null && count.decrementAndGet() <= 0) {
+            signal();
         }
         return this;
     }
@@ -111,7 +115,7 @@ public class BroadcasterFuture<E> implements Future {
             return (E) innerFuture.get();
         }
 
-        latch.await();
+        await(false, 0);
         return msg;
 
     }
@@ -123,7 +127,34 @@ public class BroadcasterFuture<E> implements Future {
             return (E) innerFuture.get();
         }
 
-        latch.await(l, tu);
+        await(true, tu.toNanos(l));
         return msg;
     }
+
+    private void signal() {
+        // Only lock when a Thread is, or is about to be, blocked inside get()
+        if (waiting) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void await(boolean timed, long nanos) throws InterruptedException {
+        if (count.get() <= 0) return;
+
+        waiting = true;
+        long deadline = System.nanoTime() + nanos;
+        synchronized (this) {
+            while (count.get() > 0) {
+                if (!timed) {
+                    wait();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return;
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+import org.atmosphere.util.ExecutorsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.atmosphere.cpr.BroadcasterLifeCyclePolicy.ATMOSPHERE_RESOURCE_POLICY.IDLE;
+import static org.atmosphere.cpr.BroadcasterLifeCyclePolicy.ATMOSPHERE_RESOURCE_POLICY.IDLE_DESTROY;
+import static org.atmosphere.cpr.BroadcasterLifeCyclePolicy.ATMOSPHERE_RESOURCE_POLICY.IDLE_RESUME;
+
+/**
+ * Apply the IDLE, IDLE_RESUME and IDLE_DESTROY {@link BroadcasterLifeCyclePolicy} of all the {@link DefaultBroadcaster}s
+ * created by a {@link DefaultBroadcasterFactory} from a single scheduled task, instead of one task per
+ * {@link Broadcaster}.
+ * <p/>
+ * Broadcasters are kept ordered by idle deadline. Every sweep only visits the Broadcasters whose deadline has passed: a
+ * Broadcaster which has been active since is moved to its new deadline, the others get their policy applied.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class BroadcasterLifeCycleSweeper implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcasterLifeCycleSweeper.class);
+
+    private final AtmosphereConfig config;
+    private final DelayQueue<Entry> deadlines = new DelayQueue<Entry>();
+    private ScheduledExecutorService scheduler;
+    private Future<?> task;
+    private long period = -1;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    public BroadcasterLifeCycleSweeper(AtmosphereConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Start applying an idle {@link BroadcasterLifeCyclePolicy} to a {@link DefaultBroadcaster}. The previous policy of
+     * the Broadcaster, if any, is no longer applied.
+     *
+     * @param b      the {@link DefaultBroadcaster}
+     * @param policy an IDLE, IDLE_RESUME or IDLE_DESTROY {@link BroadcasterLifeCyclePolicy}
+     */
+    public void register(DefaultBroadcaster b, BroadcasterLifeCyclePolicy policy) {
+        if (policy.getLifeCyclePolicy() != IDLE
+                && policy.getLifeCyclePolicy() != IDLE_RESUME
+                && policy.getLifeCyclePolicy() != IDLE_DESTROY) {
+            throw new IllegalArgumentException("Not an idle policy " + policy.getLifeCyclePolicy());
+        }
+
+        long timeout = policy.getTimeUnit().toMillis(policy.getTimeout());
+        Entry e = new Entry(b, policy, timeout);
+        b.lifeCycleEntry = e;
+        e.deadline = System.currentTimeMillis() + timeout;
+        deadlines.offer(e);
+        schedule(timeout);
+    }
+
+    private synchronized void schedule(long timeout) {
+        // Sweep at least as often as the shortest idle time, and at least every second.
+        long p = Math.max(1, Math.min(timeout, 1000));
+        if (task != null && p >= period) return;
+
+        if (scheduler == null) {
+            scheduler = ExecutorsFactory.getScheduler(config);
+        }
+        if (task != null) {
+            task.cancel(false);
+        }
+        period = p;
+        task = scheduler.scheduleWithFixedDelay(this, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        // The task may briefly run twice when its period gets shortened.
+        if (!sweeping.compareAndSet(false, true)) return;
+
+        try {
+            sweep(System.currentTimeMillis());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private void sweep(long now) {
+        Entry e;
+        // Only returns the Broadcasters whose deadline has passed.
+        while ((e = deadlines.poll()) != null) {
+            if (e.deadline > now) {
+                // Rescheduled during this sweep.
+                deadlines.offer(e);
+                return;
+            }
+
+            DefaultBroadcaster b = e.broadcaster;
+            if (b.lifeCycleEntry != e || b.isDestroyed()) {
+                continue;
+            }
+
+            long idleDeadline = b.lastActivity + e.timeout;
+            if (idleDeadline > now) {
+                e.deadline = idleDeadline;
+                deadlines.offer(e);
+                continue;
+            }
+
+            try {
+                if (b.applyIdlePolicy(e.policy)) {
+                    continue;
+                }
+            } catch (Throwable t) {
+                logger.warn("BroadcasterLifeCyclePolicy exception for Broadcaster {}", b.getID(), t);
+            }
+            e.deadline = now + e.timeout;
+            deadlines.offer(e);
+        }
+    }
+
+    /**
+     * Stop sweeping.
+     */
+    public synchronized void destroy() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        if (scheduler != null && !config.framework().isShareExecutorServices()) {
+            scheduler.shutdown();
+        }
+        scheduler = null;
+        deadlines.clear();
+    }
+
+    static final class Entry implements Delayed {
+
+        private final DefaultBroadcaster broadcaster;
+        private final BroadcasterLifeCyclePolicy policy;
+        private final long timeout;
+        // Only modified when the Entry isn't queued.
+        private volatile long deadline;
+
+        private Entry(DefaultBroadcaster broadcaster, BroadcasterLifeCyclePolicy policy, long timeout) {
+            this.broadcaster = broadcaster;
+            this.policy = policy;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            long d = deadline - ((Entry) o).deadline;
+            return d < 0 ? -1 : d > 0 ? 1 : 0;
+        }
+    }
+}
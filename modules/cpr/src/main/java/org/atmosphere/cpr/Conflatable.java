@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+/**
+ * A message carrying a conflation key. When conflation is enabled using
+ * {@link ApplicationConfig#BROADCASTER_CONFLATION}, a {@link DefaultBroadcaster} replaces a message queued for an
+ * {@link AtmosphereResource}, but not yet written, by a newer message sharing the same key. Slow clients then receive
+ * the latest value of every key instead of all of them, and the write queue of an {@link AtmosphereResource} never
+ * holds more messages than there are keys.
+ * <p/>
+ * This is suitable for messages representing the latest state of something, like a quote or a position. A replaced
+ * message is considered as delivered: its {@link BroadcasterFuture} completes and it is removed from the
+ * {@link org.atmosphere.cache.BroadcasterCache}.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public interface Conflatable {
+
+    /**
+     * Return the conflation key of this message.
+     *
+     * @return the conflation key, or null if this message must never be replaced
+     */
+    Object conflationKey();
+}
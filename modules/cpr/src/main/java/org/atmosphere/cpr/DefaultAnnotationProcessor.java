@@ -36,6 +36,7 @@ import org.atmosphere.config.service.WebSocketProcessorService;
 import org.atmosphere.config.service.WebSocketProtocolService;
 import org.atmosphere.util.IOUtils;
 import org.atmosphere.util.annotation.AnnotationDetector;
+import org.atmosphere.util.annotation.AnnotationIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,15 +45,25 @@ import javax.servlet.annotation.HandlesTypes;
 import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * An {@link AnnotationProcessor} that selects between a ServletContextInitializer based scanner, and
- * a bytecode based scanner based on <a href="https://github.com/rmuller/infomas-asl"></a>.
+ * An {@link AnnotationProcessor} that selects between a ServletContextInitializer based scanner, an index based
+ * processor reading the {@link AnnotationIndex} generated at build time, and a bytecode based scanner based on
+ * <a href="https://github.com/rmuller/infomas-asl"></a>. The index is only trusted for the jar files and directories
+ * shipping it, the others are scanned. The bytecode based scanner scans jar files concurrently, see
+ * {@link ApplicationConfig#ANNOTATION_SCANNING_THREADS}.
  * <p/>
  *
  * @author Jeanfrancois Arcand
@@ -125,8 +136,18 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
         //sc.removeAttribute(ANNOTATION_ATTRIBUTE);
 
         boolean scanForAtmosphereAnnotation = false;
+        boolean scanHandlersPath = true;
         if (annotations == null || annotations.isEmpty()) {
-            delegate = new BytecodeBasedAnnotationProcessor(handler);
+            Map<File, Map<String, Set<String>>> index = readIndex();
+            if (index.isEmpty()) {
+                delegate = new BytecodeBasedAnnotationProcessor(handler);
+            } else {
+                IndexBasedAnnotationProcessor p = new IndexBasedAnnotationProcessor(handler, index, framework);
+                delegate = p;
+                // The application's @AtmosphereAnnotation are indexed only if its classes ship the index.
+                String path = IOUtils.realPath(sc, framework.getHandlersPath());
+                scanHandlersPath = path == null || !p.indexed(new File(path));
+            }
             scanForAtmosphereAnnotation = true;
         } else {
             Map<Class<? extends Annotation>, Set<Class<?>>> clone = new HashMap<Class<? extends Annotation>, Set<Class<?>>>();
@@ -136,14 +157,24 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
         logger.info("AnnotationProcessor {} being used", delegate.getClass());
 
         if (scanForAtmosphereAnnotation) {
-            scanForAnnotation(framework);
+            scanForAnnotation(framework, scanHandlersPath);
         }
 
         delegate.configure(framework);
         return this;
     }
 
-    private void scanForAnnotation(AtmosphereFramework f) {
+    private static Map<File, Map<String, Set<String>>> readIndex() {
+        try {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            return AnnotationIndex.readByRoot(loader != null ? loader : DefaultAnnotationProcessor.class.getClassLoader());
+        } catch (IOException e) {
+            logger.warn("Unable to read the annotation index", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private void scanForAnnotation(AtmosphereFramework f, boolean scanHandlersPath) {
         List<String> packages = f.customAnnotationPackages();
         AnnotationDetector detector = new AnnotationDetector(atmosphereReporter);
         try {
@@ -155,7 +186,7 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
             }
 
             // Now look for application defined annotation
-            String path = IOUtils.realPath(f.getServletContext(), f.getHandlersPath());
+            String path = scanHandlersPath ? IOUtils.realPath(f.getServletContext(), f.getHandlersPath()) : null;
             if (path != null) {
                 detector.detect(new File(path));
             }
@@ -191,6 +222,27 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
         return this;
     }
 
+    /**
+     * Scan files or directories, e.g the jar files of an application. Depending on the {@link AnnotationProcessor}
+     * selected, they may be scanned concurrently.
+     *
+     * @param files files or directories
+     * @return this
+     * @throws IOException
+     */
+    public AnnotationProcessor scan(final File[] files) throws IOException {
+        if (BytecodeBasedAnnotationProcessor.class.isAssignableFrom(delegate.getClass())) {
+            BytecodeBasedAnnotationProcessor.class.cast(delegate).scan(files);
+        } else if (IndexBasedAnnotationProcessor.class.isAssignableFrom(delegate.getClass())) {
+            IndexBasedAnnotationProcessor.class.cast(delegate).scan(files);
+        } else {
+            for (File f : files) {
+                delegate.scan(f);
+            }
+        }
+        return this;
+    }
+
     @Override
     public AnnotationProcessor scan(final String packageName) throws IOException {
         delegate.scan(packageName);
@@ -324,13 +376,140 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
         }
     }
 
+    private static final class IndexBasedAnnotationProcessor implements AnnotationProcessor {
+
+        private final AnnotationHandler handler;
+        private final Map<File, Map<String, Set<String>>> index;
+        private final AtmosphereFramework framework;
+        private final Set<String> handled = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        // Scans the jar files and directories without an index.
+        private final BytecodeBasedAnnotationProcessor scanner;
+
+        private IndexBasedAnnotationProcessor(AnnotationHandler handler, Map<File, Map<String, Set<String>>> index, AtmosphereFramework framework) {
+            this.handler = handler;
+            this.index = index;
+            this.framework = framework;
+            this.scanner = new BytecodeBasedAnnotationProcessor(handler, handled);
+        }
+
+        @Override
+        public AnnotationProcessor configure(final AtmosphereFramework framework) {
+            scanner.configure(framework);
+            for (Map<String, Set<String>> i : index.values()) {
+                Set<String> processors = i.get(AtmosphereAnnotation.class.getName());
+                if (processors == null) continue;
+
+                for (String p : processors) {
+                    try {
+                        handler.handleProcessor(loadClass(getClass(), p));
+                    } catch (Exception e) {
+                        logger.warn("Error loading indexed @AtmosphereAnnotation {}", p, e);
+                    }
+                }
+            }
+            return this;
+        }
+
+        private boolean indexed(File f) {
+            return index.containsKey(canonical(f));
+        }
+
+        @Override
+        public AnnotationProcessor scan(final File rootDir) throws IOException {
+            Map<String, Set<String>> i = index.get(canonical(rootDir));
+            if (i == null) {
+                scanner.scan(rootDir);
+            } else {
+                // All the classes are indexed, there is no need to look at the file.
+                handle(i, null);
+            }
+            return this;
+        }
+
+        private AnnotationProcessor scan(final File[] files) throws IOException {
+            List<File> unindexed = new ArrayList<File>();
+            for (File f : files) {
+                Map<String, Set<String>> i = index.get(canonical(f));
+                if (i == null) {
+                    unindexed.add(f);
+                } else {
+                    handle(i, null);
+                }
+            }
+
+            if (!unindexed.isEmpty()) {
+                scanner.scan(unindexed.toArray(new File[unindexed.size()]));
+            }
+            return this;
+        }
+
+        @Override
+        public AnnotationProcessor scan(final String packageName) throws IOException {
+            for (Map<String, Set<String>> i : index.values()) {
+                handle(i, packageName);
+            }
+            // The package may also live in a jar file or directory without an index.
+            scanner.scan(packageName);
+            return this;
+        }
+
+        @Override
+        public AnnotationProcessor scanAll() throws IOException {
+            for (Map<String, Set<String>> i : index.values()) {
+                handle(i, null);
+            }
+            scanner.scanAll();
+            return this;
+        }
+
+        private void handle(Map<String, Set<String>> i, String packageName) {
+            for (Class<? extends Annotation> annotation : handler.handledClass()) {
+                Set<String> classes = i.get(annotation.getName());
+                if (classes == null) continue;
+
+                for (String className : classes) {
+                    if ((packageName == null || className.startsWith(packageName)) && handled.add(annotation.getName() + " " + className)) {
+                        try {
+                            handler.handleAnnotation(framework, annotation, loadClass(getClass(), className));
+                        } catch (Exception e) {
+                            logger.warn("Could not load indexed class {}", className, e);
+                        }
+                    }
+                }
+            }
+        }
+
+        private static File canonical(File f) {
+            try {
+                return f.getCanonicalFile();
+            } catch (IOException e) {
+                return f.getAbsoluteFile();
+            }
+        }
+
+        @Override
+        public void destroy() {
+            scanner.destroy();
+            index.clear();
+            handled.clear();
+        }
+    }
+
     private static final class BytecodeBasedAnnotationProcessor implements AnnotationProcessor {
 
         protected AnnotationDetector detector;
         protected final AnnotationHandler handler;
+        // The classes already handled by another processor, or null.
+        private final Set<String> handled;
+        private int threads = Runtime.getRuntime().availableProcessors();
 
         public BytecodeBasedAnnotationProcessor(AnnotationHandler handler) {
+            this(handler, null);
+        }
+
+        private BytecodeBasedAnnotationProcessor(AnnotationHandler handler, Set<String> handled) {
             this.handler = handler;
+            this.handled = handled;
         }
 
         @Override
@@ -345,6 +524,8 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
 
                 @Override
                 public void reportTypeAnnotation(Class<? extends Annotation> annotation, String className) {
+                    if (handled != null && !handled.add(annotation.getName() + " " + className)) return;
+
                     try {
                         final Class<?> discoveredClass = loadClass(getClass(), className);
                         handler.handleAnnotation(framework, annotation, discoveredClass);
@@ -355,6 +536,11 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
 
             };
             detector = new AnnotationDetector(reporter);
+
+            String s = framework.getAtmosphereConfig().getInitParameter(ApplicationConfig.ANNOTATION_SCANNING_THREADS);
+            if (s != null) {
+                threads = Integer.valueOf(s);
+            }
             return this;
         }
 
@@ -364,6 +550,31 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
             return this;
         }
 
+        public AnnotationProcessor scan(File[] files) throws IOException {
+            if (threads < 2 || files.length < 2) {
+                detector.detect(files);
+                return this;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.length), new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread t = new Thread(runnable, "Atmosphere-AnnotationScanner-" + count.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            try {
+                detector.detect(executor, files);
+            } finally {
+                executor.shutdownNow();
+            }
+            return this;
+        }
+
         @Override
         public AnnotationProcessor scan(String packageName) throws IOException {
             logger.trace("Scanning @Service annotations in {}", packageName);
@@ -18,8 +18,14 @@ package org.atmosphere.cpr;
 
 import org.atmosphere.cache.BroadcastMessage;
 import org.atmosphere.cache.CacheMessage;
+import org.atmosphere.cache.SequencedBroadcasterCache;
 import org.atmosphere.cpr.BroadcastFilter.BroadcastAction;
+import org.atmosphere.util.MetricsRegistry;
+import org.atmosphere.util.NoOpMetricsRegistry;
+import org.atmosphere.util.PriorityLaneQueue;
 import org.atmosphere.util.Utils;
+import org.atmosphere.websocket.WebSocket;
+import org.atmosphere.websocket.WebSocketOutboundQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,11 +38,11 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -47,7 +53,6 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.atmosphere.cpr.ApplicationConfig.BROADCASTER_WAIT_TIME;
-import static org.atmosphere.cpr.ApplicationConfig.MAX_INACTIVE;
 import static org.atmosphere.cpr.ApplicationConfig.OUT_OF_ORDER_BROADCAST;
 import static org.atmosphere.cpr.ApplicationConfig.SUSPENDED_ATMOSPHERE_RESOURCE_UUID;
 import static org.atmosphere.cpr.BroadcasterLifeCyclePolicy.ATMOSPHERE_RESOURCE_POLICY.EMPTY;
@@ -76,11 +81,13 @@ public class DefaultBroadcaster implements Broadcaster {
     private static final Logger logger = LoggerFactory.getLogger(DefaultBroadcaster.class);
     private static final String DESTROYED = "This Broadcaster has been destroyed and cannot be used {} by invoking {}";
     private static final List<AtmosphereResourceEventListener> EMPTY_LISTENERS = new ArrayList<AtmosphereResourceEventListener>();
+    private static final MetricsRegistry NOOP_METRICS = new NoOpMetricsRegistry();
 
     protected final ConcurrentLinkedQueue<AtmosphereResource> resources =
             new ConcurrentLinkedQueue<AtmosphereResource>();
     protected BroadcasterConfig bc;
-    protected final BlockingQueue<Deliver> messages = new LinkedBlockingQueue<Deliver>();
+    // Replaced by a PriorityLaneQueue when ApplicationConfig.BROADCASTER_PRIORITIES is set.
+    protected BlockingQueue<Deliver> messages = new LinkedBlockingQueue<Deliver>();
     protected final ConcurrentLinkedQueue<BroadcasterListener> broadcasterListeners = new ConcurrentLinkedQueue<BroadcasterListener>();
 
     protected final AtomicBoolean started = new AtomicBoolean(false);
@@ -93,7 +100,7 @@ public class DefaultBroadcaster implements Broadcaster {
     protected final ConcurrentLinkedQueue<Deliver> broadcastOnResume = new ConcurrentLinkedQueue<Deliver>();
     protected final ConcurrentLinkedQueue<BroadcasterLifeCyclePolicyListener> lifeCycleListeners = new ConcurrentLinkedQueue<BroadcasterLifeCyclePolicyListener>();
     protected final ConcurrentHashMap<String, WriteQueue> writeQueues = new ConcurrentHashMap<String, WriteQueue>();
-    protected final WriteQueue uniqueWriteQueue = new WriteQueue("-1");
+    protected WriteQueue uniqueWriteQueue = new WriteQueue("-1");
     protected final AtomicInteger dispatchThread = new AtomicInteger();
 
     protected Future<?>[] notifierFuture;
@@ -106,6 +113,9 @@ public class DefaultBroadcaster implements Broadcaster {
     private BroadcasterLifeCyclePolicy lifeCyclePolicy = new BroadcasterLifeCyclePolicy.Builder()
             .policy(NEVER).build();
     private Future<?> currentLifecycleTask;
+    // Set when the BroadcasterLifeCycleSweeper applies the lifecycle policy.
+    volatile BroadcasterLifeCycleSweeper.Entry lifeCycleEntry;
+    volatile long lastActivity = System.currentTimeMillis();
     protected URI uri;
     protected AtmosphereConfig config;
     private final Object[] awaitBarrier = new Object[0];
@@ -113,6 +123,24 @@ public class DefaultBroadcaster implements Broadcaster {
     protected int writeTimeoutInSecond = -1;
     protected int waitTime = POLLING_DEFAULT;
     private boolean backwardCompatible = false;
+    protected MetricsRegistry metrics = NOOP_METRICS;
+    // False for the NoOpMetricsRegistry, so the hot paths don't read the clock for nothing.
+    protected boolean recordMetrics;
+    protected int traceSampling;
+    protected List<BroadcastTraceListener> traceListeners = Collections.emptyList();
+    private final AtomicLong traceCounter = new AtomicLong();
+    protected boolean conflation;
+    protected long batchWindow;
+    protected int batchSize = 100;
+    protected WebSocketOutboundQueue.OVERFLOW overflowPolicy = WebSocketOutboundQueue.OVERFLOW.CACHE;
+    protected boolean sharedDispatcher;
+    // The number of messages, or writes, a task processes before yielding its thread to other Broadcasters.
+    protected int mailboxThroughput = 64;
+    protected boolean priorities;
+    protected int priorityStarvationLimit = PriorityLaneQueue.DEFAULT_STARVATION_LIMIT;
+    private final AtomicBoolean priorityIgnored = new AtomicBoolean();
+    // The priority of the message being broadcast by the calling thread, see broadcast(Object, PRIORITY).
+    private final ThreadLocal<PRIORITY> broadcastPriority = new ThreadLocal<PRIORITY>();
 
 
     public DefaultBroadcaster() {
@@ -133,6 +161,11 @@ public class DefaultBroadcaster implements Broadcaster {
             outOfOrderBroadcastSupported.set(Boolean.valueOf(s));
         }
 
+        sharedDispatcher = config.getInitParameter(ApplicationConfig.BROADCASTER_SHARED_DISPATCHER, false);
+        if (sharedDispatcher && outOfOrderBroadcastSupported.getAndSet(false)) {
+            logger.warn("{} is not supported with {}, messages will be delivered in order", OUT_OF_ORDER_BROADCAST, ApplicationConfig.BROADCASTER_SHARED_DISPATCHER);
+        }
+
         s = config.getInitParameter(BROADCASTER_WAIT_TIME);
         if (s != null) {
             waitTime = Integer.valueOf(s);
@@ -147,6 +180,40 @@ public class DefaultBroadcaster implements Broadcaster {
         }
         initialized.set(true);
         backwardCompatible = Boolean.parseBoolean(config.getInitParameter(ApplicationConfig.BACKWARD_COMPATIBLE_WEBSOCKET_BEHAVIOR));
+        conflation = config.getInitParameter(ApplicationConfig.BROADCASTER_CONFLATION, false);
+        overflowPolicy = WebSocketOutboundQueue.overflowPolicy(config);
+        s = config.getInitParameter(ApplicationConfig.BROADCASTER_BATCH_WINDOW);
+        if (s != null) {
+            batchWindow = Long.valueOf(s);
+        }
+        s = config.getInitParameter(ApplicationConfig.BROADCASTER_BATCH_SIZE);
+        if (s != null) {
+            batchSize = Integer.valueOf(s);
+        }
+        s = config.getInitParameter(ApplicationConfig.BROADCAST_TRACE_SAMPLING);
+        if (s != null) {
+            traceSampling = Integer.valueOf(s);
+        }
+        s = config.getInitParameter(ApplicationConfig.BROADCASTER_PRIORITY_STARVATION_LIMIT);
+        if (s != null) {
+            priorityStarvationLimit = Integer.valueOf(s);
+        }
+        priorities = config.getInitParameter(ApplicationConfig.BROADCASTER_PRIORITIES, false);
+        if (priorities) {
+            PriorityLaneQueue<Deliver> q = new PriorityLaneQueue<Deliver>(PRIORITY.values().length) {
+                @Override
+                protected int lane(Deliver d) {
+                    return d.priority.ordinal();
+                }
+            };
+            messages = q.starvationLimit(priorityStarvationLimit);
+            uniqueWriteQueue = createWriteQueue("-1");
+        }
+        if (config.framework() != null) {
+            metrics = config.metricsRegistry();
+            recordMetrics = metrics.getClass() != NoOpMetricsRegistry.class;
+            traceListeners = config.framework().broadcastTraceListeners();
+        }
         return this;
     }
 
@@ -183,6 +250,7 @@ public class DefaultBroadcaster implements Broadcaster {
             if (currentLifecycleTask != null) {
                 currentLifecycleTask.cancel(true);
             }
+            lifeCycleEntry = null;
             started.set(false);
 
             releaseExternalResources();
@@ -192,6 +260,9 @@ public class DefaultBroadcaster implements Broadcaster {
                 bc.destroy();
             }
 
+            for (AtmosphereResource r : resources) {
+                membership(r, false);
+            }
             resources.clear();
             broadcastOnResume.clear();
             messages.clear();
@@ -226,7 +297,7 @@ public class DefaultBroadcaster implements Broadcaster {
                 // Next, we need to create a new broadcaster per resource.
                 for (AtmosphereResource resource : resources) {
                     Broadcaster b = config.getBroadcasterFactory()
-                            .get(getClass(), getClass().getSimpleName() + "/" + UUID.randomUUID());
+                            .get(getClass(), getClass().getSimpleName() + "/" + config.uuidProvider().generateUuid());
 
                     /**
                      * REQUEST_SCOPE means one BroadcasterCache per Broadcaster,
@@ -264,7 +335,7 @@ public class DefaultBroadcaster implements Broadcaster {
     @Override
     public synchronized void setID(String id) {
         if (id == null) {
-            id = getClass().getSimpleName() + "/" + UUID.randomUUID();
+            id = getClass().getSimpleName() + "/" + config.uuidProvider().generateUuid();
         }
 
         if (config.getBroadcasterFactory() == null)
@@ -315,6 +386,7 @@ public class DefaultBroadcaster implements Broadcaster {
             logger.trace("{} new lifecycle policy: {}", name, lifeCyclePolicy.getLifeCyclePolicy().name());
         }
 
+        lifeCycleEntry = null;
         if (currentLifecycleTask != null) {
             currentLifecycleTask.cancel(false);
         }
@@ -329,41 +401,37 @@ public class DefaultBroadcaster implements Broadcaster {
                 || lifeCyclePolicy.getLifeCyclePolicy() == IDLE_DESTROY) {
 
             recentActivity.set(false);
+            lastActivity = System.currentTimeMillis();
 
             int time = lifeCyclePolicy.getTimeout();
             if (time == -1) {
                 throw new IllegalStateException("BroadcasterLifeCyclePolicy time is not set");
             }
 
+            // A single task checks all the Broadcasters created by the DefaultBroadcasterFactory.
+            BroadcasterFactory factory = config != null ? config.getBroadcasterFactory() : null;
+            if (factory != null && DefaultBroadcasterFactory.class.isAssignableFrom(factory.getClass())) {
+                DefaultBroadcasterFactory.class.cast(factory).lifeCycleSweeper().register(this, lifeCyclePolicy);
+                return;
+            }
+
             final AtomicReference<Future<?>> ref = new AtomicReference<Future<?>>();
             currentLifecycleTask = bc.getScheduledExecutorService().scheduleAtFixedRate(new Runnable() {
 
                 @Override
                 public void run() {
                     try {
-
                         // Check for activity since the last execution.
                         if (recentActivity.getAndSet(false)) {
                             return;
-                        } else if (resources.isEmpty()) {
-                            if (lifeCyclePolicy.getLifeCyclePolicy() == IDLE) {
-                                notifyEmptyListener();
-                                notifyIdleListener();
-
-                                releaseExternalResources();
-                                logger.debug("Applying BroadcasterLifeCyclePolicy IDLE policy to Broadcaster {}", getID());
-                            } else if (lifeCyclePolicy.getLifeCyclePolicy() == IDLE_DESTROY) {
-                                notifyEmptyListener();
-                                notifyIdleListener();
-
-                                destroy(false);
-                                logger.debug("Applying BroadcasterLifeCyclePolicy IDLE_DESTROY policy to Broadcaster {}", getID());
-                            }
-                        } else if (lifeCyclePolicy.getLifeCyclePolicy() == IDLE_RESUME) {
-                            notifyIdleListener();
+                        }
 
-                            destroy(true);
-                            logger.debug("Applying BroadcasterLifeCyclePolicy IDLE_RESUME policy to Broadcaster {}", getID());
+                        /**
+                         * The value may be null if the timeout is too low. Hopefully next execution will
+                         * cancel the task properly.
+                         */
+                        if (applyIdlePolicy(lifeCyclePolicy) && ref.get() != null) {
+                            currentLifecycleTask.cancel(true);
                         }
                     } catch (Throwable t) {
                         if (destroyed.get()) {
@@ -373,27 +441,42 @@ public class DefaultBroadcaster implements Broadcaster {
                         }
                     }
                 }
+            }, time, time, lifeCyclePolicy.getTimeUnit());
+            ref.set(currentLifecycleTask);
+        }
+    }
 
-                void destroy(boolean resume) {
+    /**
+     * Apply an IDLE, IDLE_RESUME or IDLE_DESTROY {@link BroadcasterLifeCyclePolicy} once this Broadcaster has been idle
+     * for the policy's time.
+     *
+     * @param lifeCyclePolicy the {@link BroadcasterLifeCyclePolicy}
+     * @return true if this Broadcaster has been destroyed
+     */
+    protected boolean applyIdlePolicy(BroadcasterLifeCyclePolicy lifeCyclePolicy) {
+        if (resources.isEmpty()) {
+            if (lifeCyclePolicy.getLifeCyclePolicy() == IDLE) {
+                notifyEmptyListener();
+                notifyIdleListener();
 
-                    if (resume) {
-                        logger.info("All AtmosphereResource will now be resumed from Broadcaster {}", getID());
-                        resumeAll();
-                    }
+                releaseExternalResources();
+                logger.debug("Applying BroadcasterLifeCyclePolicy IDLE policy to Broadcaster {}", getID());
+            } else if (lifeCyclePolicy.getLifeCyclePolicy() == IDLE_DESTROY) {
+                notifyEmptyListener();
+                notifyIdleListener();
 
-                    DefaultBroadcaster.this.destroy();
-                    /**
-                     * The value may be null if the timeout is too low. Hopefully next execution will
-                     * cancel the task properly.
-                     */
-                    if (ref.get() != null) {
-                        currentLifecycleTask.cancel(true);
-                    }
-                }
+                destroy();
+                logger.debug("Applying BroadcasterLifeCyclePolicy IDLE_DESTROY policy to Broadcaster {}", getID());
+            }
+        } else if (lifeCyclePolicy.getLifeCyclePolicy() == IDLE_RESUME) {
+            notifyIdleListener();
 
-            }, time, time, lifeCyclePolicy.getTimeUnit());
-            ref.set(currentLifecycleTask);
+            logger.info("All AtmosphereResource will now be resumed from Broadcaster {}", getID());
+            resumeAll();
+            destroy();
+            logger.debug("Applying BroadcasterLifeCyclePolicy IDLE_RESUME policy to Broadcaster {}", getID());
         }
+        return destroyed.get();
     }
 
     @Override
@@ -443,15 +526,42 @@ public class DefaultBroadcaster implements Broadcaster {
 
     protected Runnable getBroadcastHandler() {
         return new Runnable() {
+            // The message which closed the previous batch.
+            private Deliver next;
+
             public void run() {
+                int processed = 0;
                 while (!isDestroyed()) {
-                    Deliver msg = null;
+                    if (sharedDispatcher && processed++ == mailboxThroughput) {
+                        // Give other Broadcasters a chance to run; we are still scheduled.
+                        if (reschedule(bc.getExecutorService(), this)) {
+                            return;
+                        }
+                        processed = 1;
+                    }
+
+                    Deliver msg = next;
+                    next = null;
                     try {
-                        msg = messages.poll(waitTime, TimeUnit.MILLISECONDS);
+                        if (msg == null) {
+                            msg = sharedDispatcher ? messages.poll() : messages.poll(waitTime, TimeUnit.MILLISECONDS);
+                        }
                         if (msg == null) {
                             dispatchThread.decrementAndGet();
+                            // A message may have been queued after the poll, while we were still scheduled.
+                            if (sharedDispatcher && !messages.isEmpty() && dispatchThread.compareAndSet(0, 1)) {
+                                continue;
+                            }
                             return;
                         }
+
+                        if (batchable(msg)) {
+                            List<Deliver> batch = new ArrayList<Deliver>();
+                            next = collectBatch(msg, batch);
+                            if (batch.size() > 1) {
+                                msg = batch(batch);
+                            }
+                        }
                     } catch (InterruptedException ex) {
                         logger.trace("{} got interrupted for Broadcaster {}", Thread.currentThread().getName(), getID());
                         logger.trace("", ex);
@@ -483,13 +593,89 @@ public class DefaultBroadcaster implements Broadcaster {
         };
     }
 
+    /**
+     * Return true if a message can be delivered as part of a batch. See {@link ApplicationConfig#BROADCASTER_BATCH_WINDOW}.
+     *
+     * @param deliver the {@link Deliver}
+     * @return true if the message can be batched
+     */
+    protected boolean batchable(Deliver deliver) {
+        return batchWindow > 0
+                && deliver.priority != PRIORITY.HIGH
+                && deliver.type == Deliver.TYPE.ALL
+                && deliver.writeLocally
+                && deliver.async
+                && !outOfOrderBroadcastSupported.get()
+                && !sharedDispatcher
+                && !bc.hasPerRequestFilters();
+    }
+
+    /**
+     * Collect the messages queued during the batch window, up to the batch size, starting with the given message.
+     *
+     * @param first the first message of the batch
+     * @param batch the list the messages are added to
+     * @return the message which can't be batched and closed the batch, or null
+     * @throws InterruptedException
+     */
+    protected Deliver collectBatch(Deliver first, List<Deliver> batch) throws InterruptedException {
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindow);
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            Deliver d = remaining > 0 ? messages.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (d == null) {
+                return null;
+            } else if (!batchable(d) || d.priority != first.priority) {
+                return d;
+            }
+            batch.add(d);
+        }
+        return null;
+    }
+
+    /**
+     * Merge messages into a single one, dispatched once per {@link AtmosphereResource}. Every message keeps its own id.
+     *
+     * @param batch the messages
+     * @return a {@link Deliver} of a {@link List} of messages
+     */
+    protected Deliver batch(List<Deliver> batch) {
+        Batch m = new Batch(batch.size());
+        Batch o = new Batch(batch.size());
+        m.delivers = batch;
+        List<BroadcasterFuture<?>> futures = new ArrayList<BroadcasterFuture<?>>(batch.size());
+        for (Deliver d : batch) {
+            m.add(d.message);
+            m.ids.add(BroadcastMessage.nextId());
+            o.add(d.originalMessage);
+            futures.add(d.future);
+        }
+        Deliver d = new Deliver(m, new BatchFuture(m, futures), o);
+        d.trace = batch.get(0).trace;
+        d.priority = batch.get(0).priority;
+        return d;
+    }
+
     protected Runnable getAsyncWriteHandler(final WriteQueue writeQueue) {
         return new Runnable() {
             public void run() {
+                int written = 0;
                 while (!isDestroyed()) {
                     AsyncWriteToken token = null;
                     try {
-                        token = writeQueue.queue.poll(waitTime, TimeUnit.MILLISECONDS);
+                        if (sharedDispatcher && written++ == mailboxThroughput) {
+                            // Give other AtmosphereResources a chance to be written; the queue is still monitored.
+                            if (reschedule(bc.getAsyncWriteService(), this)) {
+                                return;
+                            }
+                            written = 1;
+                        }
+                        token = sharedDispatcher ? writeQueue.queue.poll() : writeQueue.queue.poll(waitTime, TimeUnit.MILLISECONDS);
+                        if (token != null && token.conflationKey != null) {
+                            // From now on, a newer message for this key will be queued instead of replacing this one.
+                            writeQueue.conflated.remove(token.conflationKey, token);
+                        }
                         if (token == null && !outOfOrderBroadcastSupported.get()) {
                             synchronized (writeQueue) {
                                 if (writeQueue.queue.size() == 0) {
@@ -541,6 +727,23 @@ public class DefaultBroadcaster implements Broadcaster {
         };
     }
 
+    /**
+     * Submit a task again so other tasks get a chance to run, see {@link ApplicationConfig#BROADCASTER_SHARED_DISPATCHER}.
+     *
+     * @param executor the {@link ExecutorService} running the task
+     * @param task     the task
+     * @return false if the task has been rejected, in which case the calling thread must keep running it
+     */
+    protected boolean reschedule(ExecutorService executor, Runnable task) {
+        try {
+            executor.submit(task);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            logger.trace("Broadcaster {} is unable to yield, running inline", getID(), ex);
+            return false;
+        }
+    }
+
     protected void start() {
         if (!initialized.get()) {
             logger.warn("Broadcaster {} not initialized", getID());
@@ -560,6 +763,11 @@ public class DefaultBroadcaster implements Broadcaster {
     protected void spawnReactor() {
         killReactiveThreads();
 
+        if (sharedDispatcher) {
+            // Dispatching tasks are submitted by dispatchMessages() when messages are queued.
+            return;
+        }
+
         int threads = outOfOrderBroadcastSupported.get() ? reactiveThreadsCount() : 1;
         notifierFuture = new Future<?>[threads];
 
@@ -606,11 +814,24 @@ public class DefaultBroadcaster implements Broadcaster {
             return;
         }
 
+        if (deliver.trace != null) {
+            deliver.trace.stamp(BroadcastTrace.STAGE.DISPATCHED);
+        }
+
+        // Skip the clock when no metrics are recorded.
+        if (!recordMetrics) {
+            deliverPush(deliver, true);
+            return;
+        }
+
+        long start = System.nanoTime();
         deliverPush(deliver, true);
+        metrics.fannedOut(this, deliver.writes, System.nanoTime() - start);
     }
 
     protected void deliverPush(Deliver deliver, boolean rec) {
         recentActivity.set(true);
+        lastActivity = System.currentTimeMillis();
 
         String prevMessage = deliver.message.toString();
         if (rec && !delayedBroadcast.isEmpty()) {
@@ -681,7 +902,17 @@ public class DefaultBroadcaster implements Broadcaster {
 
         // We cache first, and if the broadcast succeed, we will remove it.
         AtmosphereResource cache = deliver.type != Deliver.TYPE.RESOURCE ? null : deliver.resource;
-        deliver.cache = bc.getBroadcasterCache().addToCache(getID(), cache != null ? cache.uuid() : BroadcasterCache.NULL, new BroadcastMessage(deliver.originalMessage));
+        // The id is assigned once per broadcast and shared by all the writes of this message.
+        if (deliver.message instanceof Batch) {
+            cacheBatch(deliver);
+        } else {
+            BroadcastMessage m = new BroadcastMessage(deliver.originalMessage);
+            deliver.cache = bc.getBroadcasterCache().addToCache(getID(), cache != null ? cache.uuid() : BroadcasterCache.NULL, m);
+            deliver.id = deliver.cache != null ? deliver.cache.getId() : m.id;
+        }
+        if (deliver.trace != null) {
+            deliver.trace.stamp(BroadcastTrace.STAGE.CACHED);
+        }
 
         if (resources.isEmpty()) {
             logger.trace("No resource available for {} and message {}", getID(), finalMsg);
@@ -710,8 +941,8 @@ public class DefaultBroadcaster implements Broadcaster {
                             continue;
                         }
 
-                        if (deliver.writeLocally) {
-                            queueWriteIO(r, hasFilters ? new Deliver(r, deliver) : deliver);
+                        if (deliver.writeLocally && queueWriteIO(r, hasFilters ? new Deliver(r, deliver) : deliver)) {
+                            deliver.writes++;
                         }
                     }
                     break;
@@ -724,8 +955,8 @@ public class DefaultBroadcaster implements Broadcaster {
                         return;
                     }
 
-                    if (deliver.writeLocally) {
-                        queueWriteIO(deliver.resource, deliver);
+                    if (deliver.writeLocally && queueWriteIO(deliver.resource, deliver)) {
+                        deliver.writes++;
                     }
                     break;
                 case SET:
@@ -739,8 +970,8 @@ public class DefaultBroadcaster implements Broadcaster {
                             continue;
                         }
 
-                        if (deliver.writeLocally) {
-                            queueWriteIO(r, hasFilters ? new Deliver(r, deliver) : deliver);
+                        if (deliver.writeLocally && queueWriteIO(r, hasFilters ? new Deliver(r, deliver) : deliver)) {
+                            deliver.writes++;
                         }
                     }
                     break;
@@ -752,7 +983,54 @@ public class DefaultBroadcaster implements Broadcaster {
         }
     }
 
-    protected void queueWriteIO(AtmosphereResource r, Deliver deliver) throws InterruptedException {
+    /**
+     * Cache every message of a batch on its own, so each one is replayed, and cleared once written, under its own id.
+     *
+     * @param deliver the {@link Deliver} of a {@link Batch}
+     */
+    protected void cacheBatch(Deliver deliver) {
+        Batch messages = (Batch) deliver.message;
+        List<?> originals = deliver.originalMessage instanceof List ? (List<?>) deliver.originalMessage : messages;
+        messages.caches.clear();
+        for (int i = 0; i < messages.size(); i++) {
+            BroadcastMessage m = new BroadcastMessage(messages.ids.get(i), originals.get(i));
+            CacheMessage c = bc.getBroadcasterCache().addToCache(getID(), BroadcasterCache.NULL, m);
+            messages.caches.add(c);
+            if (c != null) {
+                messages.ids.set(i, c.getId());
+            }
+        }
+    }
+
+    private void clearCache(String uuid, Object message, CacheMessage cache) {
+        if (message instanceof Batch) {
+            for (CacheMessage c : ((Batch) message).caches) {
+                bc.getBroadcasterCache().clearCache(getID(), uuid, c);
+            }
+        } else {
+            bc.getBroadcasterCache().clearCache(getID(), uuid, cache);
+        }
+    }
+
+    /**
+     * Queue, or execute, the write of a message to an {@link AtmosphereResource}.
+     *
+     * @param r       an {@link AtmosphereResource}
+     * @param deliver the {@link Deliver}
+     * @return false if the message has been skipped
+     * @throws InterruptedException
+     */
+    protected boolean queueWriteIO(AtmosphereResource r, Deliver deliver) throws InterruptedException {
+        if (!isWritable(r)) {
+            // The message has already been added to the BroadcasterCache, leave it there unless it must be dropped.
+            logger.trace("AtmosphereResource {} is not writable, skipping message {}", r.uuid(), deliver.message);
+            if (overflowPolicy == WebSocketOutboundQueue.OVERFLOW.DROP) {
+                clearCache(r.uuid(), deliver.message, deliver.cache);
+            }
+            entryDone(deliver.future);
+            return false;
+        }
+
         if (deliver.async) {
             // The onStateChange/onRequest may change the isResumed value, hence we need to make sure only one thread flip
             // the switch to garantee the Entry will be cached in the order it was broadcasted.
@@ -760,23 +1038,40 @@ public class DefaultBroadcaster implements Broadcaster {
             if (!bc.getBroadcasterCache().getClass().equals(BroadcasterCache.DEFAULT.getClass().getName())) {
                 if (r.isResumed() || r.isCancelled()) {
                     logger.trace("AtmosphereResource {} has been resumed or cancelled, unable to Broadcast message {}", r.uuid(), deliver.message);
-                    return;
+                    return false;
                 }
             }
 
             AsyncWriteToken w = new AsyncWriteToken(r, deliver.message, deliver.future, deliver.originalMessage, deliver.cache);
+            w.id = deliver.id;
+            w.priority = deliver.priority;
+            if (deliver.trace != null) {
+                w.trace = deliver.trace.copy().stamp(BroadcastTrace.STAGE.WRITE_QUEUED);
+            }
             if (!outOfOrderBroadcastSupported.get()) {
                 WriteQueue writeQueue = writeQueues.get(r.uuid());
                 if (writeQueue == null) {
-                    writeQueue = new WriteQueue(r.uuid());
+                    writeQueue = createWriteQueue(r.uuid());
                     writeQueues.put(r.uuid(), writeQueue);
                 }
 
-                writeQueue.queue.put(w);
+                Object key = conflation ? conflationKey(deliver) : null;
+                if (key != null) {
+                    w.conflationKey = key;
+                    conflate(writeQueue, w);
+                } else {
+                    writeQueue.queue.put(w);
+                }
                 synchronized (writeQueue) {
                     if (!writeQueue.monitored.getAndSet(true)) {
                         logger.trace("Broadcaster {} is about to queueWriteIO for AtmosphereResource {}", name, r.uuid());
-                        bc.getAsyncWriteService().submit(getAsyncWriteHandler(writeQueue));
+                        try {
+                            bc.getAsyncWriteService().submit(getAsyncWriteHandler(writeQueue));
+                        } catch (RejectedExecutionException ex) {
+                            // Let the next write schedule the queued ones.
+                            writeQueue.monitored.set(false);
+                            throw ex;
+                        }
                     }
                 }
             } else {
@@ -785,22 +1080,105 @@ public class DefaultBroadcaster implements Broadcaster {
         } else {
             executeBlockingWrite(r, deliver);
         }
+        return true;
+    }
+
+    /**
+     * Return false if the {@link AtmosphereResource}'s {@link WebSocket} has too many frames waiting to be written.
+     *
+     * @param r an {@link AtmosphereResource}
+     * @return true if a message can be written
+     */
+    protected boolean isWritable(AtmosphereResource r) {
+        WebSocket w = AtmosphereResourceImpl.class.isAssignableFrom(r.getClass()) ? AtmosphereResourceImpl.class.cast(r).webSocket() : null;
+        return w == null || w.isWritable();
+    }
+
+    /**
+     * Return the conflation key of a message, or null if the message can't be conflated.
+     *
+     * @param deliver the {@link Deliver}
+     * @return the conflation key, or null
+     */
+    protected Object conflationKey(Deliver deliver) {
+        if (deliver.originalMessage instanceof Conflatable) {
+            return Conflatable.class.cast(deliver.originalMessage).conflationKey();
+        } else if (deliver.message instanceof Conflatable) {
+            return Conflatable.class.cast(deliver.message).conflationKey();
+        }
+        return null;
+    }
+
+    /**
+     * Queue a write, replacing the pending write sharing its conflation key. The replaced message is considered as
+     * delivered.
+     *
+     * @param writeQueue the {@link WriteQueue} of the {@link AtmosphereResource}
+     * @param w          the {@link AsyncWriteToken}
+     * @throws InterruptedException
+     */
+    protected void conflate(WriteQueue writeQueue, AsyncWriteToken w) throws InterruptedException {
+        synchronized (writeQueue) {
+            AsyncWriteToken stale = writeQueue.conflated.put(w.conflationKey, w);
+            // The writing thread may have already taken the stale message, in which case both are written.
+            if (stale != null && writeQueue.queue.remove(stale)) {
+                logger.trace("Message {} replaced by {} for AtmosphereResource {}", stale.msg, w.msg, writeQueue.uuid);
+                bc.getBroadcasterCache().clearCache(getID(), writeQueue.uuid, stale.cache);
+                entryDone(stale.future);
+                stale.destroy();
+            }
+            writeQueue.queue.put(w);
+        }
     }
 
     protected void executeBlockingWrite(AtmosphereResource r, Deliver deliver) throws InterruptedException {
         // We deliver using the calling thread.
         synchronized (r) {
-            executeAsyncWrite(new AsyncWriteToken(r, deliver.message, deliver.future, deliver.originalMessage, deliver.cache));
+            AsyncWriteToken w = new AsyncWriteToken(r, deliver.message, deliver.future, deliver.originalMessage, deliver.cache);
+            w.id = deliver.id;
+            w.priority = deliver.priority;
+            if (deliver.trace != null) {
+                w.trace = deliver.trace.copy().stamp(BroadcastTrace.STAGE.WRITE_QUEUED);
+            }
+            executeAsyncWrite(w);
         }
     }
 
+    /**
+     * Create the {@link WriteQueue} of an {@link AtmosphereResource}, ordering the writes by {@link PRIORITY} when
+     * {@link ApplicationConfig#BROADCASTER_PRIORITIES} is set.
+     *
+     * @param uuid the {@link AtmosphereResource#uuid()}
+     * @return the {@link WriteQueue}
+     */
+    protected WriteQueue createWriteQueue(String uuid) {
+        if (!priorities) {
+            return new WriteQueue(uuid);
+        }
+
+        PriorityLaneQueue<AsyncWriteToken> q = new PriorityLaneQueue<AsyncWriteToken>(PRIORITY.values().length) {
+            @Override
+            protected int lane(AsyncWriteToken w) {
+                return w.priority.ordinal();
+            }
+        };
+        return new WriteQueue(uuid, q.starvationLimit(priorityStarvationLimit));
+    }
+
     public final static class WriteQueue {
-        final BlockingQueue<AsyncWriteToken> queue = new LinkedBlockingQueue<AsyncWriteToken>();
+        final BlockingQueue<AsyncWriteToken> queue;
+        // The pending write of every conflation key.
+        final ConcurrentHashMap<Object, AsyncWriteToken> conflated = new ConcurrentHashMap<Object, AsyncWriteToken>();
         final AtomicBoolean monitored = new AtomicBoolean();
         final String uuid;
 
         private WriteQueue(String uuid) {
+            this(uuid, new LinkedBlockingQueue<AsyncWriteToken>());
+        }
+
+        private WriteQueue(String uuid, BlockingQueue<AsyncWriteToken> queue) {
             this.uuid = uuid;
+            this.queue = queue;
         }
 
         public List<String> asString(){
@@ -842,6 +1220,16 @@ public class DefaultBroadcaster implements Broadcaster {
     }
 
     protected void executeAsyncWrite(final AsyncWriteToken token) {
+        if (token.msg instanceof Batch) {
+            executeBatchWrite(token);
+            return;
+        }
+
+        long start = recordMetrics ? System.nanoTime() : 0;
+        final BroadcastTrace trace = token.trace;
+        if (trace != null) {
+            trace.stamp(BroadcastTrace.STAGE.WRITE_STARTED);
+        }
         boolean notifyListeners = true;
         boolean lostCandidate = false;
 
@@ -863,9 +1251,13 @@ public class DefaultBroadcaster implements Broadcaster {
 
             bc.getBroadcasterCache().clearCache(getID(), r != null ? r.uuid() : BroadcasterCache.NULL, token.cache);
             try {
-                request.setAttribute(getID(), token.future);
-                request.setAttribute(MAX_INACTIVE, System.currentTimeMillis());
-                request.setAttribute(ASYNC_TOKEN, token);
+                // A null future means nobody waits for the broadcast to complete.
+                if (token.future != null) {
+                    request.setAttribute(getID(), token.future);
+                }
+                request.maxInactive(System.currentTimeMillis())
+                        .asyncToken(token)
+                        .messageId(token.id);
             } catch (Throwable t) {
                 logger.debug("Invalid AtmosphereResource state {}. The connection has been remotely" +
                         " closed and message {} will be added to the configured BroadcasterCache for later retrieval", r.uuid(), event.getMessage());
@@ -886,8 +1278,11 @@ public class DefaultBroadcaster implements Broadcaster {
             }
 
             prepareInvokeOnStateChange(r, event);
+            if (trace != null) {
+                trace.stamp(BroadcastTrace.STAGE.WRITTEN);
+            }
             try {
-                request.setAttribute(FrameworkConfig.MESSAGE_WRITTEN, "true");
+                request.messageWritten(true);
             } catch (NullPointerException ex) {
                 // GlassFish and Tomcat may have recycled the request at that moment so the operation will fail.
                 // In that case we don't cache the message as it has been successfully written or cached later
@@ -908,6 +1303,12 @@ public class DefaultBroadcaster implements Broadcaster {
                 }
             }
 
+            if (recordMetrics) {
+                metrics.written(this, r, System.nanoTime() - start);
+            }
+            if (trace != null && trace.stampOf(BroadcastTrace.STAGE.WRITTEN) != 0) {
+                notifyTraceListeners(r, trace);
+            }
             entryDone(token.future);
 
             if (lostCandidate) {
@@ -917,6 +1318,45 @@ public class DefaultBroadcaster implements Broadcaster {
         }
     }
 
+    /**
+     * Write the messages of a batch one by one, so {@link AtmosphereHandler}s, encoders and listeners never see the
+     * batch itself. When the {@link AtmosphereResource} gets resumed by a write, e.g. with long-polling, the messages
+     * not yet written stay cached, under their own ids, for its next connection.
+     *
+     * @param token the {@link AsyncWriteToken} of a {@link Batch}
+     */
+    protected void executeBatchWrite(final AsyncWriteToken token) {
+        final AtmosphereResource r = token.resource;
+        final Batch messages = (Batch) token.msg;
+        final List<?> originals = token.originalMessage instanceof List ? (List<?>) token.originalMessage : messages;
+        int i = 0;
+        try {
+            if (!isAtmosphereResourceValid(r)) {
+                // The whole batch stays cached, as any other message.
+                logger.trace("AtmosphereResource {} state is invalid for Broadcaster {}. Message will be cached", r.uuid(), name);
+                removeAtmosphereResource(r, false);
+                return;
+            }
+
+            // Every message is cleared from the cache once written, the others stay cached.
+            for (; i < messages.size() && isAtmosphereResourceValid(r); i++) {
+                AsyncWriteToken w = new AsyncWriteToken(r, messages.get(i), null, originals.get(i), messages.caches.get(i));
+                w.id = messages.ids.get(i);
+                w.priority = token.priority;
+                w.trace = i == 0 ? token.trace : null;
+                executeAsyncWrite(w);
+            }
+        } finally {
+            if (i == 0) {
+                entryDone(token.future);
+            } else if (token.future != null) {
+                // Listeners have been notified by every write.
+                token.future.done();
+            }
+            token.destroy();
+        }
+    }
+
     protected boolean checkCachedAndPush(final AtmosphereResource r, final AtmosphereResourceEvent e) {
         boolean cache = retrieveTrackedBroadcast(r, e);
 
@@ -926,7 +1366,6 @@ public class DefaultBroadcaster implements Broadcaster {
             logger.debug("Sending cached message {} to {}", e.getMessage(), r.uuid());
 
             List<Object> cacheMessages = (List) e.getMessage();
-            BroadcasterFuture<Object> f = new BroadcasterFuture<Object>(e.getMessage(), 1);
             LinkedList<Object> filteredMessage = new LinkedList<Object>();
             LinkedList<Object> filteredMessageClone = null;
             Deliver deliver;
@@ -937,7 +1376,7 @@ public class DefaultBroadcaster implements Broadcaster {
                     continue;
                 }
 
-                deliver = new Deliver(newMessage, r, f, o);
+                deliver = new Deliver(newMessage, r, null, o);
                 // Can be aborted by a Filter
                 if (!perRequestFilter(r, deliver)) {
                     continue;
@@ -1013,11 +1452,17 @@ public class DefaultBroadcaster implements Broadcaster {
 
     protected boolean retrieveTrackedBroadcast(final AtmosphereResource r, final AtmosphereResourceEvent e) {
         logger.trace("Checking cached message for {}", r.uuid());
-        List<?> missedMsg = bc.getBroadcasterCache().retrieveFromCache(getID(), r.uuid());
+        BroadcasterCache cache = bc.getBroadcasterCache();
+        String lastEventId = r.getRequest().getHeader(HeaderConfig.LAST_EVENT_ID);
+        List<?> missedMsg = lastEventId != null && SequencedBroadcasterCache.class.isAssignableFrom(cache.getClass()) ?
+                SequencedBroadcasterCache.class.cast(cache).retrieveFromCache(getID(), r.uuid(), lastEventId) :
+                cache.retrieveFromCache(getID(), r.uuid());
         if (missedMsg != null && !missedMsg.isEmpty()) {
+            metrics.cacheHit(this, missedMsg.size());
             e.setMessage(missedMsg);
             return true;
         }
+        metrics.cacheMiss(this);
         return false;
     }
 
@@ -1078,6 +1523,7 @@ public class DefaultBroadcaster implements Broadcaster {
                 }
 
                 logger.trace("Honoring Write timeout {} for {}", writeTimeoutInSecond, r.uuid());
+                metrics.writeTimedOut(DefaultBroadcaster.this, r);
                 onException(new IOException("Unable to write after " + writeTimeoutInSecond), r);
                 AtmosphereResourceImpl.class.cast(r).cancel();
             }
@@ -1111,7 +1557,7 @@ public class DefaultBroadcaster implements Broadcaster {
         }
 
         if (notifyAndCache) {
-            cacheLostMessage(r, (AsyncWriteToken) r.getRequest(false).getAttribute(ASYNC_TOKEN), notifyAndCache);
+            cacheLostMessage(r, (AsyncWriteToken) r.getRequest(false).asyncToken(), notifyAndCache);
         }
 
         /**
@@ -1136,6 +1582,20 @@ public class DefaultBroadcaster implements Broadcaster {
         }
     }
 
+    /**
+     * Return the message, as it was broadcasted, which is being written to an {@link AtmosphereResource}.
+     *
+     * @param r {@link AtmosphereResource}
+     * @return the original message, or null if no message is being written
+     */
+    public static Object originalMessage(AtmosphereResource r) {
+        if (!AtmosphereResourceImpl.class.isAssignableFrom(r.getClass())) return null;
+
+        AtmosphereRequest request = AtmosphereResourceImpl.class.cast(r).getRequest(false);
+        Object token = request != null ? request.asyncToken() : null;
+        return token instanceof AsyncWriteToken ? AsyncWriteToken.class.cast(token).originalMessage : null;
+    }
+
     /**
      * Cache the message because an unexpected exception occurred.
      *
@@ -1144,7 +1604,7 @@ public class DefaultBroadcaster implements Broadcaster {
     public void cacheLostMessage(AtmosphereResource r) {
         // Quite ugly cast that need to be fixed all over the place
         cacheLostMessage(r, (AsyncWriteToken)
-                AtmosphereResourceImpl.class.cast(r).getRequest(false).getAttribute(ASYNC_TOKEN));
+                AtmosphereResourceImpl.class.cast(r).getRequest(false).asyncToken());
     }
 
     /**
@@ -1155,7 +1615,7 @@ public class DefaultBroadcaster implements Broadcaster {
     public void cacheLostMessage(AtmosphereResource r, boolean force) {
         // Quite ugly cast that need to be fixed all over the place
         cacheLostMessage(r, (AsyncWriteToken)
-                AtmosphereResourceImpl.class.cast(r).getRequest(false).getAttribute(ASYNC_TOKEN), force);
+                AtmosphereResourceImpl.class.cast(r).getRequest(false).asyncToken(), force);
     }
 
     /**
@@ -1178,9 +1638,13 @@ public class DefaultBroadcaster implements Broadcaster {
         }
 
         try {
-            if (token != null && token.originalMessage != null) {
+            if (token != null && token.msg instanceof Batch) {
+                // The messages of a batch not written are still cached on their own.
+                return;
+            } else if (token != null && token.originalMessage != null) {
+                // Re-use the original cached id, if any, so the same message isn't cached twice.
                 bc.getBroadcasterCache().addToCache(getID(), r != null ? r.uuid() : BroadcasterCache.NULL,
-                        new BroadcastMessage(String.valueOf(token.future.hashCode()), token.originalMessage));
+                        token.cache != null ? new BroadcastMessage(token.cache.getId(), token.originalMessage) : new BroadcastMessage(token.originalMessage));
                 logger.trace("Lost message cached {}", token.originalMessage);
             }
         } catch (Throwable t2) {
@@ -1223,11 +1687,27 @@ public class DefaultBroadcaster implements Broadcaster {
     }
 
     protected void dispatchMessages(Deliver e) {
+        if (traceSampling > 0 && !traceListeners.isEmpty() && traceCounter.incrementAndGet() % traceSampling == 0) {
+            e.trace = new BroadcastTrace().stamp(BroadcastTrace.STAGE.QUEUED);
+        }
+        PRIORITY p = broadcastPriority.get();
+        if (p != null) {
+            e.priority = p;
+            if (!priorities && p != PRIORITY.NORMAL && !priorityIgnored.getAndSet(true)) {
+                logger.warn("Broadcaster {} delivers messages in order, set {} to deliver them by priority", name, ApplicationConfig.BROADCASTER_PRIORITIES);
+            }
+        }
         messages.offer(e);
+        metrics.published(this, messages.size());
 
-        if (dispatchThread.get() == 0) {
-            dispatchThread.incrementAndGet();
-            getBroadcasterConfig().getExecutorService().submit(getBroadcastHandler());
+        if (dispatchThread.compareAndSet(0, 1)) {
+            try {
+                getBroadcasterConfig().getExecutorService().submit(getBroadcastHandler());
+            } catch (RejectedExecutionException ex) {
+                // Let the next broadcast schedule the queued messages.
+                dispatchThread.set(0);
+                throw ex;
+            }
         }
     }
 
@@ -1262,6 +1742,58 @@ public class DefaultBroadcaster implements Broadcaster {
         return f;
     }
 
+    /**
+     * Broadcast a message with a {@link PRIORITY}. When {@link ApplicationConfig#BROADCASTER_PRIORITIES} is set, queued
+     * messages of a lower priority are delivered after this one, within the starvation bound set by
+     * {@link ApplicationConfig#BROADCASTER_PRIORITY_STARVATION_LIMIT}.
+     *
+     * @param msg      the message
+     * @param priority the {@link PRIORITY}
+     * @return a {@link Future} that can be used to synchronize using the {@link Future#get()}
+     */
+    public Future<Object> broadcast(Object msg, PRIORITY priority) {
+        broadcastPriority.set(priority);
+        try {
+            return broadcast(msg);
+        } finally {
+            broadcastPriority.remove();
+        }
+    }
+
+    /**
+     * Broadcast a message with a {@link PRIORITY} to an {@link AtmosphereResource}.
+     *
+     * @param msg      the message
+     * @param r        the {@link AtmosphereResource}
+     * @param priority the {@link PRIORITY}
+     * @return a {@link Future} that can be used to synchronize using the {@link Future#get()}
+     */
+    public Future<Object> broadcast(Object msg, AtmosphereResource r, PRIORITY priority) {
+        broadcastPriority.set(priority);
+        try {
+            return broadcast(msg, r);
+        } finally {
+            broadcastPriority.remove();
+        }
+    }
+
+    /**
+     * Broadcast a message with a {@link PRIORITY} to a subset of {@link AtmosphereResource}.
+     *
+     * @param msg      the message
+     * @param subset   the {@link AtmosphereResource}s
+     * @param priority the {@link PRIORITY}
+     * @return a {@link Future} that can be used to synchronize using the {@link Future#get()}
+     */
+    public Future<Object> broadcast(Object msg, Set<AtmosphereResource> subset, PRIORITY priority) {
+        broadcastPriority.set(priority);
+        try {
+            return broadcast(msg, subset);
+        } finally {
+            broadcastPriority.remove();
+        }
+    }
+
     @Override
     public Future<Object> broadcastOnResume(Object msg) {
 
@@ -1307,6 +1839,61 @@ public class DefaultBroadcaster implements Broadcaster {
         return f;
     }
 
+    /**
+     * Broadcast the message to all suspended responses without tracking the completion of the operation. Use
+     * this method instead of {@link #broadcast(Object)} when the returned {@link Future} is never used.
+     *
+     * @param msg the message
+     */
+    public void broadcastAndForget(Object msg) {
+        Object newMsg = filterAndForget(msg, "broadcastAndForget(T msg)");
+        if (newMsg != null) {
+            dispatchMessages(new Deliver(newMsg, (BroadcasterFuture<?>) null, msg));
+        }
+    }
+
+    /**
+     * Broadcast the message to an {@link AtmosphereResource} without tracking the completion of the operation.
+     *
+     * @param msg the message
+     * @param r   an {@link AtmosphereResource}
+     */
+    public void broadcastAndForget(Object msg, AtmosphereResource r) {
+        Object newMsg = filterAndForget(msg, "broadcastAndForget(T msg, AtmosphereResource r)");
+        if (newMsg != null) {
+            dispatchMessages(new Deliver(newMsg, r, null, msg));
+        }
+    }
+
+    /**
+     * Broadcast the message to a {@link Set} of {@link AtmosphereResource} without tracking the completion of the operation.
+     *
+     * @param msg    the message
+     * @param subset a Set of {@link AtmosphereResource}
+     */
+    public void broadcastAndForget(Object msg, Set<AtmosphereResource> subset) {
+        Object newMsg = filterAndForget(msg, "broadcastAndForget(T msg, Set<AtmosphereResource> subset)");
+        if (newMsg != null) {
+            dispatchMessages(new Deliver(newMsg, subset, null, msg));
+        }
+    }
+
+    protected Object filterAndForget(Object msg, String method) {
+        if (destroyed.get()) {
+            logger.debug(DESTROYED, getID(), method);
+            notifyBroadcastListener();
+            return null;
+        }
+
+        start();
+        Object newMsg = filter(msg);
+        if (newMsg == null) {
+            logger.debug("Broadcast Interrupted {}", msg);
+            notifyBroadcastListener();
+        }
+        return newMsg;
+    }
+
     @Override
     public Broadcaster addAtmosphereResource(AtmosphereResource r) {
         try {
@@ -1327,6 +1914,9 @@ public class DefaultBroadcaster implements Broadcaster {
                 if (policy == POLICY.FIFO) {
                     // TODO handle null return from poll()
                     AtmosphereResource resource = resources.poll();
+                    if (resource != null) {
+                        membership(resource, false);
+                    }
                     try {
                         logger.warn("Too many resource. Forcing resume of {} ", resource.uuid());
                         resource.resume();
@@ -1423,9 +2013,24 @@ public class DefaultBroadcaster implements Broadcaster {
 
     protected void notifyAndAdd(AtmosphereResource r) {
         resources.add(r);
+        membership(r, true);
         notifyOnAddAtmosphereResourceListener(r);
     }
 
+    /**
+     * Keep the {@link DefaultBroadcasterFactory}'s AtmosphereResource to Broadcaster index up to date.
+     */
+    private void membership(AtmosphereResource r, boolean added) {
+        BroadcasterFactory f = config.getBroadcasterFactory();
+        if (f == null || !DefaultBroadcasterFactory.class.isAssignableFrom(f.getClass())) return;
+
+        if (added) {
+            DefaultBroadcasterFactory.class.cast(f).addMembership(r, this);
+        } else {
+            DefaultBroadcasterFactory.class.cast(f).removeMembership(r, this);
+        }
+    }
+
     private boolean isAtmosphereResourceValid(AtmosphereResource r) {
         return !r.isResumed()
                 && !r.isCancelled()
@@ -1468,6 +2073,14 @@ public class DefaultBroadcaster implements Broadcaster {
     }
 
     protected void notifyOnMessage(Deliver deliver) {
+        if (deliver.message instanceof Batch && ((Batch) deliver.message).delivers != null) {
+            // Listeners are notified of every message of a batch.
+            for (Deliver d : ((Batch) deliver.message).delivers) {
+                notifyOnMessage(d);
+            }
+            return;
+        }
+
         for (BroadcasterListener b : broadcasterListeners) {
             try {
                 b.onMessage(this, deliver);
@@ -1477,6 +2090,16 @@ public class DefaultBroadcaster implements Broadcaster {
         }
     }
 
+    protected void notifyTraceListeners(AtmosphereResource r, BroadcastTrace trace) {
+        for (BroadcastTraceListener l : traceListeners) {
+            try {
+                l.onTrace(this, r, trace);
+            } catch (Exception ex) {
+                logger.warn("", ex);
+            }
+        }
+    }
+
     @Override
     public Broadcaster removeAtmosphereResource(AtmosphereResource r) {
         return removeAtmosphereResource(r, true);
@@ -1492,6 +2115,7 @@ public class DefaultBroadcaster implements Broadcaster {
         synchronized (resources) {
             removed = resources.remove(r);
             if (removed) {
+                membership(r, false);
                 if (r.isSuspended()) {
                     logger.trace("Excluded from {} : {}", getID(), r.uuid());
                     bc.getBroadcasterCache().excludeFromCache(getID(), r);
@@ -1662,6 +2286,51 @@ public class DefaultBroadcaster implements Broadcaster {
                 .toString();
     }
 
+    /**
+     * The messages of a batch. The batch is dispatched once, but each message is cached and written separately, see
+     * {@link #cacheBatch(Deliver)} and {@link #executeBatchWrite(AsyncWriteToken)}.
+     */
+    protected final static class Batch extends ArrayList<Object> {
+        private static final long serialVersionUID = 4571582346723447523L;
+        // The batched messages, as broadcasted.
+        transient List<Deliver> delivers;
+        // The id and the cached entry of every message.
+        transient List<String> ids = new ArrayList<String>();
+        transient List<CacheMessage> caches = new ArrayList<CacheMessage>();
+
+        Batch(int size) {
+            super(size);
+        }
+    }
+
+    /**
+     * Complete the futures of all the messages of a batch.
+     */
+    private final static class BatchFuture extends BroadcasterFuture<Object> {
+        private final List<BroadcasterFuture<?>> futures;
+
+        BatchFuture(Object msg, List<BroadcasterFuture<?>> futures) {
+            super(msg, 1);
+            this.futures = futures;
+        }
+
+        @Override
+        public BroadcasterFuture<Object> done() {
+            for (BroadcasterFuture<?> f : futures) {
+                if (f != null) f.done();
+            }
+            return super.done();
+        }
+
+        @Override
+        public boolean cancel(boolean b) {
+            for (BroadcasterFuture<?> f : futures) {
+                if (f != null) f.cancel(b);
+            }
+            return super.cancel(b);
+        }
+    }
+
     protected final static class AsyncWriteToken {
 
         AtmosphereResource resource;
@@ -1669,6 +2338,10 @@ public class DefaultBroadcaster implements Broadcaster {
         BroadcasterFuture future;
         Object originalMessage;
         CacheMessage cache;
+        String id;
+        BroadcastTrace trace;
+        Object conflationKey;
+        PRIORITY priority = PRIORITY.NORMAL;
 
         public AsyncWriteToken(AtmosphereResource resource, Object msg, BroadcasterFuture future, Object originalMessage) {
             this.resource = resource;
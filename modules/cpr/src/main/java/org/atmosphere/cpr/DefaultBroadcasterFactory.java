@@ -23,7 +23,9 @@ import java.net.URI;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.UUID;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static org.atmosphere.cpr.ApplicationConfig.BROADCASTER_POLICY;
@@ -47,6 +49,12 @@ public class DefaultBroadcasterFactory extends BroadcasterFactory {
     private static final Logger logger = LoggerFactory.getLogger(DefaultBroadcasterFactory.class);
 
     private final ConcurrentHashMap<Object, Broadcaster> store = new ConcurrentHashMap<Object, Broadcaster>();
+    // Serialize the creation of Broadcasters sharing the same stripe instead of all Broadcasters of the same class.
+    private final Object[] locks = new Object[64];
+    // AtmosphereResource's lower case uuid -> the DefaultBroadcaster the AtmosphereResource has been added to.
+    private final ConcurrentHashMap<String, Set<Broadcaster>> memberships = new ConcurrentHashMap<String, Set<Broadcaster>>();
+    // The stored Broadcasters not maintaining the memberships, which must be inspected one by one.
+    private final Set<Broadcaster> unindexed = Collections.newSetFromMap(new ConcurrentHashMap<Broadcaster, Boolean>());
 
     private final Class<? extends Broadcaster> clazz;
 
@@ -55,11 +63,16 @@ public class DefaultBroadcasterFactory extends BroadcasterFactory {
     protected Broadcaster.POLICY defaultPolicy = Broadcaster.POLICY.FIFO;
     protected int defaultPolicyInteger = -1;
     private final URI legacyBroadcasterURI = URI.create("http://127.0.0.0");
+    private final BroadcasterLifeCycleSweeper lifeCycleSweeper;
 
     protected DefaultBroadcasterFactory(Class<? extends Broadcaster> clazz, String broadcasterLifeCyclePolicy, AtmosphereConfig c) {
         this.clazz = clazz;
         this.factory = this;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
         config = c;
+        lifeCycleSweeper = new BroadcasterLifeCycleSweeper(c);
         configure(broadcasterLifeCyclePolicy);
     }
 
@@ -100,7 +113,7 @@ public class DefaultBroadcasterFactory extends BroadcasterFactory {
 
     @Override
     public synchronized final Broadcaster get() {
-        return get(clazz.getSimpleName() + "-" + UUID.randomUUID());
+        return get(clazz.getSimpleName() + "-" + config.uuidProvider().generateUuid());
     }
 
     @Override
@@ -150,18 +163,33 @@ public class DefaultBroadcasterFactory extends BroadcasterFactory {
 
     @Override
     public boolean add(Broadcaster b, Object id) {
-        return (store.put(id, b) == null);
+        Broadcaster prev = store.put(id, b);
+        if (prev != null) {
+            unindexed.remove(prev);
+        }
+        stored(b);
+        return prev == null;
     }
 
     @Override
     public boolean remove(Broadcaster b, Object id) {
         boolean removed = store.remove(id, b);
-        if (removed && logger.isDebugEnabled()) {
-            logger.debug("Removing Broadcaster {} factory size now {} ", id, store.size());
+        if (removed) {
+            unindexed.remove(b);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Removing Broadcaster {} factory size now {} ", id, store.size());
+            }
         }
         return removed;
     }
 
+    private void stored(Broadcaster b) {
+        // Only DefaultBroadcaster maintains the memberships.
+        if (!DefaultBroadcaster.class.isAssignableFrom(b.getClass())) {
+            unindexed.add(b);
+        }
+    }
+
     @Override
     public final <T extends Broadcaster> T lookup(Class<T> c, Object id) {
         return lookup(c, id, false);
@@ -183,30 +211,42 @@ public class DefaultBroadcasterFactory extends BroadcasterFactory {
     }
 
     public <T extends Broadcaster> T lookup(Class<T> c, Object id, boolean createIfNull, boolean unique) {
-        synchronized (c) {
-            logger.trace("About to create {}", id);
-            if (unique && store.get(id) != null) {
+        // Fast path: existing and alive Broadcaster are returned without locking.
+        T b = (T) store.get(id);
+        logger.trace("Looking in the store using {} returned {}", id, b);
+        if (b != null) {
+            if (unique) {
                 throw new IllegalStateException("Broadcaster already exists " + id + ". Use BroadcasterFactory.lookup instead");
             }
+            if (!b.isDestroyed()) {
+                return checkClass(c, b);
+            }
+        } else if (!createIfNull) {
+            return null;
+        }
 
-            T b = (T) store.get(id);
-            logger.trace("Looking in the store using {} returned {}", id, b);
-            if (b != null && !c.isAssignableFrom(b.getClass())) {
-                String msg = "Invalid lookup class " + c.getName() + ". Cached class is: " + b.getClass().getName();
-                logger.debug(msg);
-                throw new IllegalStateException(msg);
+        // Creation or replacement of a destroyed Broadcaster, only serialized with Broadcaster sharing the same stripe.
+        synchronized (locks[(id.hashCode() & 0x7fffffff) % locks.length]) {
+            logger.trace("About to create {}", id);
+            b = (T) store.get(id);
+            if (unique && b != null) {
+                throw new IllegalStateException("Broadcaster already exists " + id + ". Use BroadcasterFactory.lookup instead");
             }
+            checkClass(c, b);
 
             if ((b == null && createIfNull) || (b != null && b.isDestroyed())) {
                 if (b != null) {
                     logger.trace("Removing destroyed Broadcaster {}", b.getID());
-                    store.remove(b.getID(), b);
+                    if (store.remove(b.getID(), b)) {
+                        unindexed.remove(b);
+                    }
                 }
 
                 Broadcaster nb = store.get(id);
                 if (nb == null) {
                     nb = createBroadcaster(c, id);
                     store.put(id, nb);
+                    stored(nb);
                 }
 
                 if (nb == null && logger.isTraceEnabled()) {
@@ -219,12 +259,103 @@ public class DefaultBroadcasterFactory extends BroadcasterFactory {
         }
     }
 
+    private <T extends Broadcaster> T checkClass(Class<T> c, T b) {
+        if (b != null && !c.isAssignableFrom(b.getClass())) {
+            String msg = "Invalid lookup class " + c.getName() + ". Cached class is: " + b.getClass().getName();
+            logger.debug(msg);
+            throw new IllegalStateException(msg);
+        }
+        return b;
+    }
+
+    /**
+     * Record that an {@link AtmosphereResource} has been added to a {@link Broadcaster}. Invoked by
+     * {@link DefaultBroadcaster} so {@link #removeAllAtmosphereResource(AtmosphereResource)} and
+     * {@link #broadcasters(String)} don't need to iterate over all {@link Broadcaster}.
+     *
+     * @param r an {@link AtmosphereResource}
+     * @param b the {@link Broadcaster} the {@link AtmosphereResource} has been added to.
+     */
+    public void addMembership(AtmosphereResource r, Broadcaster b) {
+        String uuid = key(r.uuid());
+        for (; ; ) {
+            Set<Broadcaster> s = memberships.get(uuid);
+            if (s == null) {
+                s = new HashSet<Broadcaster>();
+                Set<Broadcaster> prev = memberships.putIfAbsent(uuid, s);
+                if (prev != null) {
+                    s = prev;
+                }
+            }
+
+            synchronized (s) {
+                // The Set may have been removed by removeMembership once empty.
+                if (memberships.get(uuid) == s) {
+                    s.add(b);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Record that an {@link AtmosphereResource} has been removed from a {@link Broadcaster}.
+     *
+     * @param r an {@link AtmosphereResource}
+     * @param b the {@link Broadcaster} the {@link AtmosphereResource} has been removed from.
+     */
+    public void removeMembership(AtmosphereResource r, Broadcaster b) {
+        String uuid = key(r.uuid());
+        Set<Broadcaster> s = memberships.get(uuid);
+        if (s == null) return;
+
+        synchronized (s) {
+            s.remove(b);
+            if (s.isEmpty()) {
+                memberships.remove(uuid, s);
+            }
+        }
+    }
+
+    /**
+     * Return the {@link Broadcaster} an {@link AtmosphereResource} has been added to. The uuid is compared ignoring
+     * the case. {@link Broadcaster}s not extending {@link DefaultBroadcaster} are inspected one by one.
+     *
+     * @param uuid the {@link org.atmosphere.cpr.AtmosphereResource#uuid()}
+     * @return the {@link Broadcaster} the {@link AtmosphereResource} has been added to.
+     */
+    public Set<Broadcaster> broadcasters(String uuid) {
+        Set<Broadcaster> h = new HashSet<Broadcaster>();
+        Set<Broadcaster> s = memberships.get(key(uuid));
+        if (s != null) {
+            synchronized (s) {
+                h.addAll(s);
+            }
+        }
+
+        for (Broadcaster b : unindexed) {
+            for (AtmosphereResource r : b.getAtmosphereResources()) {
+                if (r.uuid().equalsIgnoreCase(uuid)) {
+                    h.add(b);
+                }
+            }
+        }
+        return h;
+    }
+
+    private static String key(String uuid) {
+        // Returns the same instance when the uuid is already in lower case, as generated uuids are.
+        return uuid.toLowerCase(Locale.ENGLISH);
+    }
+
     @Override
     public void removeAllAtmosphereResource(AtmosphereResource r) {
         // Remove inside all Broadcaster as well.
         try {
             if (store.size() > 0) {
-                for (Broadcaster b : lookupAll()) {
+                // Only inspect the Broadcasters the AtmosphereResource has been added to.
+                Collection<Broadcaster> l = broadcasters(r.uuid());
+                for (Broadcaster b : l) {
                     try {
                         b.removeAtmosphereResource(r);
                     } catch (IllegalStateException ex) {
@@ -239,7 +370,11 @@ public class DefaultBroadcasterFactory extends BroadcasterFactory {
 
     @Override
     public boolean remove(Object id) {
-        return store.remove(id) != null;
+        Broadcaster b = store.remove(id);
+        if (b != null) {
+            unindexed.remove(b);
+        }
+        return b != null;
     }
 
     @Override
@@ -275,11 +410,24 @@ public class DefaultBroadcasterFactory extends BroadcasterFactory {
                 logger.debug("Destroy", t);
             }
         }
+        lifeCycleSweeper.destroy();
         broadcasterListeners.clear();
         store.clear();
+        unindexed.clear();
+        memberships.clear();
         factory = null;
     }
 
+    /**
+     * Return the {@link BroadcasterLifeCycleSweeper} applying the idle {@link BroadcasterLifeCyclePolicy} of the
+     * {@link DefaultBroadcaster}s.
+     *
+     * @return the {@link BroadcasterLifeCycleSweeper}
+     */
+    public BroadcasterLifeCycleSweeper lifeCycleSweeper() {
+        return lifeCycleSweeper;
+    }
+
     public void notifyOnPostCreate(Broadcaster b) {
         for (BroadcasterListener l : broadcasterListeners) {
             try {
@@ -41,6 +41,13 @@ public class Deliver implements Serializable {
     // https://github.com/Atmosphere/atmosphere/issues/864
     protected CacheMessage cache;
     protected boolean async;
+    // The id shared by all the writes of this message.
+    protected String id;
+    // Only set when the message has been sampled for tracing.
+    protected transient BroadcastTrace trace;
+    protected Broadcaster.PRIORITY priority = Broadcaster.PRIORITY.NORMAL;
+    // The number of writes queued by the dispatching thread, see MetricsRegistry#fannedOut.
+    protected transient int writes;
 
     public Deliver(TYPE type,
                    Object originalMessage,
@@ -75,6 +82,9 @@ public class Deliver implements Serializable {
 
     public Deliver(AtmosphereResource r, Deliver e) {
         this(TYPE.RESOURCE, e.originalMessage, e.message, r, e.future, e.cache, e.writeLocally, null, e.async);
+        this.id = e.id;
+        this.trace = e.trace;
+        this.priority = e.priority;
     }
 
     public Deliver(Object message, Set<AtmosphereResource> resources, BroadcasterFuture<?> future, Object originalMessage) {
@@ -146,6 +156,30 @@ public class Deliver implements Serializable {
         this.cache = cache;
     }
 
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public BroadcastTrace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(BroadcastTrace trace) {
+        this.trace = trace;
+    }
+
+    public Broadcaster.PRIORITY getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Broadcaster.PRIORITY priority) {
+        this.priority = priority;
+    }
+
     public boolean isAsync() {
         return async;
     }
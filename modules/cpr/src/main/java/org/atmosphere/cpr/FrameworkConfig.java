@@ -151,6 +151,11 @@ public interface FrameworkConfig {
      * long-polling.
      */
     String MESSAGE_WRITTEN = Broadcaster.class.getName() + ".messageWritten";
+    /**
+     * The id of the message being written by a {@link Broadcaster}, e.g the {@link org.atmosphere.cache.CacheMessage#getId()}
+     * when a {@link BroadcasterCache} is installed. Transport like SSE use it as event id.
+     */
+    String MESSAGE_ID = Broadcaster.class.getName() + ".messageId";
     /**
      * Guice Injector
      */
@@ -16,13 +16,13 @@
 
 package org.atmosphere.cpr;
 
+import org.atmosphere.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -132,7 +132,7 @@ public class Meteor {
         if (scope == Broadcaster.SCOPE.REQUEST) {
             try {
                 BroadcasterFactory f = r.getAtmosphereConfig().getBroadcasterFactory();
-                b = f.get(DefaultBroadcaster.class, DefaultBroadcaster.class.getSimpleName() + UUID.randomUUID());
+                b = f.get(DefaultBroadcaster.class, DefaultBroadcaster.class.getSimpleName() + r.getAtmosphereConfig().uuidProvider().generateUuid());
             } catch (Throwable t) {
                 throw new RuntimeException(t);
             }
@@ -215,7 +215,7 @@ public class Meteor {
      */
     public Meteor broadcast(Object o) {
         if (destroyed()) return null;
-        r.getBroadcaster().broadcast(o);
+        Utils.broadcastAndForget(r.getBroadcaster(), o);
         return this;
     }
 
@@ -90,7 +90,10 @@ public abstract class AbstractReflectorAtmosphereHandler implements AtmosphereHa
             }
         } else {
             boolean isUsingStream = true;
-            Object o = resource.getRequest().getAttribute(PROPERTY_USE_STREAM);
+            Object o = resource.getRequest().useStream();
+            if (o == null) {
+                o = resource.getRequest().getAttribute(PROPERTY_USE_STREAM);
+            }
             if (o != null) {
                 isUsingStream = (Boolean) o;
             }
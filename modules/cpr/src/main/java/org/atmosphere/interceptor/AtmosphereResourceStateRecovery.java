@@ -27,21 +27,34 @@ import org.atmosphere.cpr.BroadcasterCache;
 import org.atmosphere.cpr.BroadcasterFactory;
 import org.atmosphere.cpr.BroadcasterListenerAdapter;
 import org.atmosphere.util.ExecutorsFactory;
+import org.atmosphere.util.IOUtils;
 import org.atmosphere.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.atmosphere.cpr.ApplicationConfig.STATE_RECOVERY_SNAPSHOT;
 import static org.atmosphere.cpr.ApplicationConfig.STATE_RECOVERY_TIMEOUT;
 import static org.atmosphere.cpr.AtmosphereResourceEventListenerAdapter.OnSuspend;
 
@@ -49,17 +62,29 @@ import static org.atmosphere.cpr.AtmosphereResourceEventListenerAdapter.OnSuspen
  * This interceptor associates a {@link AtmosphereResource} to all {@link Broadcaster} the resource was added before
  * the underlying connection got closed and resume. This allow an application to restore the state of the client before the
  * disconnection occurred, and for the long-polling transport to return to it's previous state.
+ * <p/>
+ * States are indexed by expiration time, so discarding the expired ones only visits those. When
+ * {@link org.atmosphere.cpr.ApplicationConfig#STATE_RECOVERY_SNAPSHOT} is set, the states are saved to a file when
+ * the application is stopped and restored when it is started: a client reconnecting after a restart gets associated
+ * back with those of its {@link Broadcaster}s that exist. A Broadcaster that doesn't exist anymore is never created from
+ * the snapshot, unless the application installs a {@link BroadcasterRestorer} deciding to create it.
  *
  * @author Jeanfrancois Arcand
  */
 public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
 
     private final static Logger logger = LoggerFactory.getLogger(AtmosphereResourceStateRecovery.class);
+    private static final int SNAPSHOT_VERSION = 1;
+
     private final ConcurrentHashMap<String, BroadcasterTracker> states = new ConcurrentHashMap<String, BroadcasterTracker>();
+    private final DelayQueue<Expiry> expiries = new DelayQueue<Expiry>();
+    // Broadcaster's id -> Broadcaster's class, for the Broadcasters of the states restored from a snapshot.
+    private final ConcurrentHashMap<String, String> restoredBroadcasters = new ConcurrentHashMap<String, String>();
     private BroadcasterFactory factory;
     private ScheduledExecutorService stateTracker;
     private long timeout = 5 * 1000 * 60;
     private Future<?> f;
+    private BroadcasterRestorer restorer;
 
     @Override
     public void configure(AtmosphereConfig config) {
@@ -71,6 +96,18 @@ public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
         if (s != null) {
             timeout = Long.parseLong(s);
         }
+
+        s = config.getInitParameter(STATE_RECOVERY_SNAPSHOT);
+        if (s != null) {
+            final File snapshot = new File(s);
+            restore(snapshot);
+            config.shutdownHook(new AtmosphereConfig.ShutdownHook() {
+                @Override
+                public void shutdown() {
+                    snapshot(snapshot);
+                }
+            });
+        }
         startStateTracker();
         logger.trace("{} started.", AtmosphereResourceStateRecovery.class.getName());
     }
@@ -78,6 +115,13 @@ public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
     public AtmosphereResourceStateRecovery timeout(long timeout){
         this.timeout = timeout;
         f.cancel(false);
+
+        List<Expiry> l = new ArrayList<Expiry>();
+        expiries.drainTo(l);
+        for (Expiry e : l) {
+            e.deadline = e.tracker.lastTick() + timeout;
+            expiries.offer(e);
+        }
         startStateTracker();
         return this;
     }
@@ -86,21 +130,47 @@ public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
         return timeout;
     }
 
+    /**
+     * Set the {@link BroadcasterRestorer} asked for the {@link Broadcaster}s of the restored states that don't exist.
+     *
+     * @param restorer a {@link BroadcasterRestorer}, or null to only associate clients with existing Broadcasters.
+     * @return this
+     */
+    public AtmosphereResourceStateRecovery restorer(BroadcasterRestorer restorer) {
+        this.restorer = restorer;
+        return this;
+    }
+
     protected void startStateTracker() {
+        long period = Math.min(timeout, 1000);
         f = stateTracker.scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
-                long now = System.currentTimeMillis();
-                for (Map.Entry<String, BroadcasterTracker> t : states.entrySet()) {
-                    // The resource may still be suspended but we don't want to keep a reference to it, so we swap
-                    // the state and will recover.
-                    if (now - t.getValue().lastTick() > timeout) {
-                        logger.trace("AtmosphereResource {} state destroyed.", t.getKey());
-                        states.remove(t.getKey());
-                    }
-                }
+                expire();
             }
-        }, timeout, timeout, TimeUnit.MILLISECONDS);
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Discard the states whose deadline has passed. A state ticked since it has been indexed is indexed again with
+     * its new deadline instead.
+     */
+    protected void expire() {
+        long now = System.currentTimeMillis();
+        Expiry e;
+        while ((e = expiries.poll()) != null) {
+            if (states.get(e.uuid) != e.tracker) continue;
+
+            long deadline = e.tracker.lastTick() + timeout;
+            if (deadline > now) {
+                e.deadline = deadline;
+                expiries.offer(e);
+            } else if (states.remove(e.uuid, e.tracker)) {
+                // The resource may still be suspended but we don't want to keep a reference to it, so we swap
+                // the state and will recover.
+                logger.trace("AtmosphereResource {} state destroyed.", e.uuid);
+            }
+        }
     }
 
     @Override
@@ -137,7 +207,7 @@ public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
                         });
 
                         for (String broadcasterID : tracker.ids()) {
-                            Broadcaster b = factory.lookup(broadcasterID, false);
+                            Broadcaster b = lookup(broadcasterID);
                             logger.trace("About to associate resource {} with Broadcaster {}", r.uuid(), broadcasterID);
                             if (b != null && !b.getID().equalsIgnoreCase(r.getBroadcaster().getID())) {
                                 logger.trace("Associate AtmosphereResource {} with Broadcaster {}", r.uuid(), broadcasterID);
@@ -183,16 +253,190 @@ public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
         BroadcasterTracker tracker = states.get(r.uuid());
         if (tracker == null) {
             tracker = new BroadcasterTracker();
-            states.put(r.uuid(), tracker);
+            BroadcasterTracker previous = states.putIfAbsent(r.uuid(), tracker);
+            if (previous != null) return previous;
+
+            expiries.offer(new Expiry(r.uuid(), tracker, tracker.lastTick() + timeout));
             logger.trace("AtmosphereResource {} state now tracked", r.uuid());
         }
         return tracker;
     }
 
+    /**
+     * Lookup a {@link Broadcaster}. If it doesn't exist and was associated with a state restored from a snapshot, the
+     * {@link BroadcasterRestorer}, if any, is asked for it.
+     */
+    private Broadcaster lookup(String id) {
+        Broadcaster b = factory.lookup(id, false);
+        String clazz;
+        if (b == null && restorer != null && (clazz = restoredBroadcasters.get(id)) != null) {
+            try {
+                Class<?> c = IOUtils.loadClass(getClass(), clazz);
+                if (!Broadcaster.class.isAssignableFrom(c)) {
+                    logger.warn("Not restoring Broadcaster {}: {} isn't a Broadcaster", id, clazz);
+                    restoredBroadcasters.remove(id);
+                    return null;
+                }
+
+                b = restorer.restore(factory, id, c.asSubclass(Broadcaster.class));
+                if (b != null) {
+                    restoredBroadcasters.remove(id);
+                }
+            } catch (Exception ex) {
+                logger.warn("Unable to restore Broadcaster {}", id, ex);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Save the states, with the class of their {@link Broadcaster}s, to a file. A Broadcaster's id is written once
+     * and states refer to it by index.
+     *
+     * @param file the file.
+     */
+    public void snapshot(File file) {
+        long now = System.currentTimeMillis();
+        Map<String, Integer> index = new HashMap<String, Integer>();
+        List<String> classes = new ArrayList<String>();
+        List<String> ids = new ArrayList<String>();
+        Map<String, BroadcasterTracker> live = new HashMap<String, BroadcasterTracker>();
+        for (Map.Entry<String, BroadcasterTracker> e : states.entrySet()) {
+            if (now - e.getValue().lastTick() > timeout) continue;
+
+            live.put(e.getKey(), e.getValue());
+            for (String id : e.getValue().ids()) {
+                if (index.containsKey(id)) continue;
+
+                Broadcaster b = factory.lookup(id, false);
+                String clazz = b != null ? b.getClass().getName() : restoredBroadcasters.get(id);
+                if (clazz != null) {
+                    index.put(id, ids.size());
+                    ids.add(id);
+                    classes.add(clazz);
+                }
+            }
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                out.writeUTF(ids.get(i));
+                out.writeUTF(classes.get(i));
+            }
+
+            out.writeInt(live.size());
+            for (Map.Entry<String, BroadcasterTracker> e : live.entrySet()) {
+                List<Integer> l = new ArrayList<Integer>();
+                for (String id : e.getValue().ids()) {
+                    Integer i = index.get(id);
+                    if (i != null) l.add(i);
+                }
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().lastTick());
+                out.writeInt(l.size());
+                for (Integer i : l) {
+                    out.writeInt(i);
+                }
+            }
+            out.close();
+            out = null;
+
+            if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Unable to rename " + tmp + " to " + file);
+            }
+            logger.info("Saved {} AtmosphereResource states to {}", live.size(), file);
+        } catch (IOException e) {
+            logger.warn("Unable to save AtmosphereResource states to {}", file, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    logger.trace("", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restore the states saved by {@link #snapshot(File)}, discarding the expired ones. The file is deleted once read.
+     *
+     * @param file the file.
+     */
+    public void restore(File file) {
+        if (!file.exists()) return;
+
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            String[] ids = new String[in.readInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = in.readUTF();
+                restoredBroadcasters.put(ids[i], in.readUTF());
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String uuid = in.readUTF();
+                BroadcasterTracker t = new BroadcasterTracker(in.readLong());
+                int n = in.readInt();
+                for (int j = 0; j < n; j++) {
+                    t.add(ids[in.readInt()]);
+                }
+
+                if (now - t.lastTick() > timeout || states.putIfAbsent(uuid, t) != null) continue;
+
+                expiries.offer(new Expiry(uuid, t, t.lastTick() + timeout));
+                restored++;
+            }
+            logger.info("Restored {} AtmosphereResource states from {}", restored, file);
+        } catch (IOException e) {
+            logger.warn("Unable to restore AtmosphereResource states from {}", file, e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    logger.trace("", e);
+                }
+            }
+            if (!file.delete()) {
+                logger.warn("Unable to delete {}", file);
+            }
+        }
+    }
+
     @Override
     public void postInspect(AtmosphereResource r) {
     }
 
+    /**
+     * Decides whether a {@link Broadcaster} a restored state refers to, and that doesn't exist anymore, is created.
+     */
+    public static interface BroadcasterRestorer {
+        /**
+         * Return the {@link Broadcaster} a client reconnecting after a restart gets associated back with.
+         *
+         * @param factory the {@link BroadcasterFactory}
+         * @param id      the id of the Broadcaster.
+         * @param clazz   the class of the Broadcaster before the restart.
+         * @return the Broadcaster, or null to not associate the client with it.
+         */
+        Broadcaster restore(BroadcasterFactory factory, String id, Class<? extends Broadcaster> clazz);
+    }
+
     public final class B extends BroadcasterListenerAdapter {
         @Override
         public void onAddAtmosphereResource(Broadcaster b, AtmosphereResource r) {
@@ -227,17 +471,25 @@ public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
     public final static class BroadcasterTracker {
 
         private final ConcurrentLinkedQueue<String> broadcasterIds;
-        private long tick;
+        private volatile long tick;
 
         public BroadcasterTracker() {
+            this(System.currentTimeMillis());
+        }
+
+        private BroadcasterTracker(long tick) {
             this.broadcasterIds = new ConcurrentLinkedQueue<String>();
-            tick = System.currentTimeMillis();
+            this.tick = tick;
         }
 
         public BroadcasterTracker add(Broadcaster b) {
             logger.trace("Adding {}", b.getID());
-            if (!broadcasterIds.contains(b.getID())) {
-                broadcasterIds.add(b.getID());
+            return add(b.getID());
+        }
+
+        private BroadcasterTracker add(String id) {
+            if (!broadcasterIds.contains(id)) {
+                broadcasterIds.add(id);
             }
             return this;
         }
@@ -266,6 +518,32 @@ public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
         return states;
     }
 
+    /**
+     * The deadline of a {@link BroadcasterTracker}, as indexed by the {@link DelayQueue}.
+     */
+    private final static class Expiry implements Delayed {
+        private final String uuid;
+        private final BroadcasterTracker tracker;
+        private volatile long deadline;
+
+        Expiry(String uuid, BroadcasterTracker tracker, long deadline) {
+            this.uuid = uuid;
+            this.tracker = tracker;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            long d = deadline - ((Expiry) o).deadline;
+            return d < 0 ? -1 : d > 0 ? 1 : 0;
+        }
+    }
+
     @Override
     public String toString() {
         return "AtmosphereResource state recovery";
@@ -274,7 +552,7 @@ public class AtmosphereResourceStateRecovery implements AtmosphereInterceptor {
     public List<Object> retrieveCache(AtmosphereResource r, BroadcasterTracker tracker, boolean force) {
         List<Object> cachedMessages = new LinkedList<Object>();
         for (String broadcasterID : tracker.ids()) {
-            Broadcaster b = factory.lookup(broadcasterID, false);
+            Broadcaster b = lookup(broadcasterID);
             BroadcasterCache cache;
             logger.trace("About to retrieve cached messages for resource {} with Broadcaster {}, tracked by " + b, r.uuid(), r.getBroadcaster());
             if (b != null && (force || !b.getID().equalsIgnoreCase(r.getBroadcaster().getID()))) {
@@ -19,6 +19,7 @@ import org.atmosphere.cpr.Action;
 import org.atmosphere.cpr.AtmosphereInterceptorAdapter;
 import org.atmosphere.cpr.AtmosphereRequest;
 import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +29,9 @@ import static org.atmosphere.util.IOUtils.readEntirely;
 /**
  * This read the request's body and invoke the associated {@link org.atmosphere.cpr.Broadcaster} of an {@link AtmosphereResource}.
  * The broadcast always happens AFTER the request has been delivered to an {@link org.atmosphere.cpr.AtmosphereHandler}.
+ * <p/>
+ * The body is always broadcasted as a single message. A body larger than
+ * {@link org.atmosphere.cpr.ApplicationConfig#MAX_REQUEST_BODY_SIZE} is discarded before anything is broadcasted.
  *
  * @author Jeanfrancois Arcand
  */
@@ -50,7 +54,7 @@ public class BroadcastOnPostAtmosphereInterceptor extends AtmosphereInterceptorA
                 logger.warn("{} received an empty body", request);
                 return;
             }
-            r.getBroadcaster().broadcast(o);
+            Utils.broadcastAndForget(r.getBroadcaster(), o);
         }
     }
 }
@@ -294,9 +294,9 @@ public class HeartbeatInterceptor extends AtmosphereInterceptorAdapter {
 
     void cancelF(AtmosphereRequest request) {
         try {
-            Future<?> f = (Future<?>) request.getAttribute(HEARTBEAT_FUTURE);
+            Future<?> f = request.heartbeatFuture();
             if (f != null) f.cancel(false);
-            request.removeAttribute(HEARTBEAT_FUTURE);
+            request.heartbeatFuture(null);
         } catch (Exception ex) {
             // https://github.com/Atmosphere/atmosphere/issues/1503
             logger.trace("", ex);
@@ -319,7 +319,7 @@ public class HeartbeatInterceptor extends AtmosphereInterceptorAdapter {
                                       final AtmosphereResource r,
                                       final AtmosphereRequest request,
                                       final AtmosphereResponse response) {
-        request.setAttribute(HEARTBEAT_FUTURE, heartBeat.schedule(new Callable<Object>() {
+        request.heartbeatFuture(heartBeat.schedule(new Callable<Object>() {
             @Override
             public Object call() throws Exception {
                 synchronized (r) {
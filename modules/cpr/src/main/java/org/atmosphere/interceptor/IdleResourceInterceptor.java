@@ -76,22 +76,22 @@ public class IdleResourceInterceptor extends AtmosphereInterceptorAdapter {
         for (AtmosphereResource r : config.resourcesFactory().findAll()) {
             AtmosphereRequest req = AtmosphereResourceImpl.class.cast(r).getRequest(false);
             try {
-                if (req.getAttribute(MAX_INACTIVE) == null) {
+                if (req.maxInactive() == 0) {
                     logger.error("Invalid state {}", r);
                     config.getBroadcasterFactory().removeAllAtmosphereResource(r);
                     config.resourcesFactory().unRegisterUuidForFindCandidate(r);
                     continue;
                 }
 
-                long l = (Long) req.getAttribute(MAX_INACTIVE);
+                long l = req.maxInactive();
                 if (l > 0 && System.currentTimeMillis() - l > maxInactiveTime ) {
                     try {
-                        req.setAttribute(MAX_INACTIVE, (long) -1);
+                        req.maxInactive(-1);
 
                         logger.debug("IdleResourceInterceptor disconnecting {}", r);
-                        Future<?> f = (Future<?>) req.getAttribute(HeartbeatInterceptor.HEARTBEAT_FUTURE);
+                        Future<?> f = req.heartbeatFuture();
                         if (f != null) f.cancel(false);
-                        req.removeAttribute(HeartbeatInterceptor.HEARTBEAT_FUTURE);
+                        req.heartbeatFuture(null);
 
                         WebSocket webSocket = AtmosphereResourceImpl.class.cast(r).webSocket();
                         if (webSocket != null) {
@@ -123,7 +123,7 @@ public class IdleResourceInterceptor extends AtmosphereInterceptorAdapter {
     @Override
     public Action inspect(AtmosphereResource r) {
         if (maxInactiveTime > 0) {
-            AtmosphereResourceImpl.class.cast(r).getRequest(false).setAttribute(MAX_INACTIVE, System.currentTimeMillis());
+            AtmosphereResourceImpl.class.cast(r).getRequest(false).maxInactive(System.currentTimeMillis());
         }
         return Action.CONTINUE;
     }
@@ -30,11 +30,11 @@ import org.atmosphere.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 
-import static org.atmosphere.cpr.ApplicationConfig.PROPERTY_USE_STREAM;
 import static org.atmosphere.cpr.AtmosphereResourceEventListenerAdapter.OnPreSuspend;
 import static org.atmosphere.cpr.FrameworkConfig.CALLBACK_JAVASCRIPT_PROTOCOL;
 import static org.atmosphere.cpr.FrameworkConfig.CONTAINER_RESPONSE;
@@ -51,6 +51,9 @@ public class SSEAtmosphereInterceptor extends AtmosphereInterceptorAdapter {
     private static final byte[] padding;
     private static final String paddingText;
     private static final byte[] END = "\r\n\r\n".getBytes();
+    private static final byte[] CRLF = "\r\n".getBytes();
+    private static final byte[] DATA = "data:".getBytes();
+    private static final byte[] ID = "id: ".getBytes();
     private String contentType = "text/event-stream";
 
     static {
@@ -76,8 +79,7 @@ public class SSEAtmosphereInterceptor extends AtmosphereInterceptorAdapter {
 
         response.setContentType(contentType);
         response.setCharacterEncoding("utf-8");
-        boolean isUsingStream = (Boolean) response.request().getAttribute(PROPERTY_USE_STREAM);
-        if (isUsingStream) {
+        if (Boolean.TRUE.equals(response.request().useStream())) {
             try {
                 OutputStream stream = response.getResponse().getOutputStream();
                 try {
@@ -132,7 +134,9 @@ public class SSEAtmosphereInterceptor extends AtmosphereInterceptorAdapter {
 
             AsyncIOWriter writer = response.getAsyncIOWriter();
             if (AtmosphereInterceptorWriter.class.isAssignableFrom(writer.getClass())) {
-                AtmosphereInterceptorWriter.class.cast(writer).interceptor(new AsyncIOInterceptorAdapter() {
+                final AtmosphereInterceptorWriter w = AtmosphereInterceptorWriter.class.cast(writer);
+                final String ua = request.getHeader("User-Agent");
+                w.interceptor(new AsyncIOInterceptorAdapter() {
                     private boolean padding() {
                         if (!r.isSuspended()) {
                             return writePadding(response);
@@ -140,22 +144,49 @@ public class SSEAtmosphereInterceptor extends AtmosphereInterceptorAdapter {
                         return false;
                     }
 
+                    // The CALLBACK_JAVASCRIPT_PROTOCOL may be called by a framework running on top of Atmosphere
+                    // In that case, we must pad/protocol indenendently of the state of the AtmosphereResource
+                    private boolean prefix() {
+                        return !padding() || r.getRequest().getAttribute(CALLBACK_JAVASCRIPT_PROTOCOL) != null;
+                    }
+
+                    private boolean end() {
+                        return r.isSuspended() || r.getRequest().getAttribute(CALLBACK_JAVASCRIPT_PROTOCOL) != null
+                                || r.getRequest().getAttribute(CONTAINER_RESPONSE) != null;
+                    }
+
+                    /**
+                     * When no other {@link org.atmosphere.cpr.AsyncIOInterceptor} transforms the payload after us,
+                     * the event is framed inside {@link #transformPayload} and written at once. Otherwise the
+                     * field name and the delimiter must surround the fully transformed payload.
+                     */
+                    private boolean framed() {
+                        return w.filters().peekLast() == this;
+                    }
+
                     @Override
                     public void prePayload(AtmosphereResponse response, byte[] data, int offset, int length) {
-                        boolean noPadding = padding();
-                        // The CALLBACK_JAVASCRIPT_PROTOCOL may be called by a framework running on top of Atmosphere
-                        // In that case, we must pad/protocol indenendently of the state of the AtmosphereResource
-                        if (!noPadding || r.getRequest().getAttribute(CALLBACK_JAVASCRIPT_PROTOCOL) != null) {
+                        if (!framed() && prefix()) {
                             response.write("data:", true);
                         }
                     }
 
+                    @Override
+                    public byte[] transformPayload(AtmosphereResponse response, byte[] responseDraft, byte[] data) throws IOException {
+                        if (!framed()) return responseDraft;
+
+                        String id = null;
+                        boolean prefix = prefix();
+                        if (prefix && response.request() != null) {
+                            id = response.request().messageId();
+                            response.request().messageId(null);
+                        }
+                        return frame(responseDraft, prefix, id, end());
+                    }
+
                     @Override
                     public void postPayload(AtmosphereResponse response, byte[] data, int offset, int length) {
-                        // The CALLBACK_JAVASCRIPT_PROTOCOL may be called by a framework running on top of Atmosphere
-                        // In that case, we must pad/protocol indenendently of the state of the AtmosphereResource
-                        if (r.isSuspended() || r.getRequest().getAttribute(CALLBACK_JAVASCRIPT_PROTOCOL) != null
-                                || r.getRequest().getAttribute(CONTAINER_RESPONSE) != null) {
+                        if (!framed() && end()) {
                             response.write(END, true);
                         }
 
@@ -163,7 +194,6 @@ public class SSEAtmosphereInterceptor extends AtmosphereInterceptorAdapter {
                          * When used with https://github.com/remy/polyfills/blob/master/EventSource.js , we
                          * resume after every message.
                          */
-                        String ua = r.getRequest().getHeader("User-Agent");
                         if (ua != null && ua.contains("MSIE")) {
                             try {
                                 response.flushBuffer();
@@ -181,6 +211,55 @@ public class SSEAtmosphereInterceptor extends AtmosphereInterceptorAdapter {
         return Action.CONTINUE;
     }
 
+    /**
+     * Frame a payload as a Server Side Event. Every line of the payload is prefixed by the data field name, and the
+     * event is preceded by its id, if any, so a reconnecting client can send it back using the
+     * {@link org.atmosphere.cpr.HeaderConfig#LAST_EVENT_ID} header.
+     *
+     * @param payload the payload
+     * @param prefix  true if the field names must be written
+     * @param id      the event's id, or null
+     * @param end     true if the event must be terminated
+     * @return the framed event
+     */
+    public static byte[] frame(byte[] payload, boolean prefix, String id, boolean end) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(payload.length + (id != null ? id.length() + 16 : 16));
+        if (prefix) {
+            if (id != null) {
+                b.write(ID, 0, ID.length);
+                byte[] i = id.getBytes();
+                b.write(i, 0, i.length);
+                b.write(CRLF, 0, CRLF.length);
+            }
+
+            int start = 0;
+            int length = payload.length;
+            // A trailing line terminator doesn't start a new line.
+            if (length > 0 && payload[length - 1] == '\n') length--;
+            if (length > 0 && payload[length - 1] == '\r') length--;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || payload[i] == '\r' || payload[i] == '\n') {
+                    if (start > 0) {
+                        b.write(CRLF, 0, CRLF.length);
+                    }
+                    b.write(DATA, 0, DATA.length);
+                    b.write(payload, start, i - start);
+                    if (i < length - 1 && payload[i] == '\r' && payload[i + 1] == '\n') {
+                        i++;
+                    }
+                    start = i + 1;
+                }
+            }
+        } else {
+            b.write(payload, 0, payload.length);
+        }
+
+        if (end) {
+            b.write(END, 0, END.length);
+        }
+        return b.toByteArray();
+    }
+
     @Override
     public String toString() {
         return "SSE Interceptor Support";
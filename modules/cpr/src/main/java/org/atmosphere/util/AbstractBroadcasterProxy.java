@@ -149,4 +149,19 @@ public abstract class AbstractBroadcasterProxy extends DefaultBroadcaster {
         logger.warn("This feature is not supported with {}", subset.iterator().next().getBroadcaster().getClass().getName());
         return b(msg);
     }
+
+    @Override
+    public void broadcastAndForget(Object msg) {
+        broadcast(msg);
+    }
+
+    @Override
+    public void broadcastAndForget(Object msg, AtmosphereResource r) {
+        broadcast(msg, r);
+    }
+
+    @Override
+    public void broadcastAndForget(Object msg, Set<AtmosphereResource> subset) {
+        broadcast(msg, subset);
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * The default {@link UUIDProvider}. Identifiers are version 4 {@link UUID} generated using a per-thread
+ * {@link SecureRandom}, so concurrent requests never contend on the single {@link SecureRandom} used by
+ * {@link UUID#randomUUID()} while identifiers stay unpredictable. They are used as tracking ids, hence must not
+ * be guessable. See {@link FastUUIDProvider} for applications that don't rely on that.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class DefaultUUIDProvider implements UUIDProvider {
+
+    private final static ThreadLocal<SecureRandom> random = new ThreadLocal<SecureRandom>() {
+        @Override
+        protected SecureRandom initialValue() {
+            return new SecureRandom();
+        }
+    };
+
+    @Override
+    public String generateUuid() {
+        byte[] b = new byte[16];
+        random.get().nextBytes(b);
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | (b[i] & 0xff);
+            lsb = (lsb << 8) | (b[i + 8] & 0xff);
+        }
+        msb = (msb & 0xFFFFFFFFFFFF0FFFL) | 0x0000000000004000L;
+        lsb = (lsb & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb).toString();
+    }
+}
@@ -115,6 +115,38 @@ public class ExcludeSessionBroadcaster extends DefaultBroadcaster {
         return f;
     }
 
+    @Override
+    public void broadcastAndForget(Object msg) {
+        // Nothing is excluded.
+        super.broadcastAndForget(msg);
+    }
+
+    /**
+     * the AtmosphereResource r will be exclude for this broadcast
+     *
+     * @param msg
+     * @param r
+     */
+    @Override
+    public void broadcastAndForget(Object msg, AtmosphereResource r) {
+        Set<AtmosphereResource> sub = new HashSet<AtmosphereResource>();
+        sub.addAll(resources);
+        sub.remove(r);
+        super.broadcastAndForget(msg, sub);
+    }
+
+    /**
+     * the AtmosphereResources subset will be exclude for this broadcast
+     *
+     * @param msg
+     * @param subset
+     */
+    @Override
+    public void broadcastAndForget(Object msg, Set<AtmosphereResource> subset) {
+        subset.retainAll(resources);
+        super.broadcastAndForget(msg, subset);
+    }
+
     /**
      * a list of sessions will be exclude for this broadcast
      *
@@ -15,6 +15,7 @@
  */
 package org.atmosphere.util;
 
+import org.atmosphere.cpr.ApplicationConfig;
 import org.atmosphere.cpr.AtmosphereConfig;
 import org.atmosphere.cpr.AtmosphereFramework;
 import org.atmosphere.cpr.AtmosphereRequest;
@@ -29,6 +30,7 @@ import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -78,55 +80,39 @@ public class IOUtils {
 
     public final static boolean isBodyEmpty(Object o) {
         if (o != null && (String.class.isAssignableFrom(o.getClass()) && String.class.cast(o).isEmpty())
-                || (Byte[].class.isAssignableFrom(o.getClass()) && Byte[].class.cast(o).length == 0)) {
+                || (Byte[].class.isAssignableFrom(o.getClass()) && Byte[].class.cast(o).length == 0)
+                || (byte[].class.isAssignableFrom(o.getClass()) && byte[].class.cast(o).length == 0)) {
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Read the request's body as a String. If the body is larger than {@link ApplicationConfig#MAX_REQUEST_BODY_SIZE},
+     * it is discarded and an empty body is returned.
+     *
+     * @param r an {@link AtmosphereResource}
+     * @return the body
+     */
     public static StringBuilder readEntirelyAsString(AtmosphereResource r) {
         final StringBuilder stringBuilder = new StringBuilder();
         AtmosphereRequest request = r.getRequest();
         if (request.body().isEmpty()) {
-            BufferedReader bufferedReader = null;
             try {
-                try {
-                    InputStream inputStream = request.getInputStream();
-                    if (inputStream != null) {
-                        bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
+                read(request, false, 8192, maxBodySize(r), new BodyChunkHandler() {
+                    @Override
+                    public void onChunk(Object chunk) {
+                        stringBuilder.append((String) chunk);
                     }
-                } catch (IllegalStateException ex) {
-                    logger.trace("", ex);
-                    Reader reader = request.getReader();
-                    if (reader != null) {
-                        bufferedReader = new BufferedReader(reader);
-                    }
-                }
-
-                if (bufferedReader != null) {
-                    char[] charBuffer = new char[8192];
-                    int bytesRead = -1;
-                    try {
-                        while ((bytesRead = bufferedReader.read(charBuffer)) > 0) {
-                            stringBuilder.append(charBuffer, 0, bytesRead);
-                        }
-                    } catch (NullPointerException ex) {
-                        // https://java.net/jira/browse/GRIZZLY-1676
-                    }
-                } else {
-                    stringBuilder.append("");
-                }
+                });
+            } catch (NullPointerException ex) {
+                // https://java.net/jira/browse/GRIZZLY-1676
+            } catch (BodyTooLargeException ex) {
+                logger.warn("{} for {}", ex.getMessage(), r.uuid());
+                stringBuilder.setLength(0);
             } catch (IOException ex) {
                 logger.warn("", ex);
-            } finally {
-                if (bufferedReader != null) {
-                    try {
-                        bufferedReader.close();
-                    } catch (IOException ex) {
-                        logger.warn("", ex);
-                    }
-                }
             }
         } else {
             AtmosphereRequest.Body body = request.body();
@@ -139,48 +125,31 @@ public class IOUtils {
         return stringBuilder;
     }
 
+    /**
+     * Read the request's body as bytes. If the body is larger than {@link ApplicationConfig#MAX_REQUEST_BODY_SIZE},
+     * it is discarded and an empty body is returned.
+     *
+     * @param r an {@link AtmosphereResource}
+     * @return the body
+     */
     public static byte[] readEntirelyAsByte(AtmosphereResource r) {
         AtmosphereRequest request = r.getRequest();
         AtmosphereRequest.Body body = request.body();
         if (request.body().isEmpty()) {
-            BufferedInputStream bufferedStream = null;
-            ByteArrayOutputStream bbIS = new ByteArrayOutputStream();
+            final ByteArrayOutputStream bbIS = new ByteArrayOutputStream();
             try {
-                try {
-                    InputStream inputStream = request.getInputStream();
-                    if (inputStream != null) {
-                        bufferedStream = new BufferedInputStream(inputStream);
-                    }
-                } catch (IllegalStateException ex) {
-                    logger.trace("", ex);
-                    Reader reader = request.getReader();
-                    if (reader != null) {
-                        bufferedStream = new BufferedInputStream(new ReaderInputStream(reader));
-                    }
-                }
-
-                if (bufferedStream != null) {
-                    byte[] bytes = new byte[8192];
-                    int bytesRead = 0;
-                    while (bytesRead != -1) {
-                        bytesRead = bufferedStream.read(bytes);
-                        if (bytesRead > 0)
-                            bbIS.write(bytes, 0, bytesRead);
+                read(request, true, 8192, maxBodySize(r), new BodyChunkHandler() {
+                    @Override
+                    public void onChunk(Object chunk) {
+                        byte[] bytes = (byte[]) chunk;
+                        bbIS.write(bytes, 0, bytes.length);
                     }
-
-                } else {
-                    bbIS.write("".getBytes());
-                }
+                });
+            } catch (BodyTooLargeException ex) {
+                logger.warn("{} for {}", ex.getMessage(), r.uuid());
+                return new byte[0];
             } catch (IOException ex) {
                 logger.warn("", ex);
-            } finally {
-                if (bufferedStream != null) {
-                    try {
-                        bufferedStream.close();
-                    } catch (IOException ex) {
-                        logger.warn("", ex);
-                    }
-                }
             }
             return bbIS.toByteArray();
         } else if (body.hasString()) {
@@ -195,6 +164,171 @@ public class IOUtils {
         throw new IllegalStateException("No body " + r);
     }
 
+    /**
+     * Read the request's body and deliver it chunk by chunk, without materializing the whole body in memory. Like
+     * {@link #readEntirely(AtmosphereResource)}, chunks are byte[] when the body is binary, String otherwise. Every
+     * chunk is a new object the {@link BodyChunkHandler} may keep, e.g. for broadcasting it. A body already
+     * materialized by {@link AtmosphereRequest#body()} is delivered as a single chunk.
+     *
+     * @param r           an {@link AtmosphereResource}
+     * @param chunkSize   the maximum size of a chunk, in bytes for a binary body, in characters otherwise
+     * @param maxBodySize the maximum size of the body in bytes, or -1 for unlimited
+     * @param handler     the {@link BodyChunkHandler}
+     * @return the number of bytes read
+     * @throws IOException if the body can't be read, is larger than maxBodySize or the handler failed.
+     */
+    public static long readInChunks(AtmosphereResource r, int chunkSize, long maxBodySize, BodyChunkHandler handler) throws IOException {
+        AtmosphereRequest request = r.getRequest();
+        boolean binary = isBodyBinary(request);
+        if (!request.body().isEmpty()) {
+            Object o = binary ? readEntirelyAsByte(r) : readEntirelyAsString(r).toString();
+            long length = binary ? byte[].class.cast(o).length : String.class.cast(o).getBytes().length;
+            if (maxBodySize != -1 && length > maxBodySize) {
+                throw new BodyTooLargeException(maxBodySize);
+            }
+            handler.onChunk(o);
+            return length;
+        }
+        return read(request, binary, chunkSize, maxBodySize, handler);
+    }
+
+    private static long read(AtmosphereRequest request, boolean binary, int chunkSize, long maxBodySize, BodyChunkHandler handler) throws IOException {
+        InputStream stream = stream(request);
+        if (stream == null) return 0;
+
+        BoundedInputStream bounded = new BoundedInputStream(stream, maxBodySize);
+        try {
+            if (binary) {
+                byte[] chunk = new byte[chunkSize];
+                int filled = 0;
+                int read;
+                while ((read = bounded.read(chunk, filled, chunkSize - filled)) != -1) {
+                    filled += read;
+                    if (filled == chunkSize) {
+                        handler.onChunk(chunk);
+                        chunk = new byte[chunkSize];
+                        filled = 0;
+                    }
+                }
+                if (filled > 0) {
+                    handler.onChunk(Arrays.copyOf(chunk, filled));
+                }
+            } else {
+                Reader reader = new InputStreamReader(bounded);
+                char[] chunk = new char[chunkSize];
+                int filled = 0;
+                int read;
+                while ((read = reader.read(chunk, filled, chunkSize - filled)) != -1) {
+                    filled += read;
+                    if (filled == chunkSize) {
+                        handler.onChunk(new String(chunk));
+                        filled = 0;
+                    }
+                }
+                if (filled > 0) {
+                    handler.onChunk(new String(chunk, 0, filled));
+                }
+            }
+        } finally {
+            close(bounded);
+        }
+        return bounded.count;
+    }
+
+    /**
+     * Return the maximum size of a request's body, as configured by {@link ApplicationConfig#MAX_REQUEST_BODY_SIZE}.
+     *
+     * @param r an {@link AtmosphereResource}
+     * @return the maximum size, or -1 for unlimited
+     */
+    public static long maxBodySize(AtmosphereResource r) {
+        AtmosphereConfig config = r.getAtmosphereConfig();
+        String s = config != null ? config.getInitParameter(ApplicationConfig.MAX_REQUEST_BODY_SIZE) : null;
+        if (s == null) return -1;
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException ex) {
+            logger.warn("Invalid {} {}", ApplicationConfig.MAX_REQUEST_BODY_SIZE, s);
+            return -1;
+        }
+    }
+
+    private static InputStream stream(AtmosphereRequest request) throws IOException {
+        try {
+            InputStream inputStream = request.getInputStream();
+            if (inputStream != null) {
+                return new BufferedInputStream(inputStream);
+            }
+        } catch (IllegalStateException ex) {
+            logger.trace("", ex);
+            Reader reader = request.getReader();
+            if (reader != null) {
+                return new BufferedInputStream(new ReaderInputStream(reader));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Receive a request's body chunk by chunk, see {@link #readInChunks(AtmosphereResource, int, long, BodyChunkHandler)}.
+     */
+    public static interface BodyChunkHandler {
+
+        /**
+         * A chunk of the body has been read.
+         *
+         * @param chunk a byte[] or a String
+         * @throws IOException
+         */
+        void onChunk(Object chunk) throws IOException;
+    }
+
+    /**
+     * Count the bytes read from a request's body, failing as soon as more than the maximum size has been read.
+     */
+    private final static class BoundedInputStream extends FilterInputStream {
+        private final long maxBodySize;
+        private long count;
+
+        BoundedInputStream(InputStream in, long maxBodySize) {
+            super(in);
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws BodyTooLargeException {
+            count += read;
+            if (maxBodySize != -1 && count > maxBodySize) {
+                throw new BodyTooLargeException(maxBodySize);
+            }
+        }
+    }
+
+    /**
+     * Thrown when a request's body is larger than the configured maximum size.
+     */
+    public final static class BodyTooLargeException extends IOException {
+        public BodyTooLargeException(long maxBodySize) {
+            super("Request body larger than " + maxBodySize);
+        }
+    }
 
     public static String guestServletPath(AtmosphereConfig config) {
         String servletPath = "";
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util;
+
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.Broadcaster;
+
+/**
+ * Record what happens at the framework's hot spots: message publication, fan-out, writes, cache lookups and
+ * suspended connections. An implementation can be configured using
+ * {@link org.atmosphere.cpr.ApplicationConfig#METRICS_REGISTRY} to export them to a monitoring library. The default,
+ * {@link NoOpMetricsRegistry}, records nothing.
+ * <p/>
+ * Methods are invoked by the threads broadcasting and writing messages, concurrently, hence implementations must be
+ * thread safe, must not block and must be cheap.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public interface MetricsRegistry {
+
+    /**
+     * A message has been queued for delivery by a {@link Broadcaster}.
+     *
+     * @param b          the {@link Broadcaster}
+     * @param queueDepth the number of messages waiting to be delivered, including this one
+     */
+    void published(Broadcaster b, int queueDepth);
+
+    /**
+     * A message has been dispatched to the {@link AtmosphereResource}s of a {@link Broadcaster}.
+     *
+     * @param b         the {@link Broadcaster}
+     * @param resources the number of {@link AtmosphereResource}s the message has been queued for
+     * @param nanos     the time spent filtering, caching and dispatching the message
+     */
+    void fannedOut(Broadcaster b, int resources, long nanos);
+
+    /**
+     * A message has been written to an {@link AtmosphereResource}.
+     *
+     * @param b     the {@link Broadcaster}
+     * @param r     the {@link AtmosphereResource}
+     * @param nanos the time spent writing the message
+     */
+    void written(Broadcaster b, AtmosphereResource r, long nanos);
+
+    /**
+     * A write didn't complete within {@link org.atmosphere.cpr.ApplicationConfig#WRITE_TIMEOUT}.
+     *
+     * @param b the {@link Broadcaster}
+     * @param r the {@link AtmosphereResource}
+     */
+    void writeTimedOut(Broadcaster b, AtmosphereResource r);
+
+    /**
+     * Cached messages have been found for an {@link AtmosphereResource}.
+     *
+     * @param b        the {@link Broadcaster}
+     * @param messages the number of messages
+     */
+    void cacheHit(Broadcaster b, int messages);
+
+    /**
+     * No cached message has been found for an {@link AtmosphereResource}.
+     *
+     * @param b the {@link Broadcaster}
+     */
+    void cacheMiss(Broadcaster b);
+
+    /**
+     * A connection has been suspended.
+     *
+     * @param transport the connection's {@link AtmosphereResource.TRANSPORT}
+     */
+    void connectionSuspended(AtmosphereResource.TRANSPORT transport);
+
+    /**
+     * A suspended connection has been resumed or cancelled.
+     *
+     * @param transport the connection's {@link AtmosphereResource.TRANSPORT}
+     */
+    void connectionReleased(AtmosphereResource.TRANSPORT transport);
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util;
+
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.Broadcaster;
+
+/**
+ * The default {@link MetricsRegistry}, which records nothing. This class can be extended to record only some metrics.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class NoOpMetricsRegistry implements MetricsRegistry {
+
+    @Override
+    public void published(Broadcaster b, int queueDepth) {
+    }
+
+    @Override
+    public void fannedOut(Broadcaster b, int resources, long nanos) {
+    }
+
+    @Override
+    public void written(Broadcaster b, AtmosphereResource r, long nanos) {
+    }
+
+    @Override
+    public void writeTimedOut(Broadcaster b, AtmosphereResource r) {
+    }
+
+    @Override
+    public void cacheHit(Broadcaster b, int messages) {
+    }
+
+    @Override
+    public void cacheMiss(Broadcaster b) {
+    }
+
+    @Override
+    public void connectionSuspended(AtmosphereResource.TRANSPORT transport) {
+    }
+
+    @Override
+    public void connectionReleased(AtmosphereResource.TRANSPORT transport) {
+    }
+}
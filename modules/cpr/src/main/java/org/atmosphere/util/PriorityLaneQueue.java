@@ -0,0 +1,295 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An unbounded {@link BlockingQueue} made of FIFO lanes, one per priority. Elements are taken from the highest lane
+ * first, lane n-1 being the highest. To bound the starvation of lower lanes, a non empty lane skipped
+ * {@link #starvationLimit(int)} times in a row is served next, whatever the content of the higher lanes.
+ * <p/>
+ * Elements of the same lane keep their order, elements of different lanes don't.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public abstract class PriorityLaneQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    public final static int DEFAULT_STARVATION_LIMIT = 16;
+
+    private final LinkedList<E>[] lanes;
+    // The number of elements taken from other lanes while a lane was waiting.
+    private final int[] skipped;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private volatile int starvationLimit = DEFAULT_STARVATION_LIMIT;
+    private int count;
+
+    public PriorityLaneQueue(int lanes) {
+        this.lanes = new LinkedList[lanes];
+        this.skipped = new int[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new LinkedList<E>();
+        }
+    }
+
+    /**
+     * Return the lane of an element, between 0 and the number of lanes - 1.
+     *
+     * @param e an element
+     * @return the lane of the element
+     */
+    protected abstract int lane(E e);
+
+    /**
+     * Set the number of times a non empty lane can be skipped before being served.
+     *
+     * @param starvationLimit the number of times a non empty lane can be skipped
+     * @return this
+     */
+    public PriorityLaneQueue<E> starvationLimit(int starvationLimit) {
+        this.starvationLimit = Math.max(1, starvationLimit);
+        return this;
+    }
+
+    public int starvationLimit() {
+        return starvationLimit;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+
+        int l = Math.max(0, Math.min(lanes.length - 1, lane(e)));
+        lock.lock();
+        try {
+            lanes[l].addLast(e);
+            count++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return offer(e);
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return count == 0 ? null : lanes[next()].getFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) return false;
+
+        lock.lock();
+        try {
+            for (LinkedList<E> l : lanes) {
+                if (l.remove(o)) {
+                    count--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i].clear();
+                skipped[i] = 0;
+            }
+            count = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) throw new IllegalArgumentException();
+
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && count > 0) {
+                c.add(dequeue());
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return a snapshot of the elements, in the order they would be taken if no element was added.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final List<E> snapshot = new ArrayList<E>();
+        lock.lock();
+        try {
+            for (int i = lanes.length - 1; i >= 0; i--) {
+                snapshot.addAll(lanes[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return new Iterator<E>() {
+            private int index;
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshot.size();
+            }
+
+            @Override
+            public E next() {
+                if (index >= snapshot.size()) throw new NoSuchElementException();
+                last = snapshot.get(index++);
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) throw new IllegalStateException();
+                PriorityLaneQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Return the lane to serve: the highest non empty lane, unless a lower one has been skipped too many times.
+     */
+    private int next() {
+        int highest = -1;
+        for (int i = lanes.length - 1; i >= 0; i--) {
+            if (lanes[i].isEmpty()) continue;
+
+            if (highest == -1) {
+                highest = i;
+            } else if (skipped[i] >= starvationLimit) {
+                return i;
+            }
+        }
+        return highest;
+    }
+
+    private E dequeue() {
+        int served = next();
+        E e = lanes[served].removeFirst();
+        count--;
+
+        skipped[served] = 0;
+        for (int i = 0; i < lanes.length; i++) {
+            if (i != served && !lanes[i].isEmpty()) {
+                skipped[i]++;
+            }
+        }
+        return e;
+    }
+}
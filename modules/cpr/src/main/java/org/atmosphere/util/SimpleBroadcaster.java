@@ -123,6 +123,30 @@ public class SimpleBroadcaster extends DefaultBroadcaster {
         return f;
     }
 
+    @Override
+    public void broadcastAndForget(Object msg) {
+        Object newMsg = filterAndForget(msg, "broadcastAndForget(T msg)");
+        if (newMsg != null) {
+            push(new Deliver(newMsg, (BroadcasterFuture<?>) null, msg));
+        }
+    }
+
+    @Override
+    public void broadcastAndForget(Object msg, AtmosphereResource r) {
+        Object newMsg = filterAndForget(msg, "broadcastAndForget(T msg, AtmosphereResource r)");
+        if (newMsg != null) {
+            push(new Deliver(newMsg, r, null, msg));
+        }
+    }
+
+    @Override
+    public void broadcastAndForget(Object msg, Set<AtmosphereResource> subset) {
+        Object newMsg = filterAndForget(msg, "broadcastAndForget(T msg, Set<AtmosphereResource> subset)");
+        if (newMsg != null) {
+            push(new Deliver(newMsg, subset, null, msg));
+        }
+    }
+
     @Override
     protected void prepareInvokeOnStateChange(final AtmosphereResource r, final AtmosphereResourceEvent e) {
         if (writeTimeoutInSecond != -1) {
@@ -132,7 +156,8 @@ public class SimpleBroadcaster extends DefaultBroadcaster {
     }
 
     @Override
-    protected void queueWriteIO(AtmosphereResource r, Deliver deliver) throws InterruptedException {
+    protected boolean queueWriteIO(AtmosphereResource r, Deliver deliver) throws InterruptedException {
         executeBlockingWrite(r, deliver);
+        return true;
     }
 }
\ No newline at end of file
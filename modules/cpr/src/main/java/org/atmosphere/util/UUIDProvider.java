@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util;
+
+/**
+ * Generate the unique identifiers used by {@link org.atmosphere.cpr.AtmosphereResource#uuid()} and by {@link org.atmosphere.cpr.Broadcaster}
+ * created without an explicit id. An implementation can be configured using {@link org.atmosphere.cpr.ApplicationConfig#UUID_PROVIDER}.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public interface UUIDProvider {
+
+    /**
+     * Generate a new unique identifier.
+     *
+     * @return a unique identifier.
+     */
+    String generateUuid();
+}
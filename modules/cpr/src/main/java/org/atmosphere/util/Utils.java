@@ -18,6 +18,8 @@ package org.atmosphere.util;
 import org.atmosphere.cpr.AtmosphereRequest;
 import org.atmosphere.cpr.AtmosphereResource;
 import org.atmosphere.cpr.AtmosphereResourceImpl;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.DefaultBroadcaster;
 import org.atmosphere.cpr.FrameworkConfig;
 import org.atmosphere.cpr.HeaderConfig;
 import org.slf4j.Logger;
@@ -170,6 +172,21 @@ public final class Utils {
         return r;
     }
 
+    /**
+     * Broadcast a message without tracking the completion of the operation when the {@link Broadcaster} supports
+     * it, see {@link DefaultBroadcaster#broadcastAndForget(Object)}.
+     *
+     * @param b the {@link Broadcaster}
+     * @param o the message
+     */
+    public static void broadcastAndForget(Broadcaster b, Object o) {
+        if (b instanceof DefaultBroadcaster) {
+            DefaultBroadcaster.class.cast(b).broadcastAndForget(o);
+        } else {
+            b.broadcast(o);
+        }
+    }
+
     public static final boolean closeMessage(HttpServletRequest request) {
         String s = request.getHeader(HeaderConfig.X_ATMOSPHERE_TRANSPORT);
         return s != null && s.equalsIgnoreCase(HeaderConfig.DISCONNECT_TRANSPORT_MESSAGE);
@@ -42,6 +42,7 @@ import java.io.DataInput;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.net.JarURLConnection;
@@ -49,6 +50,7 @@ import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -56,6 +58,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -447,6 +453,75 @@ public final class AnnotationDetector {
         detect(new ClassFileIterator(filesOrDirectories, null));
     }
 
+    /**
+     * Report all Java ClassFile files available from the specified files and/or directories, scanning every
+     * file or directory concurrently using the {@link ExecutorService}. Annotations are reported by the calling
+     * thread, in the order of the files, hence the {@code Reporter} doesn't need to be thread safe.
+     * <p/>
+     * Only a {@link TypeReporter} can be used concurrently. Field and method annotations are detected sequentially.
+     */
+    public void detect(final ExecutorService executor, final File... filesOrDirectories) throws IOException {
+        if (fieldReporter != null || methodReporter != null || filesOrDirectories.length < 2) {
+            detect(filesOrDirectories);
+            return;
+        }
+
+        final Class<? extends Annotation>[] a = annotations.values().toArray(new Class[annotations.size()]);
+        final List<Future<List<Report>>> futures = new ArrayList<Future<List<Report>>>(filesOrDirectories.length);
+        for (final File f : filesOrDirectories) {
+            futures.add(executor.submit(new Callable<List<Report>>() {
+                @Override
+                public List<Report> call() throws Exception {
+                    final List<Report> reports = new ArrayList<Report>();
+                    // An AnnotationDetector isn't thread safe.
+                    AnnotationDetector detector = new AnnotationDetector(new TypeReporter() {
+                        @Override
+                        public Class<? extends Annotation>[] annotations() {
+                            return a;
+                        }
+
+                        @Override
+                        public void reportTypeAnnotation(Class<? extends Annotation> annotation, String className) {
+                            reports.add(new Report(annotation, className));
+                        }
+                    });
+                    try {
+                        detector.detect(f);
+                    } finally {
+                        detector.destroy();
+                    }
+                    return reports;
+                }
+            }));
+        }
+
+        for (Future<List<Report>> future : futures) {
+            try {
+                for (Report r : future.get()) {
+                    typeReporter.reportTypeAnnotation(r.annotation, r.className);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IOException(ex.getCause());
+            }
+        }
+    }
+
+    private final static class Report {
+        private final Class<? extends Annotation> annotation;
+        private final String className;
+
+        private Report(Class<? extends Annotation> annotation, String className) {
+            this.annotation = annotation;
+            this.className = className;
+        }
+    }
+
     // private
     private File toFile(final URL url) throws MalformedURLException {
         // only correct way to convert the URL to a File object, also see issue #16
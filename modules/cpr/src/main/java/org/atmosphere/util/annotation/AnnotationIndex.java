@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util.annotation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read the annotation index files generated at build time by {@link AnnotationIndexProcessor}. An index file lists,
+ * one per line, the name of an annotation followed by the name of a class annotated with it. An index only describes
+ * the jar file or directory shipping it: that root is not scanned, the others still are.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public final class AnnotationIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationIndex.class);
+
+    /**
+     * The location of the index files.
+     */
+    public static final String INDEX = "META-INF/atmosphere/annotations.idx";
+
+    private AnnotationIndex() {
+    }
+
+    /**
+     * Merge all the index files available from a {@link ClassLoader}.
+     *
+     * @param loader the {@link ClassLoader}
+     * @return the annotated class names, keyed by annotation name. The map is empty if no index file exists.
+     * @throws IOException
+     */
+    public static Map<String, Set<String>> read(ClassLoader loader) throws IOException {
+        Map<String, Set<String>> index = new HashMap<String, Set<String>>();
+        Enumeration<URL> urls = loader.getResources(INDEX);
+        while (urls.hasMoreElements()) {
+            read(urls.nextElement(), index);
+        }
+        return index;
+    }
+
+    /**
+     * Read the index files available from a {@link ClassLoader}, keeping apart the index of every class path root.
+     * Index files whose root isn't a jar file or a directory are ignored, so the classes of that root get scanned.
+     *
+     * @param loader the {@link ClassLoader}
+     * @return the annotated class names keyed by annotation name, keyed by the canonical jar file or directory
+     *         shipping the index. The map is empty if no index file exists.
+     * @throws IOException
+     */
+    public static Map<File, Map<String, Set<String>>> readByRoot(ClassLoader loader) throws IOException {
+        Map<File, Map<String, Set<String>>> roots = new HashMap<File, Map<String, Set<String>>>();
+        Enumeration<URL> urls = loader.getResources(INDEX);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            File root = root(url);
+            if (root == null) {
+                logger.debug("Ignoring annotation index {} with an unknown location", url);
+                continue;
+            }
+
+            Map<String, Set<String>> index = roots.get(root);
+            if (index == null) {
+                index = new HashMap<String, Set<String>>();
+                roots.put(root, index);
+            }
+            read(url, index);
+        }
+        return roots;
+    }
+
+    /**
+     * Return the jar file or directory containing an index file.
+     *
+     * @param url the {@link URL} of an index file
+     * @return the canonical jar file or directory, or null if the index isn't stored in one of them
+     */
+    public static File root(URL url) {
+        String path = url.toExternalForm();
+        if (!path.endsWith(INDEX)) return null;
+
+        path = path.substring(0, path.length() - INDEX.length());
+        if (path.startsWith("jar:") && path.endsWith("!/")) {
+            path = path.substring("jar:".length(), path.length() - "!/".length());
+        }
+        if (!path.startsWith("file:")) return null;
+
+        try {
+            return new File(new URI(path)).getCanonicalFile();
+        } catch (Exception ex) {
+            logger.trace("", ex);
+            return null;
+        }
+    }
+
+    private static void read(URL url, Map<String, Set<String>> index) throws IOException {
+        logger.debug("Reading annotation index {}", url);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                int i = line.indexOf(' ');
+                if (i == -1) {
+                    logger.warn("Invalid line {} in {}", line, url);
+                    continue;
+                }
+
+                String annotation = line.substring(0, i);
+                Set<String> classes = index.get(annotation);
+                if (classes == null) {
+                    classes = new LinkedHashSet<String>();
+                    index.put(annotation, classes);
+                }
+                classes.add(line.substring(i + 1).trim());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
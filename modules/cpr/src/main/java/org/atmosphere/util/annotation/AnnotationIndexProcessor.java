@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util.annotation;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A javac annotation processor generating the {@link AnnotationIndex#INDEX} file of the classes being compiled, so
+ * Atmosphere doesn't need to scan them when the application is deployed. Every type level annotation is recorded.
+ * The processor must be enabled explicitly, e.g with javac's -processor option or the maven-compiler-plugin's
+ * annotationProcessors element. Since the index only lists the classes seen by the compiler, it must be generated by
+ * a full build, not an incremental one.
+ *
+ * @author Jeanfrancois Arcand
+ */
+@SupportedAnnotationTypes("*")
+public class AnnotationIndexProcessor extends AbstractProcessor {
+
+    private final Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            write();
+            return false;
+        }
+
+        for (TypeElement annotation : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (!e.getKind().isClass() && !e.getKind().isInterface()) continue;
+
+                for (AnnotationMirror m : e.getAnnotationMirrors()) {
+                    if (!m.getAnnotationType().asElement().equals(annotation)) continue;
+
+                    String name = annotation.getQualifiedName().toString();
+                    Set<String> classes = index.get(name);
+                    if (classes == null) {
+                        classes = new TreeSet<String>();
+                        index.put(name, classes);
+                    }
+                    classes.add(processingEnv.getElementUtils().getBinaryName((TypeElement) e).toString());
+                }
+            }
+        }
+        // Other processors must see the annotations.
+        return false;
+    }
+
+    private void write() {
+        if (index.isEmpty()) return;
+
+        try {
+            FileObject f = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", AnnotationIndex.INDEX);
+            Writer w = new OutputStreamWriter(f.openOutputStream(), "UTF-8");
+            try {
+                w.write("# Generated by " + getClass().getName() + "\n");
+                for (Map.Entry<String, Set<String>> e : index.entrySet()) {
+                    for (String c : e.getValue()) {
+                        w.write(e.getKey() + " " + c + "\n");
+                    }
+                }
+            } finally {
+                w.close();
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Unable to write " + AnnotationIndex.INDEX + ": " + ex);
+        }
+    }
+}
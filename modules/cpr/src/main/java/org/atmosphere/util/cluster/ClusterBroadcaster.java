@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util.cluster;
+
+import org.atmosphere.cpr.AtmosphereConfig;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.util.AbstractBroadcasterProxy;
+
+import java.net.URI;
+
+/**
+ * A {@link org.atmosphere.cpr.Broadcaster} that delivers its messages to the {@link ClusterBroadcaster} of the same
+ * id on every node of a cluster. Messages are exchanged using a {@link ClusterTransport}, by default
+ * {@link NIOClusterTransport}, shared by all the ClusterBroadcasters of an application. Configure the nodes using:
+ * <blockquote><pre>
+ *     org.atmosphere.cpr.broadcasterClass=org.atmosphere.util.cluster.ClusterBroadcaster
+ *     org.atmosphere.cluster.localAddress=10.0.0.1:7070
+ *     org.atmosphere.cluster.peers=10.0.0.2:7070,10.0.0.3:7070
+ * </pre></blockquote>
+ * Messages must be a String, a byte[] or an object whose toString() value can be delivered. Every message carries a
+ * unique id and messages received more than once by a node are discarded.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class ClusterBroadcaster extends AbstractBroadcasterProxy {
+
+    private ClusterNode node;
+
+    public ClusterBroadcaster() {
+    }
+
+    @Override
+    public Broadcaster initialize(String id, URI uri, AtmosphereConfig config) {
+        super.initialize(id, uri, config);
+        node = ClusterNode.get(config);
+        return this;
+    }
+
+    @Override
+    public void incomingBroadcast() {
+        // Messages are pushed by the ClusterTransport, see receive()
+    }
+
+    @Override
+    public void outgoingBroadcast(Object message) {
+        node.send(getID(), message);
+        broadcastReceivedMessage(message);
+    }
+
+    /**
+     * Deliver a message received from another node.
+     */
+    void receive(Object message) {
+        start();
+        broadcastReceivedMessage(message);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util.cluster;
+
+import org.atmosphere.cpr.ApplicationConfig;
+import org.atmosphere.cpr.AtmosphereConfig;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The state shared by all the {@link ClusterBroadcaster}s of an {@link org.atmosphere.cpr.AtmosphereFramework}: the
+ * {@link ClusterTransport}, the identity of this node and the ids of the messages already received.
+ * <p/>
+ * A message is encoded as:
+ * <blockquote><pre>
+ *     UTF nodeId | long sequence | UTF broadcasterId | byte type | int length | byte[] payload
+ * </pre></blockquote>
+ *
+ * @author Jeanfrancois Arcand
+ */
+class ClusterNode implements ClusterTransport.Receiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterNode.class);
+
+    static final int DEDUPLICATION_WINDOW = 10000;
+
+    private static final byte STRING = 0;
+    private static final byte BYTES = 1;
+
+    private final AtmosphereConfig config;
+    private final ClusterTransport transport;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> received = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > DEDUPLICATION_WINDOW;
+        }
+    };
+
+    ClusterNode(AtmosphereConfig config, ClusterTransport transport) {
+        this.config = config;
+        this.transport = transport;
+    }
+
+    /**
+     * Return the {@link ClusterNode} of this {@link AtmosphereConfig}, starting it if needed. A
+     * {@link ClusterTransport} may be set by the application under the {@link ClusterTransport} class name inside
+     * {@link AtmosphereConfig#properties()}, otherwise {@link ApplicationConfig#CLUSTER_TRANSPORT} is used.
+     */
+    static ClusterNode get(final AtmosphereConfig config) {
+        synchronized (config.properties()) {
+            ClusterNode node = (ClusterNode) config.properties().get(ClusterNode.class.getName());
+            if (node != null) return node;
+
+            ClusterTransport transport = (ClusterTransport) config.properties().get(ClusterTransport.class.getName());
+            try {
+                if (transport == null) {
+                    String s = config.getInitParameter(ApplicationConfig.CLUSTER_TRANSPORT);
+                    transport = s == null ? new NIOClusterTransport()
+                            : (ClusterTransport) IOUtils.loadClass(ClusterNode.class, s).newInstance();
+                    transport.configure(config);
+                }
+
+                final ClusterNode n = new ClusterNode(config, transport);
+                transport.start(n);
+                config.shutdownHook(new AtmosphereConfig.ShutdownHook() {
+                    @Override
+                    public void shutdown() {
+                        n.transport.destroy();
+                        config.properties().remove(ClusterNode.class.getName());
+                    }
+                });
+                config.properties().put(ClusterNode.class.getName(), n);
+                return n;
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to start the cluster transport", e);
+            }
+        }
+    }
+
+    /**
+     * Send a message to the other nodes.
+     */
+    void send(String broadcasterId, Object message) {
+        try {
+            transport.send(encode(broadcasterId, message));
+        } catch (IOException e) {
+            logger.warn("Unable to encode message {}", message, e);
+        }
+    }
+
+    byte[] encode(String broadcasterId, Object message) throws IOException {
+        byte type = message instanceof byte[] ? BYTES : STRING;
+        byte[] payload = type == BYTES ? (byte[]) message : message.toString().getBytes("UTF-8");
+
+        ByteArrayOutputStream b = new ByteArrayOutputStream(payload.length + 128);
+        DataOutputStream out = new DataOutputStream(b);
+        out.writeUTF(nodeId);
+        out.writeLong(sequence.incrementAndGet());
+        out.writeUTF(broadcasterId);
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+        return b.toByteArray();
+    }
+
+    @Override
+    public void onMessage(byte[] message) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+            String origin = in.readUTF();
+            long seq = in.readLong();
+            String broadcasterId = in.readUTF();
+            byte type = in.readByte();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+
+            if (origin.equals(nodeId) || !firstSeen(origin + ":" + seq)) {
+                logger.trace("Discarding duplicated message {}:{}", origin, seq);
+                return;
+            }
+
+            Broadcaster b = config.getBroadcasterFactory().lookup(broadcasterId, false);
+            if (b instanceof ClusterBroadcaster) {
+                ((ClusterBroadcaster) b).receive(type == BYTES ? payload : new String(payload, "UTF-8"));
+            } else {
+                logger.trace("No ClusterBroadcaster {} on this node", broadcasterId);
+            }
+        } catch (IOException e) {
+            logger.warn("Invalid cluster message", e);
+        }
+    }
+
+    private boolean firstSeen(String id) {
+        synchronized (received) {
+            return received.put(id, Long.valueOf(0)) == null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util.cluster;
+
+import org.atmosphere.cpr.AtmosphereConfig;
+
+import java.io.IOException;
+
+/**
+ * The transport used by the {@link ClusterBroadcaster} to exchange messages between the nodes of a cluster. A
+ * transport sends opaque messages to every peer and is free to group them, hence messages must not be assumed to
+ * arrive one network frame at a time. The default implementation is {@link NIOClusterTransport}, another one can be
+ * configured using {@link org.atmosphere.cpr.ApplicationConfig#CLUSTER_TRANSPORT}.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public interface ClusterTransport {
+
+    /**
+     * Configure the transport.
+     *
+     * @param config the {@link AtmosphereConfig}
+     */
+    void configure(AtmosphereConfig config);
+
+    /**
+     * Start accepting messages from the peers.
+     *
+     * @param receiver the {@link Receiver} invoked for every message received.
+     * @throws IOException
+     */
+    void start(Receiver receiver) throws IOException;
+
+    /**
+     * Send a message to every peer. This method must not block on the network.
+     *
+     * @param message the message
+     */
+    void send(byte[] message);
+
+    /**
+     * Close every connection.
+     */
+    void destroy();
+
+    /**
+     * Receive the messages sent by the peers.
+     */
+    interface Receiver {
+
+        void onMessage(byte[] message);
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util.cluster;
+
+import org.atmosphere.cpr.ApplicationConfig;
+import org.atmosphere.cpr.AtmosphereConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ClusterTransport} using plain NIO sockets. Every node listens on
+ * {@link ApplicationConfig#CLUSTER_LOCAL_ADDRESS} and opens one connection to every peer listed in
+ * {@link ApplicationConfig#CLUSTER_PEERS}.
+ * <p/>
+ * Messages sent to a peer are queued and written by a single task per peer, which groups all the queued messages,
+ * up to {@link ApplicationConfig#CLUSTER_BATCH_SIZE}, inside one frame. A frame is a length prefixed batch:
+ * <blockquote><pre>
+ *     int frameLength | int count | (int messageLength | byte[] message) * count
+ * </pre></blockquote>
+ * No delay is added: a message is written immediately when the peer is idle and batching only happens when messages
+ * are produced faster than they can be written. A batch that fails to be written is re-sent once on a new connection,
+ * so a peer may receive it twice; the {@link ClusterBroadcaster} discards duplicated messages.
+ * <p/>
+ * At most {@link ApplicationConfig#CLUSTER_MAX_PENDING} messages are queued per peer, new ones are dropped once
+ * reached. A peer is connected within {@link ApplicationConfig#CLUSTER_CONNECT_TIMEOUT} milliseconds: when it can't,
+ * the messages are dropped without connecting again for a delay doubling with every failure, up to 30 seconds.
+ * <p/>
+ * The transport listens on the loopback interface unless configured otherwise, and only accepts connections from the
+ * hosts of its peers. A frame may contain up to {@link ApplicationConfig#CLUSTER_BATCH_SIZE} messages of
+ * {@link ApplicationConfig#CLUSTER_MAX_MESSAGE_SIZE} bytes: a larger frame closes the connection.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class NIOClusterTransport implements ClusterTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(NIOClusterTransport.class);
+    // The initial size of the buffer a frame is read into, grown as the frame's data arrives.
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final long MIN_BACKOFF = 100;
+    private static final long MAX_BACKOFF = 30000;
+
+    private InetSocketAddress local = new InetSocketAddress("127.0.0.1", 7070);
+    private volatile List<Peer> peers = Collections.emptyList();
+    private int batchSize = 256;
+    private int maxMessageSize = 65536;
+    private int maxPending = 10000;
+    private int connectTimeout = 5000;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private ServerSocketChannel server;
+    private Selector selector;
+    private Thread reader;
+    private ExecutorService writers;
+    private Receiver receiver;
+
+    public NIOClusterTransport() {
+    }
+
+    @Override
+    public void configure(AtmosphereConfig config) {
+        String s = config.getInitParameter(ApplicationConfig.CLUSTER_LOCAL_ADDRESS);
+        if (s != null) {
+            local = address(s);
+        }
+
+        s = config.getInitParameter(ApplicationConfig.CLUSTER_PEERS);
+        if (s != null) {
+            List<InetSocketAddress> l = new ArrayList<InetSocketAddress>();
+            for (String p : s.split(",")) {
+                if (p.trim().length() > 0) {
+                    l.add(address(p.trim()));
+                }
+            }
+            peers(l);
+        }
+
+        batchSize = Integer.valueOf(config.getInitParameter(ApplicationConfig.CLUSTER_BATCH_SIZE, "256"));
+        maxMessageSize = Integer.valueOf(config.getInitParameter(ApplicationConfig.CLUSTER_MAX_MESSAGE_SIZE, "65536"));
+        maxPending = Integer.valueOf(config.getInitParameter(ApplicationConfig.CLUSTER_MAX_PENDING, "10000"));
+        connectTimeout = Integer.valueOf(config.getInitParameter(ApplicationConfig.CLUSTER_CONNECT_TIMEOUT, "5000"));
+    }
+
+    /**
+     * Set the address this node listens on. Port 0 binds an ephemeral port, see {@link #localAddress()}.
+     *
+     * @param local the address
+     * @return this
+     */
+    public NIOClusterTransport local(InetSocketAddress local) {
+        this.local = local;
+        return this;
+    }
+
+    /**
+     * Return the address this node listens on, once started.
+     *
+     * @return the address this node listens on
+     */
+    public InetSocketAddress localAddress() {
+        return server != null ? (InetSocketAddress) server.socket().getLocalSocketAddress() : local;
+    }
+
+    /**
+     * Set the peers. Can be invoked after the transport has been started.
+     *
+     * @param addresses the address of the peers
+     * @return this
+     */
+    public NIOClusterTransport peers(List<InetSocketAddress> addresses) {
+        List<Peer> l = new ArrayList<Peer>();
+        for (InetSocketAddress a : addresses) {
+            l.add(new Peer(a));
+        }
+        List<Peer> old = peers;
+        peers = l;
+        for (Peer p : old) {
+            p.close();
+        }
+        return this;
+    }
+
+    /**
+     * Set the maximum number of messages written in one frame.
+     *
+     * @param batchSize the maximum number of messages written in one frame
+     * @return this
+     */
+    public NIOClusterTransport batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the maximum size of a message.
+     *
+     * @param maxMessageSize the maximum size of a message, in bytes
+     * @return this
+     */
+    public NIOClusterTransport maxMessageSize(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of messages queued per peer.
+     *
+     * @param maxPending the maximum number of messages queued per peer
+     * @return this
+     */
+    public NIOClusterTransport maxPending(int maxPending) {
+        this.maxPending = maxPending;
+        return this;
+    }
+
+    /**
+     * Set the timeout of a connection to a peer.
+     *
+     * @param connectTimeout the timeout, in milliseconds
+     * @return this
+     */
+    public NIOClusterTransport connectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    // The number of messages queued for all the peers.
+    int pending() {
+        int n = 0;
+        for (Peer p : peers) {
+            n += p.pending.get();
+        }
+        return n;
+    }
+
+    private int maxFrame() {
+        return (int) Math.min(Integer.MAX_VALUE, 4L + (long) batchSize * (4 + maxMessageSize));
+    }
+
+    @Override
+    public void start(Receiver receiver) throws IOException {
+        if (started.getAndSet(true)) return;
+
+        this.receiver = receiver;
+        writers = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Atmosphere-Cluster-Writer-" + count.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.socket().setReuseAddress(true);
+        server.socket().bind(local);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                select();
+            }
+        }, "Atmosphere-Cluster-Reader");
+        reader.setDaemon(true);
+        reader.start();
+        logger.info("Cluster transport listening on {}", localAddress());
+    }
+
+    @Override
+    public void send(byte[] message) {
+        if (message.length > maxMessageSize) {
+            logger.warn("Cluster message of {} bytes exceeds {}, not sent", message.length, ApplicationConfig.CLUSTER_MAX_MESSAGE_SIZE);
+            return;
+        }
+        for (Peer p : peers) {
+            p.offer(message);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (!started.getAndSet(false)) return;
+
+        for (Peer p : peers) {
+            p.close();
+        }
+        writers.shutdownNow();
+        try {
+            selector.close();
+            server.close();
+        } catch (IOException e) {
+            logger.trace("", e);
+        }
+        reader.interrupt();
+    }
+
+    private void select() {
+        while (started.get()) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> i = selector.selectedKeys().iterator();
+                while (i.hasNext()) {
+                    SelectionKey k = i.next();
+                    i.remove();
+                    if (!k.isValid()) continue;
+
+                    if (k.isAcceptable()) {
+                        SocketChannel c = server.accept();
+                        if (c != null && !isPeer(c.socket().getInetAddress())) {
+                            logger.warn("Rejecting cluster connection from {}, not a configured peer", c.socket().getRemoteSocketAddress());
+                            c.close();
+                        } else if (c != null) {
+                            c.configureBlocking(false);
+                            c.register(selector, SelectionKey.OP_READ, new FrameReader());
+                        }
+                    } else if (k.isReadable()) {
+                        read(k);
+                    }
+                }
+            } catch (Throwable t) {
+                if (started.get()) {
+                    logger.warn("Cluster transport error", t);
+                }
+            }
+        }
+    }
+
+    private void read(SelectionKey k) {
+        SocketChannel c = (SocketChannel) k.channel();
+        FrameReader f = (FrameReader) k.attachment();
+        try {
+            if (!f.read(c)) {
+                k.cancel();
+                c.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Peer {} disconnected", c.socket().getRemoteSocketAddress(), e);
+            k.cancel();
+            try {
+                c.close();
+            } catch (IOException ex) {
+                logger.trace("", ex);
+            }
+        }
+    }
+
+    private boolean isPeer(InetAddress remote) {
+        for (Peer p : peers) {
+            if (remote.equals(p.address.getAddress())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dispatch(ByteBuffer frame) throws IOException {
+        int count = frame.getInt();
+        if (count < 0 || count > batchSize) {
+            throw new IOException("Invalid message count " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            int length = frame.remaining() >= 4 ? frame.getInt() : -1;
+            if (length < 0 || length > maxMessageSize || length > frame.remaining()) {
+                throw new IOException("Invalid message length " + length);
+            }
+            byte[] message = new byte[length];
+            frame.get(message);
+            try {
+                receiver.onMessage(message);
+            } catch (Throwable t) {
+                logger.warn("Unable to dispatch cluster message", t);
+            }
+        }
+    }
+
+    private static InetSocketAddress address(String s) {
+        int i = s.lastIndexOf(':');
+        if (i == -1) {
+            throw new IllegalArgumentException("Invalid cluster address " + s + ". Must be host:port");
+        }
+        return new InetSocketAddress(s.substring(0, i), Integer.valueOf(s.substring(i + 1)));
+    }
+
+    /**
+     * Read length prefixed frames from a non blocking channel.
+     */
+    private final class FrameReader {
+        private final ByteBuffer header = ByteBuffer.allocate(4);
+        private ByteBuffer body;
+        private int length;
+
+        /**
+         * @return false if the channel has been closed by the peer.
+         */
+        boolean read(SocketChannel c) throws IOException {
+            for (; ; ) {
+                if (body == null) {
+                    if (c.read(header) == -1) return false;
+                    if (header.hasRemaining()) return true;
+
+                    header.flip();
+                    length = header.getInt();
+                    header.clear();
+                    if (length < 4 || length > maxFrame()) {
+                        throw new IOException("Invalid frame length " + length);
+                    }
+                    // Only allocate the frame as its data arrives.
+                    body = ByteBuffer.allocate(Math.min(length, READ_BUFFER_SIZE));
+                }
+
+                if (!body.hasRemaining()) {
+                    ByteBuffer b = ByteBuffer.allocate((int) Math.min(length, 2L * body.capacity()));
+                    body.flip();
+                    body = b.put(body);
+                }
+                if (c.read(body) == -1) return false;
+                if (body.position() < length) {
+                    // Wait for more data, unless the buffer is full and must grow first.
+                    if (body.hasRemaining()) return true;
+                    continue;
+                }
+
+                body.flip();
+                ByteBuffer frame = body;
+                body = null;
+                dispatch(frame);
+            }
+        }
+    }
+
+    /**
+     * The outbound side of a peer: a queue of messages written in batches by a single task.
+     */
+    private final class Peer implements Runnable {
+        private final InetSocketAddress address;
+        private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<byte[]>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+        private SocketChannel channel;
+        // When to connect again after a failure, and the delay doubled by the next one.
+        private long retryAt;
+        private long backoff = MIN_BACKOFF;
+        private volatile boolean closed;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void offer(byte[] message) {
+            if (closed) return;
+
+            if (pending.incrementAndGet() > maxPending) {
+                pending.decrementAndGet();
+                if (!overflowed.getAndSet(true)) {
+                    logger.warn("Too many messages queued for peer {}, dropping new ones", address);
+                }
+                return;
+            }
+            queue.offer(message);
+            if (scheduled.compareAndSet(false, true)) {
+                writers.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (; ; ) {
+                if (closed) {
+                    closeChannel();
+                    return;
+                }
+
+                ByteBuffer frame;
+                while ((frame = batch()) != null) {
+                    write(frame);
+                }
+                scheduled.set(false);
+                // A message may have been queued, or the peer closed, after the last poll but before the flag was reset.
+                if ((queue.isEmpty() && !closed) || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private ByteBuffer batch() {
+            List<byte[]> messages = new ArrayList<byte[]>();
+            int length = 4;
+            byte[] m;
+            while (messages.size() < batchSize && (m = queue.poll()) != null) {
+                pending.decrementAndGet();
+                messages.add(m);
+                length += 4 + m.length;
+            }
+            if (messages.isEmpty()) return null;
+
+            ByteBuffer frame = ByteBuffer.allocate(4 + length);
+            frame.putInt(length).putInt(messages.size());
+            for (byte[] b : messages) {
+                frame.putInt(b.length).put(b);
+            }
+            frame.flip();
+            return frame;
+        }
+
+        private void write(ByteBuffer frame) {
+            if (channel == null && System.currentTimeMillis() < retryAt) {
+                logger.trace("Peer {} unreachable, waiting before connecting again. Messages lost", address);
+                return;
+            }
+
+            for (int attempt = 0; attempt < 2 && !closed; attempt++) {
+                try {
+                    if (channel == null) {
+                        channel = SocketChannel.open();
+                        channel.socket().connect(address, connectTimeout);
+                        channel.socket().setTcpNoDelay(true);
+                        backoff = MIN_BACKOFF;
+                    }
+                    frame.rewind();
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                    overflowed.set(false);
+                    return;
+                } catch (IOException e) {
+                    logger.debug("Unable to write to peer {}", address, e);
+                    closeChannel();
+                }
+            }
+            retryAt = System.currentTimeMillis() + backoff;
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            logger.warn("Peer {} unreachable. Messages lost", address);
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.trace("", e);
+                }
+                channel = null;
+            }
+        }
+
+        void close() {
+            closed = true;
+            queue.clear();
+            pending.set(0);
+            // Let the writer task close the channel it owns, or do it now if none is running.
+            if (scheduled.compareAndSet(false, true)) {
+                closeChannel();
+            }
+        }
+    }
+}
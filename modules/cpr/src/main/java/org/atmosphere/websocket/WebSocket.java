@@ -24,6 +24,7 @@ import org.atmosphere.cpr.AtmosphereResource;
 import org.atmosphere.cpr.AtmosphereResourceImpl;
 import org.atmosphere.cpr.AtmosphereResponse;
 import org.atmosphere.util.ByteArrayAsyncWriter;
+import org.atmosphere.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -235,7 +236,7 @@ public abstract class WebSocket extends AtmosphereInterceptorWriter {
      */
     public WebSocket broadcast(Object o) {
         if (r != null) {
-            r.getBroadcaster().broadcast(o);
+            Utils.broadcastAndForget(r.getBroadcaster(), o);
         } else {
             logger.debug("No AtmosphereResource Associated with this WebSocket.");
         }
@@ -297,6 +298,16 @@ public abstract class WebSocket extends AtmosphereInterceptorWriter {
      */
     abstract public boolean isOpen();
 
+    /**
+     * Return false when the client doesn't read fast enough and too many frames are waiting to be written. A
+     * {@link org.atmosphere.cpr.Broadcaster} doesn't write to a WebSocket until it becomes writable again.
+     *
+     * @return true if the WebSocket accepts new frames
+     */
+    public boolean isWritable() {
+        return true;
+    }
+
     /**
      * Use the underlying container's websocket to write the String.
      *
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.websocket;
+
+import org.atmosphere.cache.BroadcastMessage;
+import org.atmosphere.cpr.ApplicationConfig;
+import org.atmosphere.cpr.AtmosphereConfig;
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.AtmosphereResourceImpl;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.DefaultBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A non blocking queue of the frames to be written by an asynchronous {@link WebSocket}. A single frame is written at
+ * a time: the next one is sent by the completion callback of the previous one, so a thread writing to the
+ * {@link WebSocket} never waits for the client.
+ * <p/>
+ * When {@link ApplicationConfig#WEBSOCKET_OUTBOUND_HIGH_WATER_MARK} frames are pending, the queue overflows and the
+ * {@link OVERFLOW} policy applies to every new frame until the queue drains down to
+ * {@link ApplicationConfig#WEBSOCKET_OUTBOUND_LOW_WATER_MARK} frames. Pending text frames can also be coalesced into a
+ * single frame, see {@link ApplicationConfig#WEBSOCKET_OUTBOUND_COALESCING}.
+ * <p/>
+ * An implementation starts the write of a frame in {@link #send(Object)} and invokes {@link #sent(Object, boolean)}
+ * once it completes.
+ * <p/>
+ * A frame which can't be written is added to the {@link org.atmosphere.cache.BroadcasterCache} as the message which was
+ * broadcasted, so it goes through the {@link org.atmosphere.cpr.AtmosphereInterceptor}s again when it is replayed.
+ *
+ * @author Jeanfrancois Arcand
+ */
+public abstract class WebSocketOutboundQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketOutboundQueue.class);
+
+    public enum OVERFLOW {
+        /**
+         * Discard the frame.
+         */
+        DROP,
+        /**
+         * Add the frame to the {@link org.atmosphere.cache.BroadcasterCache}, so it is delivered once the client
+         * reconnects.
+         */
+        CACHE,
+        /**
+         * Close the {@link WebSocket} after caching the frame. The client is expected to reconnect and retrieve the
+         * frames it missed from the {@link org.atmosphere.cache.BroadcasterCache}.
+         */
+        CLOSE
+    }
+
+    private final WebSocket webSocket;
+    private final ConcurrentLinkedQueue<Frame> queue = new ConcurrentLinkedQueue<Frame>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    // The queue sending a frame from the current thread, used to detect a completion invoked from within send().
+    private static final ThreadLocal<WebSocketOutboundQueue> sender = new ThreadLocal<WebSocketOutboundQueue>();
+    // The frame being written, only one at a time.
+    private volatile Frame writing;
+    // The write of the last message added to the BroadcasterCache, so a message written as several frames is cached once.
+    private volatile Object cached;
+    private volatile boolean overflowed;
+    private final int highWaterMark;
+    private final int lowWaterMark;
+    private final boolean coalescing;
+    private final OVERFLOW overflow;
+
+    public WebSocketOutboundQueue(WebSocket webSocket, AtmosphereConfig config) {
+        this.webSocket = webSocket;
+        this.highWaterMark = Integer.valueOf(config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_HIGH_WATER_MARK, "1000"));
+        this.lowWaterMark = Integer.valueOf(config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_LOW_WATER_MARK, String.valueOf(highWaterMark / 2)));
+        this.coalescing = config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_COALESCING, false);
+        this.overflow = overflowPolicy(config);
+    }
+
+    /**
+     * Return the configured {@link OVERFLOW} policy.
+     *
+     * @param config the {@link AtmosphereConfig}
+     * @return the {@link OVERFLOW} policy, {@link OVERFLOW#CACHE} by default
+     */
+    public static OVERFLOW overflowPolicy(AtmosphereConfig config) {
+        String s = config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_OVERFLOW_POLICY);
+        return s == null ? OVERFLOW.CACHE : OVERFLOW.valueOf(s.toUpperCase());
+    }
+
+    /**
+     * Queue a frame, and write it if no other frame is being written.
+     *
+     * @param frame a {@link String} or a {@link ByteBuffer}
+     */
+    public void offer(Object frame) {
+        Object message = message(webSocket);
+        if (overflowed() || pending.get() >= highWaterMark) {
+            overflowed = true;
+            overflow(webSocket, overflow, frame, message);
+            return;
+        }
+        pending.incrementAndGet();
+        queue.offer(new Frame(frame, write(webSocket), message));
+        flush();
+    }
+
+    /**
+     * Start writing a frame.
+     *
+     * @param frame a {@link String} or a {@link ByteBuffer}
+     * @return false if the write failed immediately, in which case {@link #sent(Object, boolean)} must not be invoked
+     */
+    protected abstract boolean send(Object frame);
+
+    /**
+     * Invoked once the write of a frame completes, successfully or not.
+     *
+     * @param frame the frame
+     * @param ok    false if the frame couldn't be written
+     */
+    public void sent(Object frame, boolean ok) {
+        Frame f = writing;
+        writing = null;
+        if (!ok) {
+            logger.trace("WebSocket {} failed to write {}", webSocket.resource(), frame);
+            if (f != null) cache(f);
+        }
+        sending.set(false);
+        // When the completion is invoked from within send(), the flush() loop sends the next frame.
+        if (sender.get() != this) {
+            flush();
+        }
+    }
+
+    /**
+     * Return the number of frames waiting to be written.
+     *
+     * @return the number of frames waiting to be written
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Return false when the queue has overflowed, until it drains down to the low water mark.
+     *
+     * @return true if new frames are queued
+     */
+    public boolean isWritable() {
+        return !overflowed();
+    }
+
+    private boolean overflowed() {
+        // The queue may have been drained between the check of offer() and the flag being set, in which case no
+        // poll() clears it.
+        if (overflowed && pending.get() <= lowWaterMark) {
+            overflowed = false;
+        }
+        return overflowed;
+    }
+
+    /**
+     * Add all the frames waiting to be written to the {@link org.atmosphere.cache.BroadcasterCache}.
+     */
+    public void clear() {
+        Frame frame;
+        while ((frame = queue.poll()) != null) {
+            pending.decrementAndGet();
+            cache(frame);
+        }
+    }
+
+    private void flush() {
+        while (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+            Frame frame = poll();
+            if (frame == null) {
+                sending.set(false);
+                continue;
+            }
+
+            writing = frame;
+            sender.set(this);
+            boolean started;
+            try {
+                started = send(frame.data);
+            } finally {
+                sender.remove();
+            }
+
+            if (!started) {
+                writing = null;
+                cache(frame);
+                sending.set(false);
+            }
+        }
+    }
+
+    private Frame poll() {
+        Frame frame = queue.poll();
+        if (frame == null) return null;
+
+        int left = pending.decrementAndGet();
+        if (coalescing && frame.data instanceof String && text(queue.peek())) {
+            StringBuilder b = new StringBuilder((String) frame.data);
+            List<Frame> parts = new ArrayList<Frame>();
+            parts.add(frame);
+            while (text(queue.peek())) {
+                Frame next = queue.poll();
+                if (next == null) break;
+                b.append(next.data);
+                parts.add(next);
+                left = pending.decrementAndGet();
+            }
+            frame = new Frame(b.toString(), parts);
+        }
+
+        if (overflowed && left <= lowWaterMark) {
+            overflowed = false;
+        }
+        return frame;
+    }
+
+    private static boolean text(Frame frame) {
+        return frame != null && frame.data instanceof String;
+    }
+
+    private void cache(Frame frame) {
+        if (frame.parts != null) {
+            for (Frame f : frame.parts) {
+                cache(f);
+            }
+        } else if (frame.write == null || frame.write != cached) {
+            cached = frame.write;
+            cache(webSocket, frame.data, frame.message);
+        }
+    }
+
+    private static Object write(WebSocket webSocket) {
+        AtmosphereResource r = webSocket.resource();
+        if (r == null || !AtmosphereResourceImpl.class.isAssignableFrom(r.getClass())) return null;
+
+        AtmosphereRequest request = AtmosphereResourceImpl.class.cast(r).getRequest(false);
+        return request != null && message(webSocket) != null ? request.asyncToken() : null;
+    }
+
+    /**
+     * Return the message, as it was broadcasted, which is being written to a {@link WebSocket}.
+     *
+     * @param webSocket the {@link WebSocket}
+     * @return the message, or null if the {@link WebSocket} isn't written by a {@link Broadcaster}
+     */
+    public static Object message(WebSocket webSocket) {
+        AtmosphereResource r = webSocket.resource();
+        return r == null ? null : DefaultBroadcaster.originalMessage(r);
+    }
+
+    /**
+     * Apply an {@link OVERFLOW} policy to a frame which can't be written.
+     *
+     * @param webSocket the {@link WebSocket}
+     * @param policy    the {@link OVERFLOW} policy
+     * @param frame     a {@link String} or a {@link ByteBuffer}
+     * @param message   the message the frame was written for, see {@link #message(WebSocket)}
+     */
+    public static void overflow(WebSocket webSocket, OVERFLOW policy, Object frame, Object message) {
+        switch (policy) {
+            case DROP:
+                logger.debug("WebSocket {} has too many pending writes, discarding {}", webSocket.resource(), frame);
+                break;
+            case CACHE:
+                logger.trace("WebSocket {} has too many pending writes, caching {}", webSocket.resource(), frame);
+                cache(webSocket, frame, message);
+                break;
+            case CLOSE:
+                logger.debug("WebSocket {} has too many pending writes, closing", webSocket.resource());
+                cache(webSocket, frame, message);
+                webSocket.close();
+                break;
+        }
+    }
+
+    /**
+     * Add a frame which can't be written to the {@link org.atmosphere.cache.BroadcasterCache} of the
+     * {@link WebSocket}'s {@link AtmosphereResource}. The message the frame was written for is cached when known, the
+     * frame itself otherwise.
+     *
+     * @param webSocket the {@link WebSocket}
+     * @param frame     a {@link String} or a {@link ByteBuffer}
+     * @param message   the message the frame was written for, or null
+     */
+    public static void cache(WebSocket webSocket, Object frame, Object message) {
+        AtmosphereResource r = webSocket.resource();
+        if (r == null) return;
+
+        if (message == null) {
+            message = frame instanceof ByteBuffer ? bytes((ByteBuffer) frame) : frame;
+        }
+        Broadcaster b = r.getBroadcaster();
+        b.getBroadcasterConfig().getBroadcasterCache().addToCache(b.getID(), r.uuid(), new BroadcastMessage(message));
+    }
+
+    private static byte[] bytes(ByteBuffer frame) {
+        ByteBuffer b = frame.duplicate();
+        byte[] bytes = new byte[b.remaining()];
+        b.get(bytes);
+        return bytes;
+    }
+
+    private static final class Frame {
+        private final Object data;
+        // The write of the Broadcaster the frame belongs to, and the message it wrote, or null.
+        private final Object write;
+        private final Object message;
+        // The frames coalesced into this one, if any.
+        private final List<Frame> parts;
+
+        private Frame(Object data, Object write, Object message) {
+            this.data = data;
+            this.write = write;
+            this.message = message;
+            this.parts = null;
+        }
+
+        private Frame(Object data, List<Frame> parts) {
+            this.data = data;
+            this.write = null;
+            this.message = null;
+            this.parts = parts;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.atmosphere.websocket.protocol;
 import org.atmosphere.cpr.AtmosphereConfig;
 import org.atmosphere.cpr.AtmosphereRequest;
 import org.atmosphere.cpr.AtmosphereResponse;
+import org.atmosphere.util.Utils;
 import org.atmosphere.websocket.WebSocket;
 import org.atmosphere.websocket.WebSocketProcessor;
 import org.atmosphere.websocket.WebSocketProtocol;
@@ -40,7 +41,7 @@ public class EchoProtocol implements WebSocketProtocol {
     @Override
     public List<AtmosphereRequest> onMessage(WebSocket webSocket, String data) {
         logger.trace("broadcast String");
-        webSocket.resource().getBroadcaster().broadcast(data);
+        Utils.broadcastAndForget(webSocket.resource().getBroadcaster(), data);
         return null;
     }
 
@@ -49,7 +50,7 @@ public class EchoProtocol implements WebSocketProtocol {
         logger.trace("broadcast byte");
         byte[] b = new byte[length];
         System.arraycopy(data, offset, b, 0, length);
-        webSocket.resource().getBroadcaster().broadcast(b);
+        Utils.broadcastAndForget(webSocket.resource().getBroadcaster(), b);
         return null;
     }
 
@@ -20,6 +20,7 @@ import org.atmosphere.cpr.AtmosphereResource;
 import org.atmosphere.cpr.AtmosphereResourceImpl;
 import org.atmosphere.cpr.FrameworkConfig;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -51,11 +52,47 @@ public class ProtocolUtil {
         return b;
     }
 
+    /**
+     * Create the per connection template used by {@link #constructRequest(AtmosphereResource, AtmosphereRequest.Builder)}.
+     * The attributes of the connection's request are not copied: requests derived from the template read them through
+     * the wrapped connection's request.
+     */
+    protected static AtmosphereRequest.Builder constructTemplate(AtmosphereResource resource,
+                                                                 String pathInfo,
+                                                                 String requestURI,
+                                                                 String methodType,
+                                                                 String contentType,
+                                                                 boolean destroyable) {
+        AtmosphereRequest request = AtmosphereResourceImpl.class.cast(resource).getRequest(false);
+        return new AtmosphereRequest.Builder()
+                .request(request)
+                .method(methodType)
+                .contentType(contentType == null ? request.getContentType() : contentType)
+                .pathInfo(pathInfo)
+                .contextPath(request.getContextPath())
+                .servletPath(request.getServletPath())
+                .requestURI(requestURI)
+                .requestURL(request.requestURL())
+                .destroyable(destroyable)
+                .attributes(new ConcurrentHashMap<String, Object>(Collections.<String, Object>singletonMap(
+                        FrameworkConfig.WEBSOCKET_SUBPROTOCOL, FrameworkConfig.SIMPLE_HTTP_OVER_WEBSOCKET)))
+                .headers(request.headersMap());
+    }
+
+    /**
+     * Derive a new {@link AtmosphereRequest.Builder} from a template created by
+     * {@link #constructTemplate(AtmosphereResource, String, String, String, String, boolean)}. Only the session is
+     * computed, the caller is expected to set the body.
+     */
+    protected static AtmosphereRequest.Builder constructRequest(AtmosphereResource resource, AtmosphereRequest.Builder template) {
+        return template.derive().session(resource.session());
+    }
+
     private static Map<String, Object> attributes(AtmosphereRequest request) {
         Map<String, Object> m = new ConcurrentHashMap<String, Object>();
         m.put(FrameworkConfig.WEBSOCKET_SUBPROTOCOL, FrameworkConfig.SIMPLE_HTTP_OVER_WEBSOCKET);
         for (Map.Entry<String, Object> e : request.attributes().entrySet()) {
-            if (e.getKey() != null) {
+            if (e.getKey() != null && e.getValue() != null) {
                 m.put(e.getKey(), e.getValue());
             }
         }
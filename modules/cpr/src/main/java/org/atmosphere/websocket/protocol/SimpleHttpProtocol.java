@@ -25,13 +25,17 @@ import org.atmosphere.websocket.WebSocketProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.atmosphere.websocket.protocol.ProtocolUtil.constructRequest;
+import static org.atmosphere.websocket.protocol.ProtocolUtil.constructTemplate;
 
 /**
  * Like the {@link org.atmosphere.cpr.AsynchronousProcessor} class, this class is responsible for dispatching WebSocket messages to the
@@ -41,6 +45,11 @@ import static org.atmosphere.websocket.protocol.ProtocolUtil.constructRequest;
  * The content-type is defined using {@link org.atmosphere.cpr.ApplicationConfig#WEBSOCKET_CONTENT_TYPE} property
  * The method is defined using {@link org.atmosphere.cpr.ApplicationConfig#WEBSOCKET_METHOD} property
  * <p/>
+ * When {@link org.atmosphere.cpr.ApplicationConfig#WEBSOCKET_REQUEST_TEMPLATE} is set to true, a request template is
+ * created once per connection by {@link #onOpen(org.atmosphere.websocket.WebSocket)} and every message's request is
+ * derived from it, only replacing the body. The attributes of the connection's request are read through, instead of
+ * being copied into every message's request.
+ * <p/>
  *
  * @author Jeanfrancois Arcand
  */
@@ -53,6 +62,8 @@ public class SimpleHttpProtocol implements WebSocketProtocol, Serializable {
     protected String delimiter = "@@";
     protected boolean destroyable;
     protected boolean rewriteUri;
+    protected boolean useTemplate;
+    private transient ConcurrentHashMap<WebSocket, RequestTemplate> templates = new ConcurrentHashMap<WebSocket, RequestTemplate>();
 
     @Override
     public void configure(AtmosphereConfig config) {
@@ -78,6 +89,7 @@ public class SimpleHttpProtocol implements WebSocketProtocol, Serializable {
         destroyable = s != null && Boolean.valueOf(s);
 
         rewriteUri = Boolean.valueOf(config.getInitParameter(ApplicationConfig.REWRITE_WEBSOCKET_REQUESTURI, "true"));
+        useTemplate = Boolean.valueOf(config.getInitParameter(ApplicationConfig.WEBSOCKET_REQUEST_TEMPLATE, "false"));
     }
 
     @Override
@@ -91,17 +103,24 @@ public class SimpleHttpProtocol implements WebSocketProtocol, Serializable {
 
         if (!resource.isInScope()) return Collections.emptyList();
 
-        String pathInfo = request.getPathInfo();
-        String requestURI = request.getRequestURI();
-
-        // This confuse some JAXRS servers like RestEasy
-        if (rewriteUri && (requestURI.startsWith("http://") || requestURI.startsWith("https://"))) {
-            logger.debug("Rewriting requestURI {}. To disable, add {} set to true as init-param",
-                    requestURI, ApplicationConfig.REWRITE_WEBSOCKET_REQUESTURI);
-            requestURI = URI.create(requestURI).getPath();
-            request.requestURI(requestURI);
+        RequestTemplate template = useTemplate ? templates.get(webSocket) : null;
+        if (template != null) {
+            AtmosphereRequest.Builder b = constructRequest(resource, template.builder);
+            if (message.startsWith(delimiter)) {
+                int delimiterLength = delimiter.length();
+                int bodyBeginIndex = message.indexOf(delimiter, delimiterLength);
+                if (bodyBeginIndex != -1) {
+                    String pathInfo = message.substring(delimiterLength, bodyBeginIndex);
+                    b.pathInfo(pathInfo).requestURI(template.requestURI + pathInfo);
+                    message = message.substring(bodyBeginIndex + delimiterLength);
+                }
+            }
+            return Collections.singletonList(b.body(message).build());
         }
 
+        String pathInfo = request.getPathInfo();
+        String requestURI = rewriteURI(request);
+
         if (message.startsWith(delimiter)) {
             int delimiterLength = delimiter.length();
             int bodyBeginIndex = message.indexOf(delimiter, delimiterLength);
@@ -132,6 +151,11 @@ public class SimpleHttpProtocol implements WebSocketProtocol, Serializable {
 
         if (!resource.isInScope()) return Collections.emptyList();
 
+        RequestTemplate template = useTemplate ? templates.get(webSocket) : null;
+        if (template != null) {
+            return Collections.singletonList(constructRequest(resource, template.builder).body(d, offset, length).build());
+        }
+
         List<AtmosphereRequest> list = new ArrayList<AtmosphereRequest>();
         list.add(constructRequest(resource, request.getPathInfo(), request.getRequestURI(), methodType, contentType.equalsIgnoreCase(TEXT) ? null : contentType, destroyable).body(d, offset, length).build());
 
@@ -141,10 +165,40 @@ public class SimpleHttpProtocol implements WebSocketProtocol, Serializable {
 
     @Override
     public void onOpen(WebSocket webSocket) {
+        if (!useTemplate) return;
+
+        AtmosphereResourceImpl resource = (AtmosphereResourceImpl) webSocket.resource();
+        if (resource == null) return;
+
+        AtmosphereRequest request = resource.getRequest(false);
+        String requestURI = rewriteURI(request);
+        templates.put(webSocket, new RequestTemplate(constructTemplate(resource, request.getPathInfo(), requestURI,
+                methodType, contentType.equalsIgnoreCase(TEXT) ? null : contentType, destroyable), requestURI));
     }
 
     @Override
     public void onClose(WebSocket webSocket) {
+        if (useTemplate) {
+            templates.remove(webSocket);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        templates = new ConcurrentHashMap<WebSocket, RequestTemplate>();
+    }
+
+    private String rewriteURI(AtmosphereRequest request) {
+        String requestURI = request.getRequestURI();
+
+        // This confuse some JAXRS servers like RestEasy
+        if (rewriteUri && (requestURI.startsWith("http://") || requestURI.startsWith("https://"))) {
+            logger.debug("Rewriting requestURI {}. To disable, add {} set to true as init-param",
+                    requestURI, ApplicationConfig.REWRITE_WEBSOCKET_REQUESTURI);
+            requestURI = URI.create(requestURI).getPath();
+            request.requestURI(requestURI);
+        }
+        return requestURI;
     }
 
     @Override
@@ -152,5 +206,15 @@ public class SimpleHttpProtocol implements WebSocketProtocol, Serializable {
         logger.warn(t.getMessage() + ". Unable to deliver the websocket messages to installed component." +
                 " Status {} Message {}", t.response().getStatus(), t.response().getStatusMessage());
     }
+
+    private final static class RequestTemplate {
+        private final AtmosphereRequest.Builder builder;
+        private final String requestURI;
+
+        private RequestTemplate(AtmosphereRequest.Builder builder, String requestURI) {
+            this.builder = builder;
+            this.requestURI = requestURI;
+        }
+    }
 }
 
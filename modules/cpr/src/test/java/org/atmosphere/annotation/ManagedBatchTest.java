@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.annotation;
+
+import org.atmosphere.config.managed.Encoder;
+import org.atmosphere.config.service.Get;
+import org.atmosphere.config.service.ManagedService;
+import org.atmosphere.config.service.Message;
+import org.atmosphere.cpr.Action;
+import org.atmosphere.cpr.ApplicationConfig;
+import org.atmosphere.cpr.AsyncIOWriter;
+import org.atmosphere.cpr.AsyncIOWriterAdapter;
+import org.atmosphere.cpr.AsynchronousProcessor;
+import org.atmosphere.cpr.AtmosphereFramework;
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.AtmosphereResourceImpl;
+import org.atmosphere.cpr.AtmosphereResponse;
+import org.atmosphere.cpr.DefaultBroadcaster;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Messages batched by a {@link DefaultBroadcaster} must reach a {@link ManagedService} one by one, so they are encoded
+ * like any other message.
+ */
+public class ManagedBatchTest {
+    private AtmosphereFramework framework;
+    private static final AtomicReference<AtmosphereResource> r = new AtomicReference<AtmosphereResource>();
+
+    @BeforeMethod
+    public void create() throws Throwable {
+        framework = new AtmosphereFramework();
+        framework.setDefaultBroadcasterClassName(DefaultBroadcaster.class.getName());
+        framework.addAnnotationPackage(ManagedBatch.class);
+        framework.addInitParameter(ApplicationConfig.BROADCASTER_BATCH_WINDOW, "500");
+        framework.setAsyncSupport(new AsynchronousProcessor(framework.getAtmosphereConfig()) {
+
+            @Override
+            public Action service(AtmosphereRequest req, AtmosphereResponse res) throws IOException, ServletException {
+                return suspended(req, res);
+            }
+
+            public void action(AtmosphereResourceImpl r) {
+                try {
+                    resumed(r.getRequest(), r.getResponse());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } catch (ServletException e) {
+                    e.printStackTrace();
+                }
+            }
+        }).init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "void";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return mock(ServletContext.class);
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return null;
+            }
+        });
+    }
+
+    @AfterMethod
+    public void after() {
+        r.set(null);
+        framework.destroy();
+    }
+
+    @ManagedService(path = "/batch")
+    public final static class ManagedBatch {
+
+        @Get
+        public void get(AtmosphereResource resource) {
+            r.set(resource);
+            resource.suspend();
+        }
+
+        @Message(encoders = {BatchEncoder.class})
+        public String message(String m) {
+            return m;
+        }
+    }
+
+    public final static class BatchEncoder implements Encoder<String, String> {
+
+        @Override
+        public String encode(String s) {
+            return "<" + s + ">";
+        }
+    }
+
+    @Test
+    public void testBatchedMessagesAreEncoded() throws IOException, ServletException, InterruptedException {
+        final List<String> written = new CopyOnWriteArrayList<String>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        AtmosphereResponse response = AtmosphereResponse.newInstance();
+        response.asyncIOWriter(new AsyncIOWriterAdapter() {
+            @Override
+            public AsyncIOWriter write(AtmosphereResponse r, String data) throws IOException {
+                written.add(data);
+                latch.countDown();
+                return this;
+            }
+
+            @Override
+            public AsyncIOWriter write(AtmosphereResponse r, byte[] data) throws IOException {
+                return write(r, new String(data));
+            }
+
+            @Override
+            public AsyncIOWriter write(AtmosphereResponse r, byte[] data, int offset, int length) throws IOException {
+                return write(r, new String(data, offset, length));
+            }
+        });
+        framework.doCometSupport(new AtmosphereRequest.Builder().pathInfo("/batch").method("GET").build(), response);
+        assertNotNull(r.get());
+
+        // Broadcasted within the batch window.
+        for (String m : new String[]{"a", "b", "c"}) {
+            framework.doCometSupport(new AtmosphereRequest.Builder().pathInfo("/batch").method("POST").body(m).build(),
+                    AtmosphereResponse.newInstance());
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(written, Arrays.asList("<a>", "<b>", "<c>"));
+    }
+}
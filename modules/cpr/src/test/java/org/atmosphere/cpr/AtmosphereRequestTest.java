@@ -24,16 +24,20 @@ import org.testng.annotations.Test;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 public class AtmosphereRequestTest {
@@ -298,4 +302,107 @@ public class AtmosphereRequestTest {
         assertEquals(new String(e.get().asBytes()), "test");
 
     }
+
+    @Test
+    public void testDerivedRequest() throws IOException {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("X-Test", "yes");
+
+        AtmosphereRequest.Builder template = new AtmosphereRequest.Builder()
+                .pathInfo("/a").requestURI("/a").method("POST").headers(headers).destroyable(true);
+
+        AtmosphereRequest first = template.derive().body("first").build();
+        AtmosphereRequest second = template.derive().pathInfo("/a/b").body("second").build();
+
+        assertEquals(first.getPathInfo(), "/a");
+        assertEquals(second.getPathInfo(), "/a/b");
+        assertEquals(first.getHeader("X-Test"), "yes");
+        assertEquals(first.body().asString(), "first");
+        assertEquals(second.body().asString(), "second");
+
+        first.destroy();
+        assertEquals(second.getHeader("X-Test"), "yes");
+    }
+
+    @Test
+    public void testDerivedRequestDoesNotModifyTemplate() {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("X-Test", "yes");
+        AtmosphereRequest.Builder template = new AtmosphereRequest.Builder().pathInfo("/a").headers(headers);
+
+        AtmosphereRequest first = template.derive().body("first").build();
+        first.header("X-Test", "no");
+        first.headersMap().put("X-Other", "yes");
+        first.setAttribute("a", "b");
+
+        AtmosphereRequest second = template.derive().body("second").build();
+        assertEquals(second.getHeader("X-Test"), "yes");
+        assertNull(second.getHeader("X-Other"));
+        assertNull(second.getAttribute("a"));
+        assertEquals(first.getHeader("X-Test"), "no");
+        assertEquals(first.getAttribute("a"), "b");
+    }
+
+    @Test
+    public void testDerivedRequestReadsWrappedAttributes() {
+        AtmosphereRequest connection = new AtmosphereRequest.Builder().build();
+        connection.setAttribute("a", "b");
+
+        AtmosphereRequest.Builder template = new AtmosphereRequest.Builder().request(connection);
+        AtmosphereRequest message = template.derive().body("message").build();
+        assertEquals(message.getAttribute("a"), "b");
+
+        connection.setAttribute("a", "c");
+        assertEquals(message.getAttribute("a"), "c");
+    }
+
+    @Test
+    public void testFrameworkAttributes() {
+        AtmosphereRequest request = new AtmosphereRequest.Builder().build();
+
+        request.setAttribute(ApplicationConfig.MAX_INACTIVE, 10L);
+        assertEquals(request.maxInactive(), 10L);
+
+        request.maxInactive(-1);
+        assertEquals(request.getAttribute(ApplicationConfig.MAX_INACTIVE), -1L);
+
+        request.setAttribute(ApplicationConfig.PROPERTY_USE_STREAM, false);
+        assertEquals(request.useStream(), Boolean.FALSE);
+        assertTrue(Collections.list(request.getAttributeNames()).contains(ApplicationConfig.PROPERTY_USE_STREAM));
+
+        request.removeAttribute(ApplicationConfig.MAX_INACTIVE);
+        assertEquals(request.maxInactive(), 0L);
+        assertNull(request.getAttribute(ApplicationConfig.MAX_INACTIVE));
+    }
+
+    @Test
+    public void testFrameworkAttributesAreForwarded() {
+        AtmosphereRequest wrapped = new AtmosphereRequest.Builder().build();
+        AtmosphereRequest request = new AtmosphereRequest.Builder().request(wrapped).build();
+
+        request.setAttribute(ApplicationConfig.MAX_INACTIVE, 10L);
+        assertEquals(wrapped.getAttribute(ApplicationConfig.MAX_INACTIVE), 10L);
+
+        // The typed setters don't forward, the wrapped value must not be returned.
+        request.maxInactive(0);
+        assertNull(request.getAttribute(ApplicationConfig.MAX_INACTIVE));
+        assertFalse(Collections.list(request.getAttributeNames()).contains(ApplicationConfig.MAX_INACTIVE));
+
+        request.removeAttribute(ApplicationConfig.MAX_INACTIVE);
+        assertNull(wrapped.getAttribute(ApplicationConfig.MAX_INACTIVE));
+    }
+
+    @Test
+    public void testWrappedFrameworkAttributes() {
+        HttpServletRequest container = mock(HttpServletRequest.class);
+        when(container.getAttributeNames()).thenReturn(Collections.enumeration(Collections.singletonList(ApplicationConfig.MAX_INACTIVE)));
+        when(container.getAttribute(ApplicationConfig.MAX_INACTIVE)).thenReturn(10L);
+
+        AtmosphereRequest request = AtmosphereRequest.wrap(container);
+        assertEquals(request.maxInactive(), 10L);
+        request.maxInactive(20);
+        assertEquals(request.getAttribute(ApplicationConfig.MAX_INACTIVE), 20L);
+        request.maxInactive(0);
+        assertNull(request.getAttribute(ApplicationConfig.MAX_INACTIVE));
+    }
 }
@@ -20,9 +20,12 @@ import org.testng.annotations.Test;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
+import java.util.Collections;
 import java.util.Enumeration;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertNull;
@@ -121,4 +124,42 @@ public class AtmosphereResourceFactoryTest {
         assertEquals(2, framework.getAtmosphereConfig().resourcesFactory().broadcasters(r.uuid()).size());
 
     }
+
+    @Test
+    public void membershipTest() {
+        Broadcaster b1 = BroadcasterFactory.getDefault().get("m1");
+        Broadcaster b2 = BroadcasterFactory.getDefault().get("m2");
+        AtmosphereResource r = framework.getAtmosphereConfig().resourcesFactory().create(framework.getAtmosphereConfig(), b1, AtmosphereResponse.newInstance().request(AtmosphereRequest.newInstance()),
+                mock(AsyncSupport.class), mock(AtmosphereHandler.class), AtmosphereResource.TRANSPORT.WEBSOCKET);
+        r.suspend();
+        b2.addAtmosphereResource(r);
+        assertEquals(2, framework.getAtmosphereConfig().resourcesFactory().broadcasters(r.uuid()).size());
+
+        b2.removeAtmosphereResource(r);
+        assertEquals(1, framework.getAtmosphereConfig().resourcesFactory().broadcasters(r.uuid()).size());
+
+        BroadcasterFactory.getDefault().removeAllAtmosphereResource(r);
+        assertEquals(0, framework.getAtmosphereConfig().resourcesFactory().broadcasters(r.uuid()).size());
+        assertEquals(0, b1.getAtmosphereResources().size());
+    }
+
+    @Test
+    public void unindexedBroadcasterTest() {
+        Broadcaster b1 = BroadcasterFactory.getDefault().get("u1");
+        AtmosphereResource r = framework.getAtmosphereConfig().resourcesFactory().create(framework.getAtmosphereConfig(), b1, AtmosphereResponse.newInstance().request(AtmosphereRequest.newInstance()),
+                mock(AsyncSupport.class), mock(AtmosphereHandler.class), AtmosphereResource.TRANSPORT.WEBSOCKET);
+        r.suspend();
+
+        // A Broadcaster not extending DefaultBroadcaster doesn't maintain the memberships.
+        Broadcaster b2 = mock(Broadcaster.class);
+        when(b2.getAtmosphereResources()).thenReturn(Collections.singletonList(r));
+        BroadcasterFactory.getDefault().add(b2, "u2");
+
+        assertEquals(2, framework.getAtmosphereConfig().resourcesFactory().broadcasters(r.uuid()).size());
+        assertEquals(2, framework.getAtmosphereConfig().resourcesFactory().broadcasters(r.uuid().toUpperCase()).size());
+
+        BroadcasterFactory.getDefault().removeAllAtmosphereResource(r);
+        verify(b2).removeAtmosphereResource(r);
+        assertEquals(0, b1.getAtmosphereResources().size());
+    }
 }
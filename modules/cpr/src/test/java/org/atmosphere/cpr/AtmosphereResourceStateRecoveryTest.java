@@ -23,6 +23,9 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import javax.servlet.ServletException;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -33,6 +36,9 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import static org.mockito.Mockito.mock;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 public class AtmosphereResourceStateRecoveryTest {
@@ -147,6 +153,94 @@ public class AtmosphereResourceStateRecoveryTest {
 
     }
 
+    @Test
+    public void expirationTest() throws ServletException, IOException, InterruptedException {
+        AtmosphereResourceStateRecovery recovery = new AtmosphereResourceStateRecovery();
+        recovery.configure(config);
+        recovery.inspect(r);
+        r.suspend();
+        assertEquals(recovery.states().size(), 1);
+
+        recovery.timeout(100);
+        Thread.sleep(500);
+        assertEquals(recovery.states().size(), 0);
+    }
+
+    @Test
+    public void snapshotTest() throws ServletException, IOException {
+        AtmosphereResourceStateRecovery recovery = new AtmosphereResourceStateRecovery();
+        recovery.configure(config);
+        recovery.inspect(r);
+        config.getBroadcasterFactory().lookup("/1", true).addAtmosphereResource(r);
+        r.suspend();
+
+        File f = File.createTempFile("states", ".snapshot");
+        recovery.snapshot(f);
+
+        // Simulate a restart: the Broadcaster and the state are gone.
+        config.getBroadcasterFactory().lookup("/1").destroy();
+        assertNull(config.getBroadcasterFactory().lookup("/1", false));
+
+        AtmosphereResourceStateRecovery restarted = new AtmosphereResourceStateRecovery();
+        restarted.configure(config);
+        restarted.restore(f);
+        assertFalse(f.exists());
+
+        AtmosphereResourceStateRecovery.BroadcasterTracker tracker = restarted.states().get(r.uuid());
+        assertTrue(tracker.ids().contains("/1"));
+
+        // Only existing Broadcasters are associated back with the client.
+        restarted.retrieveCache(r, tracker, true);
+        assertNull(config.getBroadcasterFactory().lookup("/1", false));
+
+        // Unless the application creates them.
+        final AtomicReference<Class<? extends Broadcaster>> restored = new AtomicReference<Class<? extends Broadcaster>>();
+        restarted.restorer(new AtmosphereResourceStateRecovery.BroadcasterRestorer() {
+            @Override
+            public Broadcaster restore(BroadcasterFactory factory, String id, Class<? extends Broadcaster> clazz) {
+                restored.set(clazz);
+                return factory.lookup(clazz, id, true);
+            }
+        });
+        restarted.retrieveCache(r, tracker, true);
+        assertEquals(restored.get(), DefaultBroadcaster.class);
+        assertNotNull(config.getBroadcasterFactory().lookup("/1", false));
+    }
+
+    @Test
+    public void snapshotWithInvalidBroadcasterClassTest() throws ServletException, IOException {
+        File f = File.createTempFile("states", ".snapshot");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeUTF("/2");
+        out.writeUTF(String.class.getName());
+        out.writeInt(1);
+        out.writeUTF(r.uuid());
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(1);
+        out.writeInt(0);
+        out.close();
+
+        final AtomicBoolean asked = new AtomicBoolean();
+        AtmosphereResourceStateRecovery restarted = new AtmosphereResourceStateRecovery();
+        restarted.configure(config);
+        restarted.restorer(new AtmosphereResourceStateRecovery.BroadcasterRestorer() {
+            @Override
+            public Broadcaster restore(BroadcasterFactory factory, String id, Class<? extends Broadcaster> clazz) {
+                asked.set(true);
+                return factory.lookup(id, true);
+            }
+        });
+        restarted.restore(f);
+
+        AtmosphereResourceStateRecovery.BroadcasterTracker tracker = restarted.states().get(r.uuid());
+        assertTrue(tracker.ids().contains("/2"));
+        restarted.retrieveCache(r, tracker, true);
+        assertFalse(asked.get());
+        assertNull(config.getBroadcasterFactory().lookup("/2", false));
+    }
+
     @Test(enabled = false)
     public void longPollingAggregatedTest() throws ServletException, IOException, ExecutionException, InterruptedException {
         final AtomicReference<Object> ref = new AtomicReference<Object>();
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+import org.atmosphere.cache.BroadcastMessage;
+import org.atmosphere.cache.JournalBroadcasterCache;
+import org.atmosphere.cache.UUIDBroadcasterCache;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.atmosphere.cpr.BroadcasterCache.NULL;
+
+/**
+ * Measure the cost of journaling broadcasted messages with the {@link JournalBroadcasterCache}, compared to the in
+ * memory {@link UUIDBroadcasterCache}. Run with:
+ * <blockquote><pre>
+ *     java org.atmosphere.cpr.BroadcastJournalBenchmark [messages] [messageSize] [directory]
+ * </pre></blockquote>
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class BroadcastJournalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.valueOf(args[0]) : 200000;
+        int size = args.length > 1 ? Integer.valueOf(args[1]) : 256;
+        File directory = new File(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"), "journal-benchmark");
+
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            b.append('x');
+        }
+        String message = b.toString();
+
+        run("in memory", new UUIDBroadcasterCache(), messages, message, 0);
+        run("journal, sync every 100ms", new JournalBroadcasterCache().setDirectory(new File(directory, "100")).setSyncInterval(100), messages, message, 100);
+        // Syncing every message is orders of magnitude slower, use fewer messages.
+        run("journal, sync every message", new JournalBroadcasterCache().setDirectory(new File(directory, "0")).setSyncInterval(0), Math.min(messages, 2000), message, 0);
+    }
+
+    private static void run(String name, UUIDBroadcasterCache cache, int messages, String message, long syncInterval) {
+        // Warm up
+        for (int i = 0; i < Math.min(messages, 1000); i++) {
+            cache.addToCache("/benchmark", NULL, new BroadcastMessage(message));
+        }
+
+        long start = System.nanoTime();
+        long lastSync = start;
+        for (int i = 0; i < messages; i++) {
+            cache.addToCache("/benchmark", NULL, new BroadcastMessage(message));
+            // Mimic the periodic sync done by the JournalBroadcasterCache once started.
+            if (syncInterval > 0 && System.nanoTime() - lastSync > TimeUnit.MILLISECONDS.toNanos(syncInterval)) {
+                ((JournalBroadcasterCache) cache).sync();
+                lastSync = System.nanoTime();
+            }
+        }
+        if (cache instanceof JournalBroadcasterCache) {
+            ((JournalBroadcasterCache) cache).sync();
+        }
+        long elapsed = System.nanoTime() - start;
+        cache.cleanup();
+
+        System.out.println(String.format("%-30s %10d messages/s %8d ns/message",
+                name, messages * TimeUnit.SECONDS.toNanos(1) / elapsed, elapsed / messages));
+    }
+}
@@ -19,24 +19,38 @@ import org.atmosphere.cache.AbstractBroadcasterCache;
 import org.atmosphere.cache.BroadcastMessage;
 import org.atmosphere.cache.BroadcasterCacheInspector;
 import org.atmosphere.cache.CacheMessage;
+import org.atmosphere.cache.SessionBroadcasterCache;
 import org.atmosphere.cache.UUIDBroadcasterCache;
 import org.atmosphere.container.BlockingIOCometSupport;
 import org.atmosphere.util.SimpleBroadcaster;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.assertNotNull;
 
 public class BroadcasterCacheTest {
@@ -263,4 +277,125 @@ public class BroadcasterCacheTest {
         // Blocked by the cache because suspend has been called.
         assertEquals(cache.messages().isEmpty(), true);
     }
+
+    private final Map<String, Object> sessionAttributes = new ConcurrentHashMap<String, Object>();
+    private final AtomicInteger sessionWrites = new AtomicInteger();
+    private final AtomicReference<AtmosphereResourceEventListener> cursors = new AtomicReference<AtmosphereResourceEventListener>();
+
+    private AtmosphereResource sessionResource(String uuid) {
+        sessionAttributes.clear();
+        sessionWrites.set(0);
+        cursors.set(null);
+
+        HttpSession session = mock(HttpSession.class);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                sessionWrites.incrementAndGet();
+                sessionAttributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(session).setAttribute(anyString(), any());
+        when(session.getAttribute(anyString())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return sessionAttributes.get(invocation.getArguments()[0]);
+            }
+        });
+
+        AtmosphereResource r = mock(AtmosphereResource.class);
+        when(r.uuid()).thenReturn(uuid);
+        when(r.session()).thenReturn(session);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                cursors.set((AtmosphereResourceEventListener) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(r).addEventListener(any(AtmosphereResourceEventListener.class));
+        AtmosphereResourceFactory.getDefault().registerUuidForFindCandidate(r);
+        return r;
+    }
+
+    private AtmosphereResourceEvent event(AtmosphereResource r) {
+        AtmosphereResourceEvent e = mock(AtmosphereResourceEvent.class);
+        when(e.getResource()).thenReturn(r);
+        return e;
+    }
+
+    @Test
+    public void testSessionCacheThrottledWrite() {
+        SessionBroadcasterCache cache = new SessionBroadcasterCache();
+        AtmosphereResource r = sessionResource("session-1");
+        try {
+            for (int i = 0; i < 10; i++) {
+                cache.addToCache("/b", r.uuid(), new BroadcastMessage("m" + i));
+            }
+            // At most one write per flush interval, one second by default, the first one after a full interval.
+            assertEquals(sessionWrites.get(), 0);
+            assertNotNull(cursors.get());
+
+            // Suspending flushes the latest position: the messages cached since are retrieved from the session.
+            cursors.get().onSuspend(event(r));
+            cache.addToCache("/b", BroadcasterCache.NULL, new BroadcastMessage("after"));
+            cursors.get().onDisconnect(event(r));
+            assertEquals(cache.retrieveFromCache("/b", r.uuid()), Arrays.<Object>asList("after"));
+        } finally {
+            AtmosphereResourceFactory.getDefault().unRegisterUuidForFindCandidate(r);
+        }
+    }
+
+    @Test
+    public void testSessionCacheFlushOnResume() {
+        SessionBroadcasterCache cache = new SessionBroadcasterCache();
+        AtmosphereResource r = sessionResource("session-2");
+        try {
+            cache.addToCache("/b", r.uuid(), new BroadcastMessage("a"));
+            cache.addToCache("/b", r.uuid(), new BroadcastMessage("b"));
+            AtmosphereResourceEventListener l = cursors.get();
+            int writes = sessionWrites.get();
+
+            l.onResume(event(r));
+            assertTrue(sessionWrites.get() > writes);
+            verify(r).removeEventListener(l);
+
+            // Once released, the position is read back from the session.
+            cache.addToCache("/b", BroadcasterCache.NULL, new BroadcastMessage("c"));
+            assertEquals(cache.retrieveFromCache("/b", r.uuid()), Arrays.<Object>asList("c"));
+        } finally {
+            AtmosphereResourceFactory.getDefault().unRegisterUuidForFindCandidate(r);
+        }
+    }
+
+    @Test
+    public void testSessionCacheFlushOnDisconnect() {
+        SessionBroadcasterCache cache = new SessionBroadcasterCache();
+        AtmosphereResource r = sessionResource("session-3");
+        try {
+            cache.addToCache("/b", r.uuid(), new BroadcastMessage("a"));
+            AtmosphereResourceEventListener l = cursors.get();
+            cache.addToCache("/b", r.uuid(), new BroadcastMessage("b"));
+
+            l.onDisconnect(event(r));
+            verify(r).removeEventListener(l);
+            assertTrue(sessionAttributes.get("/b") instanceof Long);
+            assertEquals(cache.retrieveFromCache("/b", r.uuid()), Collections.emptyList());
+        } finally {
+            AtmosphereResourceFactory.getDefault().unRegisterUuidForFindCandidate(r);
+        }
+    }
+
+    @Test
+    public void testSessionCacheLegacyCursor() {
+        SessionBroadcasterCache cache = new SessionBroadcasterCache();
+        AtmosphereResource r = sessionResource("session-4");
+        try {
+            // Previous versions stored the position as a String.
+            sessionAttributes.put("/b", String.valueOf(System.nanoTime()));
+            cache.addToCache("/b", BroadcasterCache.NULL, new BroadcastMessage("a"));
+            assertEquals(cache.retrieveFromCache("/b", r.uuid()), Arrays.<Object>asList("a"));
+        } finally {
+            AtmosphereResourceFactory.getDefault().unRegisterUuidForFindCandidate(r);
+        }
+    }
 }
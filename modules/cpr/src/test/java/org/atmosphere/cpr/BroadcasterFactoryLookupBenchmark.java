@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the throughput of {@link DefaultBroadcasterFactory#lookup(Object)} when many threads look up existing
+ * {@link Broadcaster}s concurrently. Run with:
+ * <blockquote><pre>
+ *     java org.atmosphere.cpr.BroadcasterFactoryLookupBenchmark [threads] [lookups per thread] [broadcasters]
+ * </pre></blockquote>
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class BroadcasterFactoryLookupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.valueOf(args[0]) : 16;
+        final int lookups = args.length > 1 ? Integer.valueOf(args[1]) : 100000;
+        final int broadcasters = args.length > 2 ? Integer.valueOf(args[2]) : 100;
+
+        AtmosphereConfig config = new AtmosphereFramework().getAtmosphereConfig();
+        final DefaultBroadcasterFactory f = new DefaultBroadcasterFactory(DefaultBroadcaster.class, "NEVER", config);
+        for (int i = 0; i < broadcasters; i++) {
+            f.get("b" + i);
+        }
+
+        ExecutorService r = Executors.newFixedThreadPool(threads);
+        try {
+            // Warm up
+            run(r, f, threads, Math.min(lookups, 10000), broadcasters);
+            long elapsed = run(r, f, threads, lookups, broadcasters);
+
+            long total = (long) threads * lookups;
+            System.out.println(String.format("%d lookups with %d threads in %d ms, %d lookups/s",
+                    total, threads, TimeUnit.NANOSECONDS.toMillis(elapsed), total * TimeUnit.SECONDS.toNanos(1) / elapsed));
+        } finally {
+            r.shutdown();
+            f.destroy();
+        }
+    }
+
+    private static long run(ExecutorService r, final DefaultBroadcasterFactory f, int threads, final int lookups, final int broadcasters) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            r.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < lookups; i++) {
+                            f.lookup("b" + ((i + offset) % broadcasters));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        long t1 = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - t1;
+    }
+}
@@ -16,6 +16,10 @@
 package org.atmosphere.cpr;
 
 import org.atmosphere.container.BlockingIOCometSupport;
+import org.atmosphere.handler.AtmosphereHandlerAdapter;
+import org.atmosphere.util.NoOpMetricsRegistry;
+import org.atmosphere.util.SimpleBroadcaster;
+import org.atmosphere.websocket.WebSocket;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -24,14 +28,28 @@ import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.mockito.Mockito.mock;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 public class BroadcasterTest {
@@ -70,6 +88,440 @@ public class BroadcasterTest {
         assertEquals(atmosphereHandler.value.get().toArray()[0], ar);
     }
 
+    @Test
+    public void testMetricsRegistry() throws ExecutionException, InterruptedException {
+        final AtomicInteger published = new AtomicInteger();
+        final AtomicInteger written = new AtomicInteger();
+        AtmosphereConfig config = new AtmosphereFramework().metricsRegistry(new NoOpMetricsRegistry() {
+            @Override
+            public void published(Broadcaster b, int queueDepth) {
+                published.incrementAndGet();
+            }
+
+            @Override
+            public void written(Broadcaster b, AtmosphereResource r, long nanos) {
+                written.incrementAndGet();
+            }
+        }).getAtmosphereConfig();
+        DefaultBroadcasterFactory factory = new DefaultBroadcasterFactory(DefaultBroadcaster.class, "NEVER", config);
+        config.framework().setBroadcasterFactory(factory);
+        Broadcaster b = factory.get(DefaultBroadcaster.class, "metrics");
+        try {
+            b.addAtmosphereResource(new AtmosphereResourceImpl(config,
+                    b,
+                    AtmosphereRequest.newInstance(),
+                    AtmosphereResponse.newInstance(),
+                    mock(BlockingIOCometSupport.class),
+                    atmosphereHandler));
+
+            b.broadcast("foo").get();
+            assertEquals(published.get(), 1);
+            assertEquals(written.get(), 1);
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    @Test
+    public void testBroadcastTrace() throws ExecutionException, InterruptedException {
+        final List<BroadcastTrace> traces = new CopyOnWriteArrayList<BroadcastTrace>();
+        broadcaster.getBroadcasterConfig().getAtmosphereConfig().framework().addBroadcastTraceListener(new BroadcastTraceListener() {
+            @Override
+            public void onTrace(Broadcaster b, AtmosphereResource r, BroadcastTrace trace) {
+                traces.add(trace);
+            }
+        });
+        // Trace one message out of two.
+        DefaultBroadcaster.class.cast(broadcaster).traceSampling = 2;
+
+        for (int i = 0; i < 4; i++) {
+            broadcaster.broadcast("foo").get();
+        }
+
+        assertEquals(traces.size(), 2);
+        for (BroadcastTrace t : traces) {
+            for (BroadcastTrace.STAGE s : BroadcastTrace.STAGE.values()) {
+                assertTrue(t.stampOf(s) != 0, s.name());
+            }
+            assertTrue(t.latency(BroadcastTrace.STAGE.WRITTEN) >= 0);
+            assertTrue(t.total() >= t.latency(BroadcastTrace.STAGE.WRITE_STARTED, BroadcastTrace.STAGE.WRITTEN));
+        }
+    }
+
+    @Test
+    public void testConflation() throws Exception {
+        List<Object> written = new CopyOnWriteArrayList<Object>();
+        broadcaster.removeAtmosphereResource(ar);
+        AtmosphereResource r = collect(DefaultBroadcaster.class.cast(broadcaster), written);
+        DefaultBroadcaster.class.cast(broadcaster).conflation = true;
+
+        Future<Object> f1, f2, f3;
+        // The writing thread can't write until we release the AtmosphereResource.
+        synchronized (r) {
+            f1 = broadcaster.broadcast(new Quote("ACME", 1));
+            awaitWriting(DefaultBroadcaster.class.cast(broadcaster), r);
+            f2 = broadcaster.broadcast(new Quote("ACME", 2));
+            f3 = broadcaster.broadcast(new Quote("ACME", 3));
+            // The second quote gets replaced by the third one, hence is done before being written.
+            f2.get(10, TimeUnit.SECONDS);
+            assertFalse(f3.isDone());
+        }
+        f1.get(10, TimeUnit.SECONDS);
+        f3.get(10, TimeUnit.SECONDS);
+
+        assertEquals(written.size(), 2);
+        assertEquals(Quote.class.cast(written.get(0)).price, 1);
+        assertEquals(Quote.class.cast(written.get(1)).price, 3);
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        // Priorities are disabled by default.
+        assertTrue(DefaultBroadcaster.class.cast(broadcaster).messages instanceof LinkedBlockingQueue);
+
+        AtmosphereConfig config = config(ApplicationConfig.BROADCASTER_PRIORITIES, "true");
+        DefaultBroadcasterFactory factory = new DefaultBroadcasterFactory(DefaultBroadcaster.class, "NEVER", config);
+        config.framework().setBroadcasterFactory(factory);
+        DefaultBroadcaster b = factory.get(DefaultBroadcaster.class, "priority");
+        List<Object> written = new CopyOnWriteArrayList<Object>();
+        AtmosphereResource r = collect(b, written);
+
+        Future<Object> f;
+        // The writing thread can't write until we release the AtmosphereResource.
+        synchronized (r) {
+            b.broadcast("a", Broadcaster.PRIORITY.LOW);
+            DefaultBroadcaster.WriteQueue queue = awaitWriting(b, r);
+            b.broadcast("b", Broadcaster.PRIORITY.LOW);
+            b.broadcast("c", Broadcaster.PRIORITY.LOW);
+            f = b.broadcast("kick", r, Broadcaster.PRIORITY.HIGH);
+            while (queue.queue.size() != 3) {
+                Thread.sleep(10);
+            }
+        }
+        f.get(10, TimeUnit.SECONDS);
+        b.broadcast("d").get(10, TimeUnit.SECONDS);
+
+        assertEquals(written, Arrays.asList("a", "kick", "b", "c", "d"));
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+        List<Object> written = new CopyOnWriteArrayList<Object>();
+        List<String> ids = new CopyOnWriteArrayList<String>();
+        broadcaster.removeAtmosphereResource(ar);
+        collect(DefaultBroadcaster.class.cast(broadcaster), written, ids);
+        final List<Object> notified = new CopyOnWriteArrayList<Object>();
+        broadcaster.addBroadcasterListener(new BroadcasterListenerAdapter() {
+            @Override
+            public void onMessage(Broadcaster b, Deliver deliver) {
+                notified.add(deliver.getMessage());
+            }
+        });
+        // The batch is closed by its size long before the window expires.
+        DefaultBroadcaster.class.cast(broadcaster).batchWindow = 10000;
+        DefaultBroadcaster.class.cast(broadcaster).batchSize = 3;
+
+        Future<Object> f1 = broadcaster.broadcast("a");
+        Future<Object> f2 = broadcaster.broadcast("b");
+        Future<Object> f3 = broadcaster.broadcast("c");
+        assertEquals(f1.get(10, TimeUnit.SECONDS), "a");
+        assertEquals(f2.get(10, TimeUnit.SECONDS), "b");
+        assertEquals(f3.get(10, TimeUnit.SECONDS), "c");
+
+        // The batch is never exposed to handlers and listeners.
+        assertEquals(written, Arrays.asList("a", "b", "c"));
+        assertEquals(notified, Arrays.asList("a", "b", "c"));
+        // Every message keeps its own id.
+        assertEquals(new HashSet<String>(ids).size(), 3);
+    }
+
+    @Test
+    public void testNoBatchingOnSharedDispatcher() throws Exception {
+        DefaultBroadcaster b = DefaultBroadcaster.class.cast(broadcaster);
+        b.batchWindow = 10000;
+        assertTrue(b.batchable(new Deliver("a", null, "a")));
+        b.sharedDispatcher = true;
+        assertFalse(b.batchable(new Deliver("a", null, "a")));
+    }
+
+    @Test
+    public void testNotWritableWebSocket() throws Exception {
+        final AtomicBoolean writable = new AtomicBoolean();
+        AtmosphereResourceImpl.class.cast(ar).webSocket(new WebSocket(broadcaster.getBroadcasterConfig().getAtmosphereConfig()) {
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public boolean isWritable() {
+                return writable.get();
+            }
+
+            @Override
+            public WebSocket write(String s) throws IOException {
+                return this;
+            }
+
+            @Override
+            public WebSocket write(byte[] b, int offset, int length) throws IOException {
+                return this;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        broadcaster.broadcast("foo").get(10, TimeUnit.SECONDS);
+        assertTrue(atmosphereHandler.value.get().isEmpty());
+
+        writable.set(true);
+        broadcaster.broadcast("foo").get(10, TimeUnit.SECONDS);
+        assertEquals(atmosphereHandler.value.get().toArray()[0], ar);
+    }
+
+    /**
+     * Add an {@link AtmosphereResource} to a {@link DefaultBroadcaster}, collecting the messages written to it. Holding
+     * the AtmosphereResource's lock prevents the writing thread from writing.
+     */
+    private static AtmosphereResource collect(DefaultBroadcaster b, final List<Object> written) {
+        return collect(b, written, new ArrayList<String>());
+    }
+
+    private static AtmosphereResource collect(DefaultBroadcaster b, final List<Object> written, final List<String> ids) {
+        AtmosphereResource r = new AtmosphereResourceImpl(b.getBroadcasterConfig().getAtmosphereConfig(),
+                b,
+                AtmosphereRequest.newInstance(),
+                AtmosphereResponse.newInstance(),
+                mock(BlockingIOCometSupport.class),
+                new AtmosphereHandlerAdapter() {
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent e) throws IOException {
+                        written.add(e.getMessage());
+                        ids.add(e.getResource().getRequest().messageId());
+                    }
+                });
+        b.addAtmosphereResource(r);
+        return r;
+    }
+
+    /**
+     * Wait for the writing thread to take the queued writes of an {@link AtmosphereResource}.
+     */
+    private static DefaultBroadcaster.WriteQueue awaitWriting(DefaultBroadcaster b, AtmosphereResource r) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        DefaultBroadcaster.WriteQueue queue;
+        while ((queue = b.writeQueues.get(r.uuid())) == null || !queue.queue.isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        return queue;
+    }
+
+    private static AtmosphereConfig config(String... params) throws ServletException {
+        AtmosphereFramework framework = new AtmosphereFramework();
+        for (int i = 0; i < params.length; i += 2) {
+            framework.addInitParameter(params[i], params[i + 1]);
+        }
+        return framework
+                .setAsyncSupport(mock(BlockingIOCometSupport.class))
+                .init(new ServletConfig() {
+                    @Override
+                    public String getServletName() {
+                        return "void";
+                    }
+
+                    @Override
+                    public ServletContext getServletContext() {
+                        return mock(ServletContext.class);
+                    }
+
+                    @Override
+                    public String getInitParameter(String name) {
+                        return null;
+                    }
+
+                    @Override
+                    public Enumeration<String> getInitParameterNames() {
+                        return null;
+                    }
+                })
+                .getAtmosphereConfig();
+    }
+
+    private List<Object> sharedDispatcher(DefaultBroadcaster b) throws Exception {
+        List<Object> written = new CopyOnWriteArrayList<Object>();
+        collect(b, written);
+        assertEquals(b.dispatchThread.get(), 0);
+
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(b.broadcast("foo" + i));
+        }
+        for (Future<Object> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+
+        // No thread waits for messages once they have all been delivered.
+        long deadline = System.currentTimeMillis() + 10000;
+        while (b.dispatchThread.get() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(b.dispatchThread.get(), 0);
+        return written;
+    }
+
+    private static List<Object> foos(int count) {
+        List<Object> l = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            l.add("foo" + i);
+        }
+        return l;
+    }
+
+    @Test
+    public void testSharedDispatcher() throws Exception {
+        AtmosphereConfig config = config(ApplicationConfig.BROADCASTER_SHARED_DISPATCHER, "true", ApplicationConfig.OUT_OF_ORDER_BROADCAST, "true");
+        DefaultBroadcasterFactory factory = new DefaultBroadcasterFactory(DefaultBroadcaster.class, "NEVER", config);
+        config.framework().setBroadcasterFactory(factory);
+        DefaultBroadcaster b = factory.get(DefaultBroadcaster.class, "mailbox");
+        assertTrue(b.sharedDispatcher);
+        b.mailboxThroughput = 2;
+
+        // Out of order broadcasts are downgraded, hence the messages are written in order.
+        assertEquals(sharedDispatcher(b), foos(10));
+    }
+
+    @Test
+    public void testSharedDispatcherRejectedYield() throws Exception {
+        AtmosphereConfig config = config(ApplicationConfig.BROADCASTER_SHARED_DISPATCHER, "true", ApplicationConfig.OUT_OF_ORDER_BROADCAST, "true");
+        DefaultBroadcasterFactory factory = new DefaultBroadcasterFactory(DefaultBroadcaster.class, "NEVER", config);
+        config.framework().setBroadcasterFactory(factory);
+        DefaultBroadcaster b = factory.get(DefaultBroadcaster.class, "rejecting");
+        b.mailboxThroughput = 2;
+
+        // This executor rejects a task which resubmits itself to yield.
+        final ThreadLocal<Runnable> running = new ThreadLocal<Runnable>();
+        ExecutorService executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            public Future<?> submit(final Runnable task) {
+                if (running.get() == task) {
+                    throw new RejectedExecutionException();
+                }
+                return super.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        running.set(task);
+                        try {
+                            task.run();
+                        } finally {
+                            running.remove();
+                        }
+                    }
+                });
+            }
+        };
+        b.getBroadcasterConfig().setExecutorService(executor).setAsyncWriteService(executor);
+
+        try {
+            assertEquals(sharedDispatcher(b), foos(10));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLifeCycleSweeper() throws Exception {
+        AtmosphereConfig config = broadcaster.getBroadcasterConfig().getAtmosphereConfig();
+        DefaultBroadcaster idle = config.getBroadcasterFactory().get(DefaultBroadcaster.class, "idle");
+        DefaultBroadcaster active = config.getBroadcasterFactory().get(DefaultBroadcaster.class, "active");
+        BroadcasterLifeCyclePolicy policy = new BroadcasterLifeCyclePolicy.Builder()
+                .policy(BroadcasterLifeCyclePolicy.ATMOSPHERE_RESOURCE_POLICY.IDLE_DESTROY)
+                .idleTimeInMS(200)
+                .build();
+        idle.setBroadcasterLifeCyclePolicy(policy);
+        active.setBroadcasterLifeCyclePolicy(policy);
+        assertTrue(idle.lifeCycleEntry != null);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!idle.isDestroyed() && System.currentTimeMillis() < deadline) {
+            active.broadcast("foo").get();
+            Thread.sleep(50);
+        }
+        assertTrue(idle.isDestroyed());
+        assertFalse(active.isDestroyed());
+
+        active.destroy();
+    }
+
+    private final static class Quote implements Conflatable {
+        private final String symbol;
+        private final int price;
+
+        private Quote(String symbol, int price) {
+            this.symbol = symbol;
+            this.price = price;
+        }
+
+        @Override
+        public Object conflationKey() {
+            return symbol;
+        }
+    }
+
+    @Test
+    public void testBroadcastAndForget() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        broadcaster.addBroadcasterListener(new BroadcasterListenerAdapter() {
+            @Override
+            public void onComplete(Broadcaster b) {
+                latch.countDown();
+            }
+        });
+
+        DefaultBroadcaster.class.cast(broadcaster).broadcastAndForget("foo");
+        latch.await(10, TimeUnit.SECONDS);
+        assertEquals(atmosphereHandler.value.get().toArray()[0], ar);
+    }
+
+    @Test
+    public void testSimpleBroadcasterForgetAborted() throws InterruptedException {
+        AtmosphereConfig config = broadcaster.getBroadcasterConfig().getAtmosphereConfig();
+        SimpleBroadcaster b = config.getBroadcasterFactory().get(SimpleBroadcaster.class, "simple");
+        final CountDownLatch latch = new CountDownLatch(1);
+        b.addBroadcasterListener(new BroadcasterListenerAdapter() {
+            @Override
+            public void onComplete(Broadcaster b) {
+                latch.countDown();
+            }
+        });
+        b.getBroadcasterConfig().addFilter(new BroadcastFilter() {
+            @Override
+            public BroadcastAction filter(String broadcasterId, Object originalMessage, Object message) {
+                return new BroadcastAction(BroadcastAction.ACTION.ABORT, message);
+            }
+        });
+
+        // Listeners are told the message won't be delivered, as with a DefaultBroadcaster.
+        b.broadcastAndForget("foo");
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBroadcasterFutureCompletion() throws Exception {
+        final BroadcasterFuture<String> f = new BroadcasterFuture<String>("foo", 2);
+        f.done();
+        new Thread() {
+            public void run() {
+                f.done();
+            }
+        }.start();
+
+        assertEquals(f.get(10, TimeUnit.SECONDS), "foo");
+        assertEquals(f.get(), "foo");
+    }
+
     @Test
     public void testEmptyBroadcastMethod() throws ExecutionException, InterruptedException, ServletException {
         broadcaster.resumeAll();
@@ -19,7 +19,10 @@ import org.atmosphere.util.SimpleBroadcaster;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -27,6 +30,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 
 /**
  * Unit tests for the {@link org.atmosphere.cpr.DefaultBroadcasterFactory}.
@@ -261,6 +267,94 @@ public class DefaultBroadcasterFactoryTest {
 
     }
 
+    @Test
+    public void concurrentDestroyedLookupTest() throws InterruptedException {
+        final DefaultBroadcasterFactory f = new DefaultBroadcasterFactory(DefaultBroadcaster.class, "NEVER", config);
+        final Broadcaster destroyed = f.get("destroyed");
+        destroyed.destroy();
+        // destroy() removes the Broadcaster from the factory, put it back to simulate a stale entry.
+        f.add(destroyed, "destroyed");
+
+        final CountDownLatch latch = new CountDownLatch(100);
+        final Set<Broadcaster> found = Collections.newSetFromMap(new ConcurrentHashMap<Broadcaster, Boolean>());
+        ExecutorService r = Executors.newFixedThreadPool(16);
+        try {
+            for (int i = 0; i < 100; i++) {
+                r.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            found.add(f.lookup("destroyed", false));
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+        } finally {
+            r.shutdown();
+        }
+        latch.await(10, TimeUnit.SECONDS);
+
+        try {
+            assertEquals(found.size(), 1);
+            Broadcaster b = found.iterator().next();
+            assertNotSame(b, destroyed);
+            assertFalse(b.isDestroyed());
+            assertSame(f.lookup("destroyed"), b);
+        } finally {
+            f.destroy();
+        }
+    }
+
+    @Test
+    public void testConcurrentLookup() throws InterruptedException {
+        final DefaultBroadcasterFactory f = new DefaultBroadcasterFactory(DefaultBroadcaster.class, "NEVER", config);
+        final int broadcasters = 100;
+        final int threads = 8;
+        final int lookups = 1000;
+        for (int i = 0; i < broadcasters; i++) {
+            f.get("b" + i);
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger missed = new AtomicInteger();
+        ExecutorService r = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                r.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < lookups; i++) {
+                                if (f.lookup("b" + ((i + offset) % broadcasters)) == null) {
+                                    missed.incrementAndGet();
+                                }
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+
+            start.countDown();
+            done.await(60, TimeUnit.SECONDS);
+
+            assertEquals(done.getCount(), 0);
+            assertEquals(missed.get(), 0);
+            assertEquals(f.lookupAll().size(), broadcasters);
+        } finally {
+            r.shutdown();
+            f.destroy();
+        }
+    }
+
     public final static class TestBroadcaster extends DefaultBroadcaster {
 
         public static AtomicInteger instance = new AtomicInteger();
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+import org.atmosphere.cache.BroadcastJournal;
+import org.atmosphere.cache.BroadcastMessage;
+import org.atmosphere.cache.CacheMessage;
+import org.atmosphere.cache.JournalBroadcasterCache;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.atmosphere.cpr.BroadcasterCache.NULL;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class JournalBroadcasterCacheTest {
+
+    private File directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        delete(directory);
+    }
+
+    private static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) {
+            for (File c : files) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    @Test
+    public void testReplayAfterRestart() {
+        JournalBroadcasterCache cache = new JournalBroadcasterCache().setDirectory(directory).setSyncInterval(0);
+        CacheMessage first = cache.addToCache("/a", NULL, new BroadcastMessage("one"));
+        cache.addToCache("/a", NULL, new BroadcastMessage("two"));
+        CacheMessage last = cache.addToCache("/a", NULL, new BroadcastMessage("three"));
+        cache.cleanup();
+
+        JournalBroadcasterCache restarted = new JournalBroadcasterCache().setDirectory(directory);
+        List<Object> missed = restarted.retrieveFromCache("/a", "uuid", first.getId());
+        assertEquals(missed, Arrays.<Object>asList("two", "three"));
+
+        // Ids keep increasing across restarts.
+        CacheMessage next = restarted.addToCache("/a", NULL, new BroadcastMessage("four"));
+        assertTrue(BroadcastMessage.sequenceOf(next.getId()) > BroadcastMessage.sequenceOf(last.getId()));
+        restarted.cleanup();
+    }
+
+    @Test
+    public void testSegmentsAndTornRecord() throws IOException {
+        BroadcastJournal journal = new BroadcastJournal(directory, 256, 2);
+        for (int i = 1; i <= 50; i++) {
+            journal.append("message-" + i);
+        }
+        journal.close();
+
+        File[] segments = directory.listFiles();
+        assertEquals(segments.length, 2);
+
+        // Simulate a crash in the middle of a write.
+        Arrays.sort(segments);
+        RandomAccessFile f = new RandomAccessFile(segments[1], "rw");
+        f.seek(f.length());
+        f.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+        f.close();
+
+        journal = new BroadcastJournal(directory, 256, 2);
+        assertEquals(journal.lastSequence(), 50);
+        assertEquals(journal.append("message-51"), 51);
+        List<Object> l = journal.read(48, 100);
+        assertEquals(l, Arrays.<Object>asList("message-49", "message-50", "message-51"));
+        journal.close();
+    }
+
+    @Test
+    public void testOnlyStringsAndBytesAreJournaled() {
+        JournalBroadcasterCache cache = new JournalBroadcasterCache().setDirectory(directory).setSyncInterval(0);
+        CacheMessage first = cache.addToCache("/a", NULL, new BroadcastMessage("one"));
+        cache.addToCache("/a", NULL, new BroadcastMessage(Arrays.asList("two")));
+        cache.cleanup();
+
+        // Replayed as its toString value, never deserialized.
+        JournalBroadcasterCache restarted = new JournalBroadcasterCache().setDirectory(directory);
+        assertEquals(restarted.retrieveFromCache("/a", "uuid", first.getId()), Arrays.<Object>asList("[two]"));
+        restarted.cleanup();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testDirectoryRequired() throws IOException {
+        new JournalBroadcasterCache().journal("/a");
+    }
+
+    @Test
+    public void testJournalClosedOnDestroy() throws IOException {
+        AtmosphereConfig config = new AtmosphereFramework().getAtmosphereConfig();
+        DefaultBroadcasterFactory factory = new DefaultBroadcasterFactory(DefaultBroadcaster.class, "NEVER", config);
+        config.framework().setBroadcasterFactory(factory);
+        BroadcasterConfig bc = mock(BroadcasterConfig.class);
+        when(bc.getAtmosphereConfig()).thenReturn(config);
+
+        JournalBroadcasterCache cache = new JournalBroadcasterCache().setDirectory(directory).setSyncInterval(0);
+        cache.configure(bc);
+        Broadcaster b = factory.get(DefaultBroadcaster.class, "/a");
+        cache.addToCache("/a", NULL, new BroadcastMessage("one"));
+        BroadcastJournal journal = cache.journal("/a");
+        assertSame(cache.journal("/a"), journal);
+
+        b.destroy();
+        BroadcastJournal reopened = cache.journal("/a");
+        assertNotSame(reopened, journal);
+        assertEquals(reopened.read(0, 100), Arrays.<Object>asList("one"));
+        cache.cleanup();
+        factory.destroy();
+    }
+
+    @Test
+    public void testReplayIsCapped() {
+        JournalBroadcasterCache cache = new JournalBroadcasterCache().setDirectory(directory).setSyncInterval(0).setMaxReplay(2);
+        CacheMessage first = cache.addToCache("/a", NULL, new BroadcastMessage("one"));
+        cache.addToCache("/a", NULL, new BroadcastMessage("two"));
+        cache.addToCache("/a", NULL, new BroadcastMessage("three"));
+        cache.addToCache("/a", NULL, new BroadcastMessage("four"));
+        cache.cleanup();
+
+        JournalBroadcasterCache restarted = new JournalBroadcasterCache().setDirectory(directory).setMaxReplay(2);
+        assertEquals(restarted.retrieveFromCache("/a", "uuid", first.getId()), Arrays.<Object>asList("three", "four"));
+        // An id older than any message, or ahead of the journal, doesn't give access to the whole history.
+        String epoch = BroadcastMessage.epochOf(first.getId());
+        assertEquals(restarted.retrieveFromCache("/a", "uuid2", BroadcastMessage.idOf(epoch, 0)), Arrays.<Object>asList("three", "four"));
+        assertEquals(restarted.retrieveFromCache("/a", "uuid3", BroadcastMessage.idOf(epoch, 100)), Arrays.<Object>asList());
+        // An id of another journal can't be compared with this one's.
+        assertEquals(restarted.retrieveFromCache("/a", "uuid4", BroadcastMessage.idOf("0", 100)), Arrays.<Object>asList("three", "four"));
+        restarted.cleanup();
+    }
+
+    @Test
+    public void testReservedIdsSurviveRestart() {
+        JournalBroadcasterCache cache = new JournalBroadcasterCache().setDirectory(directory).setSyncInterval(0);
+        cache.addToCache("/a", NULL, new BroadcastMessage("one"));
+        // A message cached for a single AtmosphereResource reserves an id the client may send back.
+        CacheMessage reserved = cache.addToCache("/a", "uuid", new BroadcastMessage("private"));
+        cache.cleanup();
+
+        JournalBroadcasterCache restarted = new JournalBroadcasterCache().setDirectory(directory).setSyncInterval(0);
+        CacheMessage next = restarted.addToCache("/a", NULL, new BroadcastMessage("two"));
+        assertTrue(BroadcastMessage.sequenceOf(next.getId()) > BroadcastMessage.sequenceOf(reserved.getId()));
+        assertEquals(restarted.retrieveFromCache("/a", "uuid2", reserved.getId()), Arrays.<Object>asList("two"));
+        restarted.cleanup();
+    }
+}
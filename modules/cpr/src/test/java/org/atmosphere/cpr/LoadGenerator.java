@@ -0,0 +1,434 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+import org.atmosphere.handler.AbstractReflectorAtmosphereHandler;
+import org.atmosphere.websocket.WebSocket;
+import org.atmosphere.websocket.WebSocketProcessor;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.atmosphere.cpr.ApplicationConfig.RECYCLE_ATMOSPHERE_REQUEST_RESPONSE;
+import static org.atmosphere.cpr.HeaderConfig.LONG_POLLING_TRANSPORT;
+import static org.atmosphere.cpr.HeaderConfig.WEBSOCKET_TRANSPORT;
+import static org.atmosphere.cpr.HeaderConfig.X_ATMOSPHERE_TRANSPORT;
+import static org.mockito.Mockito.mock;
+
+/**
+ * An in-JVM load generator simulating a large number of long-polling, streaming, SSE and WebSocket clients against a
+ * real {@link AtmosphereFramework}, without any network stack. Http clients are driven through
+ * {@link AtmosphereFramework#doCometSupport} using a non blocking {@link AsynchronousProcessor}, WebSocket clients
+ * through the {@link WebSocketProcessor} using an in memory {@link WebSocket}.
+ * <p/>
+ * The generator connects {@link #clients(int)} clients, broadcasts {@link #messages(int)} time stamped messages and
+ * returns a {@link Report} containing the connections per second, the broadcast fan-out latency percentiles, the heap
+ * used per connection and the garbage collections that happened during the run. Init parameters can be passed using
+ * {@link #initParameter(String, String)} to compare configurations:
+ * <blockquote><pre>
+ *     LoadGenerator.Report report = new LoadGenerator()
+ *          .clients(100000)
+ *          .transports("long-polling", "websocket")
+ *          .initParameter(ApplicationConfig.BROADCASTER_SHARED_DISPATCHER, "true")
+ *          .run();
+ * </pre></blockquote>
+ *
+ * @author Jeanfrancois Arcand
+ */
+public class LoadGenerator {
+
+    private static final String PATH = "/load";
+    private static final String CLIENT = LoadGenerator.class.getName() + ".client";
+
+    private final Map<String, String> initParams = new HashMap<String, String>();
+    private int clients = 1000;
+    private int messages = 10;
+    private int concurrency = Runtime.getRuntime().availableProcessors() * 2;
+    private String[] transports = {LONG_POLLING_TRANSPORT};
+    private long timeout = TimeUnit.SECONDS.toMillis(60);
+    private int maxSamples = 1000000;
+
+    private AtmosphereFramework framework;
+    private WebSocketProcessor webSocketProcessor;
+    private ExecutorService executor;
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicInteger sampled = new AtomicInteger();
+    private long[] samples;
+
+    public LoadGenerator() {
+    }
+
+    /**
+     * The number of simulated clients.
+     */
+    public LoadGenerator clients(int clients) {
+        this.clients = clients;
+        return this;
+    }
+
+    /**
+     * The number of broadcast messages.
+     */
+    public LoadGenerator messages(int messages) {
+        this.messages = messages;
+        return this;
+    }
+
+    /**
+     * The number of threads used to connect and reconnect the clients.
+     */
+    public LoadGenerator concurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * The transports used by the clients, assigned in a round robin way. Supported values are the ones defined by
+     * {@link HeaderConfig}: long-polling, streaming, sse and websocket.
+     */
+    public LoadGenerator transports(String... transports) {
+        this.transports = transports;
+        return this;
+    }
+
+    /**
+     * The maximum time, in milliseconds, to wait for the clients to connect or for a message to be delivered.
+     */
+    public LoadGenerator timeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * The maximum number of latencies recorded to compute the percentiles.
+     */
+    public LoadGenerator maxSamples(int maxSamples) {
+        this.maxSamples = maxSamples;
+        return this;
+    }
+
+    /**
+     * Add an init parameter to the {@link AtmosphereFramework} under test.
+     */
+    public LoadGenerator initParameter(String name, String value) {
+        initParams.put(name, value);
+        return this;
+    }
+
+    /**
+     * Connect the clients, broadcast the messages and report.
+     *
+     * @return the {@link Report}
+     */
+    public Report run() throws Exception {
+        start();
+        try {
+            Report report = new Report();
+            samples = new long[(int) Math.min((long) clients * messages, maxSamples)];
+
+            long heap = usedHeap();
+            long start = System.nanoTime();
+            final CountDownLatch latch = new CountDownLatch(clients);
+            for (int i = 0; i < clients; i++) {
+                final Client c = new Client(transports[i % transports.length]);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        c.connect();
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await(timeout, TimeUnit.MILLISECONDS);
+            awaitConnected();
+            long elapsed = System.nanoTime() - start;
+
+            report.clients = connected.get();
+            report.connectionsPerSecond = report.clients * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            report.heapPerConnection = (usedHeap() - heap) / Math.max(1, report.clients);
+
+            long[] gc = gc();
+            Broadcaster b = framework.getBroadcasterFactory().lookup(PATH);
+            start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                b.broadcast(String.valueOf(System.nanoTime())).get(timeout, TimeUnit.MILLISECONDS);
+                awaitConnected();
+            }
+            elapsed = System.nanoTime() - start;
+            long[] gcAfter = gc();
+
+            report.messages = messages;
+            report.delivered = delivered.get();
+            report.deliveredPerSecond = report.delivered * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            report.gcCount = gcAfter[0] - gc[0];
+            report.gcTime = gcAfter[1] - gc[1];
+
+            int n = Math.min(sampled.get(), samples.length);
+            long[] sorted = Arrays.copyOf(samples, n);
+            Arrays.sort(sorted);
+            report.p50 = percentile(sorted, 0.50);
+            report.p90 = percentile(sorted, 0.90);
+            report.p99 = percentile(sorted, 0.99);
+            report.max = n == 0 ? 0 : sorted[n - 1];
+            return report;
+        } finally {
+            stop();
+        }
+    }
+
+    private void start() throws ServletException {
+        connected.set(0);
+        delivered.set(0);
+        sampled.set(0);
+
+        framework = new AtmosphereFramework();
+        framework.setAsyncSupport(new AsynchronousProcessor(framework.getAtmosphereConfig()) {
+            @Override
+            public Action service(AtmosphereRequest req, AtmosphereResponse res) throws IOException, ServletException {
+                return action(req, res);
+            }
+        });
+        framework.addInitParameter(RECYCLE_ATMOSPHERE_REQUEST_RESPONSE, "false");
+        for (Map.Entry<String, String> e : initParams.entrySet()) {
+            framework.addInitParameter(e.getKey(), e.getValue());
+        }
+        framework.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "load";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return mock(ServletContext.class);
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return null;
+            }
+        });
+        framework.addAtmosphereHandler(PATH, new Handler());
+        webSocketProcessor = WebSocketProcessorFactory.getDefault().getWebSocketProcessor(framework);
+        executor = Executors.newFixedThreadPool(concurrency);
+    }
+
+    private void stop() {
+        executor.shutdownNow();
+        framework.destroy();
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (connected.get() < clients && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void sample(long latency) {
+        delivered.incrementAndGet();
+        int i = sampled.getAndIncrement();
+        if (i < samples.length) {
+            samples[i] = latency;
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * sorted.length))];
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime r = Runtime.getRuntime();
+        return r.totalMemory() - r.freeMemory();
+    }
+
+    private static long[] gc() {
+        long count = 0;
+        long time = 0;
+        List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean b : beans) {
+            count += Math.max(0, b.getCollectionCount());
+            time += Math.max(0, b.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+
+    /**
+     * A simulated client. Long-polling clients reconnect every time a message is delivered.
+     */
+    private final class Client {
+
+        private final String transport;
+        private final AsyncIOWriter sink = new AsyncIOWriterAdapter();
+
+        Client(String transport) {
+            this.transport = transport;
+        }
+
+        void connect() {
+            AtmosphereRequest request = new AtmosphereRequest.Builder()
+                    .destroyable(false)
+                    .pathInfo(PATH)
+                    .build();
+            request.setAttribute(CLIENT, this);
+            try {
+                if (transport.equals(WEBSOCKET_TRANSPORT)) {
+                    WebSocket w = new NullWebSocket();
+                    webSocketProcessor.open(w, request, AtmosphereResponse.newInstance(framework.getAtmosphereConfig(), request, w));
+                } else {
+                    request.header(X_ATMOSPHERE_TRANSPORT, transport);
+                    AtmosphereResponse response = new AtmosphereResponse.Builder()
+                            .asyncIOWriter(sink)
+                            .request(request)
+                            .build();
+                    framework.doCometSupport(request, response);
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void reconnect() {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    connect();
+                }
+            });
+        }
+    }
+
+    private final class Handler extends AbstractReflectorAtmosphereHandler {
+
+        @Override
+        public void onRequest(AtmosphereResource resource) throws IOException {
+            resource.suspend();
+            connected.incrementAndGet();
+        }
+
+        @Override
+        public void onStateChange(AtmosphereResourceEvent event) throws IOException {
+            if (event.isCancelled() || event.isClosedByClient() || event.isResumedOnTimeout()) {
+                connected.decrementAndGet();
+                return;
+            }
+
+            Object message = event.getMessage();
+            Client c = (Client) event.getResource().getRequest().getAttribute(CLIENT);
+            boolean longPolling = c != null && c.transport.equals(LONG_POLLING_TRANSPORT);
+            if (longPolling) {
+                connected.decrementAndGet();
+            }
+
+            super.onStateChange(event);
+            if (message != null) {
+                sample(System.nanoTime() - Long.valueOf(message.toString()));
+            }
+
+            if (longPolling) {
+                c.reconnect();
+            }
+        }
+    }
+
+    private final class NullWebSocket extends WebSocket {
+
+        NullWebSocket() {
+            super(framework.getAtmosphereConfig());
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public WebSocket write(String s) throws IOException {
+            return this;
+        }
+
+        @Override
+        public WebSocket write(byte[] b, int offset, int length) throws IOException {
+            return this;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * The result of a {@link LoadGenerator#run()}. Latencies are in nanoseconds, GC time in milliseconds and heap in
+     * bytes.
+     */
+    public static final class Report {
+        public int clients;
+        public double connectionsPerSecond;
+        public long heapPerConnection;
+        public int messages;
+        public long delivered;
+        public double deliveredPerSecond;
+        public long p50;
+        public long p90;
+        public long p99;
+        public long max;
+        public long gcCount;
+        public long gcTime;
+
+        @Override
+        public String toString() {
+            return "Report{" +
+                    "clients=" + clients +
+                    ", connectionsPerSecond=" + Math.round(connectionsPerSecond) +
+                    ", heapPerConnection=" + heapPerConnection +
+                    ", messages=" + messages +
+                    ", delivered=" + delivered +
+                    ", deliveredPerSecond=" + Math.round(deliveredPerSecond) +
+                    ", p50=" + TimeUnit.NANOSECONDS.toMicros(p50) + "us" +
+                    ", p90=" + TimeUnit.NANOSECONDS.toMicros(p90) + "us" +
+                    ", p99=" + TimeUnit.NANOSECONDS.toMicros(p99) + "us" +
+                    ", max=" + TimeUnit.NANOSECONDS.toMicros(max) + "us" +
+                    ", gcCount=" + gcCount +
+                    ", gcTime=" + gcTime + "ms" +
+                    '}';
+        }
+    }
+}
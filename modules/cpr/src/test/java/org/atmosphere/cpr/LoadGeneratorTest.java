@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+import org.testng.annotations.Test;
+
+import static org.atmosphere.cpr.HeaderConfig.LONG_POLLING_TRANSPORT;
+import static org.atmosphere.cpr.HeaderConfig.SSE_TRANSPORT;
+import static org.atmosphere.cpr.HeaderConfig.STREAMING_TRANSPORT;
+import static org.atmosphere.cpr.HeaderConfig.WEBSOCKET_TRANSPORT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void testAllTransports() throws Exception {
+        LoadGenerator.Report report = new LoadGenerator()
+                .clients(200)
+                .messages(5)
+                .concurrency(4)
+                .timeout(10000)
+                .transports(LONG_POLLING_TRANSPORT, STREAMING_TRANSPORT, SSE_TRANSPORT, WEBSOCKET_TRANSPORT)
+                .run();
+
+        assertEquals(report.clients, 200);
+        assertEquals(report.delivered, 200 * 5);
+        assertTrue(report.connectionsPerSecond > 0);
+        assertTrue(report.p50 <= report.p99);
+        assertTrue(report.p99 <= report.max);
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.atmosphere.cpr;
 
+import org.atmosphere.cache.BroadcastMessage;
+import org.atmosphere.cache.CacheMessage;
 import org.atmosphere.cache.UUIDBroadcasterCache;
 import org.atmosphere.container.BlockingIOCometSupport;
 import org.testng.annotations.AfterMethod;
@@ -23,6 +25,8 @@ import org.testng.annotations.Test;
 
 import javax.servlet.ServletException;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -99,6 +103,36 @@ public class UUIDBroadcasterCacheTest {
         assertEquals(1, broadcasterCache.messages().size());
     }
 
+    @Test
+    public void lastMessageIdTest() throws ExecutionException, InterruptedException, ServletException {
+        broadcaster.removeAtmosphereResource(ar);
+
+        broadcaster.broadcast("e1").get();
+        broadcaster.broadcast("e2").get();
+        broadcaster.broadcast("e3").get();
+
+        Iterator<CacheMessage> i = broadcasterCache.messages().get(ar.uuid()).getQueue().iterator();
+        i.next();
+        String id = i.next().getId();
+
+        List<Object> missed = broadcasterCache.retrieveFromCache(broadcaster.getID(), ar.uuid(), id);
+        assertEquals(missed.size(), 1);
+        assertEquals(missed.get(0), "e3");
+    }
+
+    @Test
+    public void lastMessageIdBeforeRestartTest() throws ExecutionException, InterruptedException, ServletException {
+        broadcaster.removeAtmosphereResource(ar);
+
+        broadcaster.broadcast("e1").get();
+        broadcaster.broadcast("e2").get();
+
+        // An id received before a restart can't be compared with the current ones, everything is replayed.
+        String id = BroadcastMessage.idOf("0", 5000);
+        List<Object> missed = broadcasterCache.retrieveFromCache(broadcaster.getID(), ar.uuid(), id);
+        assertEquals(missed.size(), 2);
+    }
+
     @Test
     public void concurrentCache() throws ExecutionException, InterruptedException, ServletException {
         final CountDownLatch latch = new CountDownLatch(101);
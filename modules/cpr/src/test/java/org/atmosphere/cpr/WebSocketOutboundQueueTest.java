@@ -0,0 +1,230 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.cpr;
+
+import org.atmosphere.cache.BroadcastMessage;
+import org.atmosphere.websocket.WebSocket;
+import org.atmosphere.websocket.WebSocketOutboundQueue;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class WebSocketOutboundQueueTest {
+
+    private AtmosphereConfig config;
+    private WebSocket webSocket;
+    private AtmosphereRequest request;
+    private final List<Object> cached = new ArrayList<Object>();
+
+    @BeforeMethod
+    public void setUp() {
+        config = mock(AtmosphereConfig.class);
+        when(config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_HIGH_WATER_MARK, "1000")).thenReturn("2");
+        when(config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_LOW_WATER_MARK, "1")).thenReturn("1");
+        when(config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_COALESCING, false)).thenReturn(true);
+        when(config.getInitParameter(ApplicationConfig.WEBSOCKET_OUTBOUND_OVERFLOW_POLICY)).thenReturn("DROP");
+
+        webSocket = new WebSocket(config) {
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public WebSocket write(String s) throws IOException {
+                return this;
+            }
+
+            @Override
+            public WebSocket write(byte[] b, int offset, int length) throws IOException {
+                return this;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        cached.clear();
+        BroadcasterCache cache = mock(BroadcasterCache.class);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                cached.add(((BroadcastMessage) invocation.getArguments()[2]).message);
+                return null;
+            }
+        }).when(cache).addToCache(anyString(), anyString(), any(BroadcastMessage.class));
+        BroadcasterConfig bc = mock(BroadcasterConfig.class);
+        when(bc.getBroadcasterCache()).thenReturn(cache);
+        Broadcaster b = mock(Broadcaster.class);
+        when(b.getID()).thenReturn("/b");
+        when(b.getBroadcasterConfig()).thenReturn(bc);
+        request = mock(AtmosphereRequest.class);
+        AtmosphereResourceImpl r = mock(AtmosphereResourceImpl.class);
+        when(r.uuid()).thenReturn("uuid");
+        when(r.getBroadcaster()).thenReturn(b);
+        when(r.getRequest(false)).thenReturn(request);
+        webSocket.resource(r);
+    }
+
+    private void writing(Object message) {
+        when(request.asyncToken()).thenReturn(new DefaultBroadcaster.AsyncWriteToken(webSocket.resource(), message, null, message));
+    }
+
+    @Test
+    public void testWaterMarks() {
+        final List<Object> sent = new ArrayList<Object>();
+        WebSocketOutboundQueue q = new WebSocketOutboundQueue(webSocket, config) {
+            @Override
+            protected boolean send(Object frame) {
+                sent.add(frame);
+                return true;
+            }
+        };
+
+        q.offer("a");
+        q.offer("b");
+        q.offer("c");
+        // Two frames are pending, hence this one is dropped.
+        q.offer("d");
+        assertEquals(sent, Arrays.asList("a"));
+        assertEquals(q.pending(), 2);
+
+        // The pending text frames are coalesced.
+        q.sent("a", true);
+        assertEquals(sent, Arrays.asList("a", "bc"));
+        assertEquals(q.pending(), 0);
+
+        q.offer("e");
+        assertEquals(sent, Arrays.asList("a", "bc"));
+        q.sent("bc", true);
+        assertEquals(sent, Arrays.asList("a", "bc", "e"));
+    }
+
+    @Test
+    public void testWritableOnceDrained() {
+        WebSocketOutboundQueue q = new WebSocketOutboundQueue(webSocket, config) {
+            @Override
+            protected boolean send(Object frame) {
+                return true;
+            }
+        };
+
+        q.offer("a");
+        q.offer("b");
+        q.offer("c");
+        q.offer("d");
+        assertFalse(q.isWritable());
+
+        // Draining the queue without polling it doesn't leave it overflowed.
+        q.clear();
+        assertTrue(q.isWritable());
+        q.offer("e");
+        assertEquals(q.pending(), 1);
+    }
+
+    @Test
+    public void testSynchronousCompletion() {
+        final List<Object> sent = new ArrayList<Object>();
+        WebSocketOutboundQueue q = new WebSocketOutboundQueue(webSocket, config) {
+            @Override
+            protected boolean send(Object frame) {
+                sent.add(frame);
+                sent(frame, true);
+                return true;
+            }
+        };
+
+        for (int i = 0; i < 5; i++) {
+            q.offer(String.valueOf(i));
+        }
+        assertEquals(sent, Arrays.asList("0", "1", "2", "3", "4"));
+        assertEquals(q.pending(), 0);
+    }
+
+    @Test
+    public void testCacheOriginalMessage() {
+        final List<Object> sent = new ArrayList<Object>();
+        WebSocketOutboundQueue q = new WebSocketOutboundQueue(webSocket, config) {
+            @Override
+            protected boolean send(Object frame) {
+                sent.add(frame);
+                return true;
+            }
+        };
+
+        writing("a");
+        q.offer("3|a");
+        writing("b");
+        q.offer("3|b");
+        writing("c");
+        q.offer("3|c");
+        assertEquals(sent, Arrays.asList("3|a"));
+
+        // The failed frames are cached as they were broadcasted, not as they were framed.
+        q.sent("3|a", false);
+        assertEquals(cached, Arrays.<Object>asList("a"));
+        assertEquals(sent, Arrays.asList("3|a", "3|b3|c"));
+        q.sent("3|b3|c", false);
+        assertEquals(cached, Arrays.<Object>asList("a", "b", "c"));
+    }
+
+    @Test
+    public void testCacheMessageWrittenAsSeveralFrames() {
+        WebSocketOutboundQueue q = new WebSocketOutboundQueue(webSocket, config) {
+            @Override
+            protected boolean send(Object frame) {
+                return false;
+            }
+        };
+
+        writing("a");
+        q.offer("<a>");
+        q.offer("</a>");
+        assertEquals(cached, Arrays.<Object>asList("a"));
+    }
+
+    @Test
+    public void testCacheByteBufferFrame() {
+        WebSocketOutboundQueue q = new WebSocketOutboundQueue(webSocket, config) {
+            @Override
+            protected boolean send(Object frame) {
+                return false;
+            }
+        };
+
+        // Not written by a Broadcaster, hence the frame is cached.
+        q.offer(ByteBuffer.wrap("xxabcxx".getBytes(), 2, 3));
+        assertEquals(cached.size(), 1);
+        assertEquals(new String((byte[]) cached.get(0)), "abc");
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.interceptor;
+
+import org.atmosphere.cpr.ApplicationConfig;
+import org.atmosphere.cpr.AtmosphereConfig;
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.HeaderConfig;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BroadcastOnPostAtmosphereInterceptorTest {
+
+    private Broadcaster broadcaster;
+    private AtmosphereConfig config;
+
+    @BeforeMethod
+    public void create() {
+        broadcaster = mock(Broadcaster.class);
+        config = mock(AtmosphereConfig.class);
+    }
+
+    private AtmosphereResource resource(String contentType, byte[] body) {
+        AtmosphereRequest request = new AtmosphereRequest.Builder().method("POST").contentType(contentType)
+                .inputStream(new ByteArrayInputStream(body)).build();
+        AtmosphereResource r = mock(AtmosphereResource.class);
+        when(r.getRequest()).thenReturn(request);
+        when(r.getBroadcaster()).thenReturn(broadcaster);
+        when(r.getAtmosphereConfig()).thenReturn(config);
+        return r;
+    }
+
+    private String json(int entries) {
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < entries; i++) {
+            b.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"name\":\"entry ").append(i).append("\"}");
+        }
+        return b.append("]").toString();
+    }
+
+    @Test
+    public void testBodyBroadcastedOnce() {
+        // Larger than the read buffer.
+        String body = json(1000);
+
+        new BroadcastOnPostAtmosphereInterceptor().postInspect(resource("application/json", body.getBytes()));
+        verify(broadcaster, times(1)).broadcast(any());
+        verify(broadcaster).broadcast(body);
+    }
+
+    @Test
+    public void testBodyTooLarge() {
+        when(config.getInitParameter(ApplicationConfig.MAX_REQUEST_BODY_SIZE)).thenReturn("8192");
+
+        new BroadcastOnPostAtmosphereInterceptor().postInspect(resource("application/json", json(1000).getBytes()));
+        verify(broadcaster, never()).broadcast(any());
+    }
+
+    @Test
+    public void testBinaryBodyTooLarge() {
+        when(config.getInitParameter(ApplicationConfig.MAX_REQUEST_BODY_SIZE)).thenReturn("8");
+
+        new BroadcastOnPostAtmosphereInterceptor().postInspect(resource(HeaderConfig.FORCE_BINARY, new byte[16]));
+        verify(broadcaster, never()).broadcast(any());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.interceptor;
+
+import org.atmosphere.cpr.AsyncIOInterceptorAdapter;
+import org.atmosphere.cpr.AtmosphereFramework;
+import org.atmosphere.cpr.AtmosphereInterceptorWriter;
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.AtmosphereResourceImpl;
+import org.atmosphere.cpr.AtmosphereResponse;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class SSEAtmosphereInterceptorTest {
+
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private AtmosphereRequest request;
+    private AtmosphereResponse response;
+    private AtmosphereInterceptorWriter writer;
+
+    @BeforeMethod
+    public void create() throws Throwable {
+        written.reset();
+        request = AtmosphereRequest.newInstance();
+        writer = new AtmosphereInterceptorWriter() {
+            @Override
+            protected void writeReady(AtmosphereResponse response, byte[] responseDraft) throws IOException {
+                written.write(responseDraft);
+            }
+        };
+
+        // The framing written around a payload transformed by another interceptor bypasses the AsyncIOWriter.
+        response = mock(AtmosphereResponse.class);
+        when(response.request()).thenReturn(request);
+        when(response.getAsyncIOWriter()).thenReturn(writer);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                written.write(((String) invocation.getArguments()[0]).getBytes());
+                return response;
+            }
+        }).when(response).write(anyString(), eq(true));
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                written.write((byte[]) invocation.getArguments()[0]);
+                return response;
+            }
+        }).when(response).write(any(byte[].class), eq(true));
+
+        AtmosphereResourceImpl r = mock(AtmosphereResourceImpl.class);
+        when(r.getRequest()).thenReturn(request);
+        when(r.getRequest(false)).thenReturn(request);
+        when(r.getResponse()).thenReturn(response);
+        when(r.transport()).thenReturn(AtmosphereResource.TRANSPORT.SSE);
+        when(r.isSuspended()).thenReturn(true);
+
+        SSEAtmosphereInterceptor sse = new SSEAtmosphereInterceptor();
+        sse.configure(new AtmosphereFramework().getAtmosphereConfig());
+        sse.inspect(r);
+    }
+
+    @Test
+    public void testSingleLine() throws IOException {
+        writer.write(response, "hello".getBytes());
+        assertEquals(written.toString(), "data:hello\r\n\r\n");
+    }
+
+    @Test
+    public void testMultiLine() throws IOException {
+        writer.write(response, "a\nb\r\nc\n".getBytes());
+        assertEquals(written.toString(), "data:a\r\ndata:b\r\ndata:c\r\n\r\n");
+    }
+
+    @Test
+    public void testId() throws IOException {
+        request.messageId("42");
+        writer.write(response, "a\nb".getBytes());
+        assertEquals(written.toString(), "id: 42\r\ndata:a\r\ndata:b\r\n\r\n");
+
+        // The id belongs to a single event.
+        written.reset();
+        writer.write(response, "c".getBytes());
+        assertEquals(written.toString(), "data:c\r\n\r\n");
+    }
+
+    @Test
+    public void testChaining() throws IOException {
+        writer.interceptor(new AsyncIOInterceptorAdapter() {
+            @Override
+            public byte[] transformPayload(AtmosphereResponse response, byte[] responseDraft, byte[] data) throws IOException {
+                return new String(responseDraft).toUpperCase().getBytes();
+            }
+        });
+        writer.write(response, "hello".getBytes());
+        assertEquals(written.toString(), "data:HELLO\r\n\r\n");
+    }
+}
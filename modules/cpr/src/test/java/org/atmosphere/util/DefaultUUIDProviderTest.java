@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util;
+
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class DefaultUUIDProviderTest {
+
+    @Test
+    public void testUuidFormat() {
+        String s = new DefaultUUIDProvider().generateUuid();
+        UUID uuid = UUID.fromString(s);
+
+        assertEquals(uuid.toString(), s);
+        assertEquals(uuid.version(), 4);
+        assertEquals(uuid.variant(), 2);
+    }
+
+    @Test
+    public void testUniqueness() {
+        UUIDProvider p = new DefaultUUIDProvider();
+        Set<String> ids = new HashSet<String>();
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(ids.add(p.generateUuid()));
+        }
+    }
+
+    @Test
+    public void testFastUuidFormat() {
+        String s = new FastUUIDProvider().generateUuid();
+        UUID uuid = UUID.fromString(s);
+
+        assertEquals(uuid.toString(), s);
+        assertEquals(uuid.version(), 4);
+        assertEquals(uuid.variant(), 2);
+    }
+}
@@ -15,9 +15,19 @@
  */
 package org.atmosphere.util;
 
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.atmosphere.cpr.AtmosphereResource;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
 
 /**
  * Created by Romain on 17/03/14.
@@ -42,4 +52,61 @@ public class IOUtilsTest {
         assertEquals(testCleanedPath, "/com.zyxabc.abc.Abc/gwtCometEvent");
     }
 
+    @Test
+    public void testReadInChunks() throws IOException {
+        AtmosphereResource r = resource("0123456789");
+        final List<Object> chunks = new ArrayList<Object>();
+
+        long length = IOUtils.readInChunks(r, 4, -1, new IOUtils.BodyChunkHandler() {
+            @Override
+            public void onChunk(Object chunk) {
+                chunks.add(chunk);
+            }
+        });
+
+        assertEquals(length, 10);
+        assertEquals(chunks.size(), 3);
+        assertEquals(chunks.get(0), "0123");
+        assertEquals(chunks.get(1), "4567");
+        assertEquals(chunks.get(2), "89");
+    }
+
+    @Test
+    public void testMaxBodySize() throws IOException {
+        try {
+            IOUtils.readInChunks(resource("0123456789"), 4, 8, new IOUtils.BodyChunkHandler() {
+                @Override
+                public void onChunk(Object chunk) {
+                }
+            });
+            fail();
+        } catch (IOUtils.BodyTooLargeException ex) {
+        }
+    }
+
+    @Test
+    public void testMaxBodySizeInBytes() throws IOException {
+        // Five characters, but ten bytes.
+        AtmosphereResource r = resource("\u00e9\u00e9\u00e9\u00e9\u00e9".getBytes("UTF-8"));
+        try {
+            IOUtils.readInChunks(r, 4, 8, new IOUtils.BodyChunkHandler() {
+                @Override
+                public void onChunk(Object chunk) {
+                }
+            });
+            fail();
+        } catch (IOUtils.BodyTooLargeException ex) {
+        }
+    }
+
+    private AtmosphereResource resource(String body) {
+        return resource(body.getBytes());
+    }
+
+    private AtmosphereResource resource(byte[] body) {
+        AtmosphereRequest request = new AtmosphereRequest.Builder().inputStream(new ByteArrayInputStream(body)).build();
+        AtmosphereResource r = mock(AtmosphereResource.class);
+        when(r.getRequest()).thenReturn(request);
+        return r;
+    }
 }
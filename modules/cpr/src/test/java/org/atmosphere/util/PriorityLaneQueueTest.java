@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class PriorityLaneQueueTest {
+
+    private static PriorityLaneQueue<String> queue() {
+        return new PriorityLaneQueue<String>(3) {
+            @Override
+            protected int lane(String s) {
+                return s.charAt(0) - '0';
+            }
+        };
+    }
+
+    @Test
+    public void testHigherLaneFirst() {
+        PriorityLaneQueue<String> q = queue();
+        q.offer("0a");
+        q.offer("1a");
+        q.offer("2a");
+        q.offer("0b");
+        q.offer("2b");
+
+        assertEquals(q.size(), 5);
+        assertEquals(q.peek(), "2a");
+        assertEquals(q.poll(), "2a");
+        assertEquals(q.poll(), "2b");
+        assertEquals(q.poll(), "1a");
+        assertEquals(q.poll(), "0a");
+        assertEquals(q.poll(), "0b");
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void testStarvationLimit() {
+        PriorityLaneQueue<String> q = queue().starvationLimit(2);
+        q.offer("0a");
+        q.offer("0b");
+        for (int i = 0; i < 6; i++) {
+            q.offer("2" + i);
+        }
+
+        List<String> l = new ArrayList<String>();
+        q.drainTo(l);
+        assertEquals(l.toString(), "[20, 21, 0a, 22, 23, 0b, 24, 25]");
+    }
+
+    @Test
+    public void testRemoveAndIterator() {
+        PriorityLaneQueue<String> q = queue();
+        q.offer("0a");
+        q.offer("1a");
+        q.offer("2a");
+
+        assertTrue(q.remove("1a"));
+        assertEquals(q.size(), 2);
+
+        Iterator<String> i = q.iterator();
+        assertEquals(i.next(), "2a");
+        i.remove();
+        assertEquals(i.next(), "0a");
+        assertEquals(q.size(), 1);
+        assertEquals(q.poll(), "0a");
+    }
+
+    @Test
+    public void testTake() throws InterruptedException {
+        final PriorityLaneQueue<String> q = queue();
+        assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                q.offer("1a");
+            }
+        }.start();
+        assertEquals(q.take(), "1a");
+    }
+}
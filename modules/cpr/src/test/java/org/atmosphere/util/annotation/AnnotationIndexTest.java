@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util.annotation;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class AnnotationIndexTest {
+
+    private File root(String content) throws IOException {
+        File root = File.createTempFile("atmosphere", "index");
+        root.delete();
+        File index = new File(root, AnnotationIndex.INDEX);
+        index.getParentFile().mkdirs();
+
+        FileOutputStream out = new FileOutputStream(index);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return root;
+    }
+
+    @Test
+    public void readIndex() throws IOException {
+        File root = root("# comment\n"
+                + "org.atmosphere.config.service.ManagedService org.foo.Chat\n"
+                + "org.atmosphere.config.service.ManagedService org.foo.Echo\n"
+                + "org.atmosphere.config.AtmosphereAnnotation org.foo.Processor\n");
+
+        Map<String, Set<String>> m = AnnotationIndex.read(new URLClassLoader(new URL[]{root.toURI().toURL()}, null));
+        assertEquals(m.size(), 2);
+        assertEquals(m.get("org.atmosphere.config.service.ManagedService").size(), 2);
+        assertTrue(m.get("org.atmosphere.config.AtmosphereAnnotation").contains("org.foo.Processor"));
+    }
+
+    @Test
+    public void noIndex() throws IOException {
+        assertTrue(AnnotationIndex.read(new URLClassLoader(new URL[0], null)).isEmpty());
+        assertTrue(AnnotationIndex.readByRoot(new URLClassLoader(new URL[0], null)).isEmpty());
+    }
+
+    @Test
+    public void readIndexByRoot() throws IOException {
+        File app = root("org.atmosphere.config.service.ManagedService org.foo.Chat\n");
+        File library = root("org.atmosphere.config.service.ManagedService org.bar.Echo\n");
+        File unindexed = File.createTempFile("atmosphere", "classes");
+        unindexed.delete();
+        unindexed.mkdirs();
+
+        Map<File, Map<String, Set<String>>> m = AnnotationIndex.readByRoot(new URLClassLoader(new URL[]{
+                app.toURI().toURL(), library.toURI().toURL(), unindexed.toURI().toURL()}, null));
+        assertEquals(m.size(), 2);
+        assertEquals(m.get(app.getCanonicalFile()).get("org.atmosphere.config.service.ManagedService"), Collections.singleton("org.foo.Chat"));
+        assertEquals(m.get(library.getCanonicalFile()).get("org.atmosphere.config.service.ManagedService"), Collections.singleton("org.bar.Echo"));
+        assertFalse(m.containsKey(unindexed.getCanonicalFile()));
+    }
+
+    @Test
+    public void root() throws IOException {
+        File jar = new File("/tmp/app.jar").getCanonicalFile();
+        assertEquals(AnnotationIndex.root(new URL("jar:" + jar.toURI() + "!/" + AnnotationIndex.INDEX)), jar);
+
+        File dir = new File("/tmp/classes").getCanonicalFile();
+        assertEquals(AnnotationIndex.root(new URL(dir.toURI() + "/" + AnnotationIndex.INDEX)), dir);
+
+        assertNull(AnnotationIndex.root(new URL("http://localhost/" + AnnotationIndex.INDEX)));
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2014 Jean-Francois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.util.cluster;
+
+import org.atmosphere.container.BlockingIOCometSupport;
+import org.atmosphere.cpr.AsyncIOWriter;
+import org.atmosphere.cpr.AsyncIOWriterAdapter;
+import org.atmosphere.cpr.AtmosphereConfig;
+import org.atmosphere.cpr.AtmosphereFramework;
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.AtmosphereResourceImpl;
+import org.atmosphere.cpr.AtmosphereResponse;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.DefaultBroadcasterFactory;
+import org.atmosphere.handler.AbstractReflectorAtmosphereHandler;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ClusterBroadcasterTest {
+
+    private AtmosphereFramework a;
+    private AtmosphereFramework b;
+    private NIOClusterTransport ta;
+    private NIOClusterTransport tb;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ta = new NIOClusterTransport().local(new InetSocketAddress("127.0.0.1", 0));
+        tb = new NIOClusterTransport().local(new InetSocketAddress("127.0.0.1", 0));
+        a = node(ta);
+        b = node(tb);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        a.destroy();
+        b.destroy();
+    }
+
+    private AtmosphereFramework node(NIOClusterTransport t) throws Exception {
+        AtmosphereFramework f = new AtmosphereFramework();
+        f.getAtmosphereConfig().properties().put(ClusterTransport.class.getName(), t);
+        DefaultBroadcasterFactory.buildAndReplaceDefaultfactory(ClusterBroadcaster.class, f.getAtmosphereConfig());
+        return f;
+    }
+
+    private List<Object> subscribe(AtmosphereConfig config, Broadcaster broadcaster, final CountDownLatch latch) {
+        final List<Object> messages = new CopyOnWriteArrayList<Object>();
+        AtmosphereResponse response = AtmosphereResponse.newInstance();
+        response.asyncIOWriter(new AsyncIOWriterAdapter() {
+            @Override
+            public AsyncIOWriter write(AtmosphereResponse r, byte[] data) throws IOException {
+                messages.add(new String(data));
+                latch.countDown();
+                return this;
+            }
+        });
+        broadcaster.addAtmosphereResource(new AtmosphereResourceImpl(config,
+                broadcaster,
+                mock(AtmosphereRequest.class),
+                response,
+                mock(BlockingIOCometSupport.class),
+                new AbstractReflectorAtmosphereHandler() {
+                    @Override
+                    public void onRequest(AtmosphereResource resource) throws IOException {
+                    }
+                }));
+        return messages;
+    }
+
+    @Test
+    public void testCrossNodeBroadcast() throws Exception {
+        Broadcaster ba = a.getBroadcasterFactory().get(ClusterBroadcaster.class, "/cluster");
+        Broadcaster bb = b.getBroadcasterFactory().get(ClusterBroadcaster.class, "/cluster");
+        ta.peers(Collections.singletonList(tb.localAddress()));
+        tb.peers(Collections.singletonList(ta.localAddress()));
+
+        CountDownLatch local = new CountDownLatch(100);
+        CountDownLatch remote = new CountDownLatch(100);
+        List<Object> onA = subscribe(a.getAtmosphereConfig(), ba, local);
+        List<Object> onB = subscribe(b.getAtmosphereConfig(), bb, remote);
+
+        for (int i = 0; i < 100; i++) {
+            ba.broadcast("message-" + i);
+        }
+
+        assertTrue(remote.await(10, TimeUnit.SECONDS));
+        assertTrue(local.await(10, TimeUnit.SECONDS));
+        // Messages sent by a node aren't delivered twice to its own clients.
+        Thread.sleep(100);
+        assertEquals(onA.size(), 100);
+        assertEquals(onB.size(), 100);
+        assertTrue(onB.contains("message-99"));
+    }
+
+    @Test
+    public void testDuplicatedMessages() throws Exception {
+        Broadcaster bb = b.getBroadcasterFactory().get(ClusterBroadcaster.class, "/cluster");
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Object> onB = subscribe(b.getAtmosphereConfig(), bb, latch);
+
+        ClusterNode na = ClusterNode.get(a.getAtmosphereConfig());
+        ClusterNode nb = ClusterNode.get(b.getAtmosphereConfig());
+        byte[] message = na.encode("/cluster", "once");
+        nb.onMessage(message);
+        nb.onMessage(message);
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(onB.size(), 1);
+        assertEquals(onB.get(0), "once");
+    }
+
+    private NIOClusterTransport listen(NIOClusterTransport t, final List<byte[]> received) throws IOException {
+        t.start(new ClusterTransport.Receiver() {
+            @Override
+            public void onMessage(byte[] message) {
+                received.add(message);
+            }
+        });
+        return t;
+    }
+
+    private static Socket connect(NIOClusterTransport t) throws IOException {
+        Socket s = new Socket(t.localAddress().getAddress(), t.localAddress().getPort());
+        s.setSoTimeout(10000);
+        return s;
+    }
+
+    private static void frame(Socket s, byte[] message) throws IOException {
+        DataOutputStream out = new DataOutputStream(s.getOutputStream());
+        out.writeInt(4 + 4 + message.length);
+        out.writeInt(1);
+        out.writeInt(message.length);
+        out.write(message);
+        out.flush();
+    }
+
+    private static boolean closed(Socket s) throws IOException {
+        try {
+            return s.getInputStream().read() == -1;
+        } catch (SocketTimeoutException ex) {
+            return false;
+        } catch (IOException ex) {
+            // Reset by the transport.
+            return true;
+        }
+    }
+
+    @Test
+    public void testUnknownPeerRejected() throws Exception {
+        List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+        NIOClusterTransport t = listen(new NIOClusterTransport()
+                .local(new InetSocketAddress("127.0.0.1", 0))
+                .peers(Collections.singletonList(new InetSocketAddress("127.0.0.2", 7070))), received);
+        Socket s = connect(t);
+        try {
+            frame(s, "intruder".getBytes());
+            assertTrue(closed(s));
+            assertTrue(received.isEmpty());
+        } finally {
+            s.close();
+            t.destroy();
+        }
+    }
+
+    @Test
+    public void testUnreachablePeer() throws Exception {
+        ServerSocket free = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        int port = free.getLocalPort();
+        free.close();
+
+        NIOClusterTransport t = listen(new NIOClusterTransport()
+                .local(new InetSocketAddress("127.0.0.1", 0))
+                .peers(Collections.singletonList(new InetSocketAddress("127.0.0.1", port)))
+                .maxPending(10)
+                .connectTimeout(1000), new CopyOnWriteArrayList<byte[]>());
+        try {
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < 10000; i++) {
+                t.send("message".getBytes());
+            }
+            // Messages are dropped instead of piling up while the peer is down.
+            assertTrue(t.pending() <= 10);
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        } finally {
+            t.destroy();
+        }
+    }
+
+    @Test
+    public void testFrameLimits() throws Exception {
+        List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+        NIOClusterTransport t = listen(new NIOClusterTransport()
+                .local(new InetSocketAddress("127.0.0.1", 0))
+                .peers(Collections.singletonList(new InetSocketAddress("127.0.0.1", 7070)))
+                .batchSize(2)
+                .maxMessageSize(32 * 1024), received);
+        Socket s = connect(t);
+        try {
+            // Larger than the initial read buffer.
+            byte[] large = new byte[20000];
+            Arrays.fill(large, (byte) 'a');
+            frame(s, large);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (received.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(received.size(), 1);
+            assertTrue(Arrays.equals(received.get(0), large));
+
+            // Above batchSize messages of maxMessageSize bytes.
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            out.writeInt(1 << 30);
+            out.flush();
+            assertTrue(closed(s));
+            assertEquals(received.size(), 1);
+        } finally {
+            s.close();
+            t.destroy();
+        }
+    }
+}
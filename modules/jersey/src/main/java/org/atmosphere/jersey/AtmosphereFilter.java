@@ -686,7 +686,7 @@ public class AtmosphereFilter implements ResourceFilterFactory {
                     try {
                         String id = servletReq.getHeader(X_ATMOSPHERE_TRACKING_ID);
                         if (id == null) {
-                            id = UUID.randomUUID().toString();
+                            id = r.getAtmosphereConfig().uuidProvider().generateUuid();
                         }
 
                         bc = broadcasterFactory.get(id);
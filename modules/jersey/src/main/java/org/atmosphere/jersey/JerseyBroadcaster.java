@@ -31,11 +31,13 @@ import org.atmosphere.jersey.util.JerseyBroadcasterUtil;
  */
 public class JerseyBroadcaster extends DefaultBroadcaster {
 
+    private final JerseyBroadcasterUtil.EntityCache entities = new JerseyBroadcasterUtil.EntityCache();
+
     public JerseyBroadcaster() {}
 
     @Override
     protected void invokeOnStateChange(final AtmosphereResource r, final AtmosphereResourceEvent e) {
-        JerseyBroadcasterUtil.broadcast(r, e, this);
+        JerseyBroadcasterUtil.broadcast(r, e, this, entities);
     }
 
 }
@@ -15,6 +15,8 @@
  */
 package org.atmosphere.jersey.util;
 
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.spi.MessageBodyWorkers;
 import com.sun.jersey.spi.container.ContainerResponse;
 import org.atmosphere.cpr.ApplicationConfig;
 import org.atmosphere.cpr.AtmosphereRequest;
@@ -29,11 +31,21 @@ import org.atmosphere.jersey.AtmosphereFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Simple util class shared among Jersey's Broadcaster.
@@ -43,8 +55,23 @@ import java.util.concurrent.ConcurrentHashMap;
 public final class JerseyBroadcasterUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(JerseyBroadcasterUtil.class);
+    private static final Annotation[] EMPTY_ANNOTATIONS = new Annotation[0];
 
     public final static void broadcast(final AtmosphereResource r, final AtmosphereResourceEvent e, final Broadcaster broadcaster) {
+        broadcast(r, e, broadcaster, null);
+    }
+
+    /**
+     * Write a broadcasted message to the {@link ContainerResponse} of an {@link AtmosphereResource}.
+     *
+     * @param r           the {@link AtmosphereResource}
+     * @param e           the {@link AtmosphereResourceEvent}
+     * @param broadcaster the {@link Broadcaster}
+     * @param entities    the messages already serialized by the {@link Broadcaster}, or null to always invoke the
+     *                    {@link MessageBodyWriter}
+     */
+    public final static void broadcast(final AtmosphereResource r, final AtmosphereResourceEvent e, final Broadcaster broadcaster,
+                                       final EntityCache entities) {
         AtmosphereRequest request = r.getRequest();
         ContainerResponse cr = null;
 
@@ -70,6 +97,9 @@ public final class JerseyBroadcasterUtil {
 
         synchronized (cr) {
             try {
+                // The id shared by all the writes of this message, read before any interceptor consumes it.
+                String id = request.messageId();
+
                 // This is required when you change the response's type
                 String m = null;
 
@@ -101,8 +131,7 @@ public final class JerseyBroadcasterUtil {
                     }
                 } else if (e.getMessage() instanceof List) {
                     for (Object msg : (List<Object>) e.getMessage()) {
-                        cr.setResponse(Response.ok(msg).build());
-                        cr.getHttpHeaders().add(HttpHeaders.CONTENT_TYPE, m);
+                        setEntity(cr, msg, m, id, entities);
                         cr.write();
                     }
 
@@ -118,8 +147,7 @@ public final class JerseyBroadcasterUtil {
                         return;
                     }
 
-                    cr.setResponse(Response.ok(e.getMessage()).build());
-                    cr.getHttpHeaders().add(HttpHeaders.CONTENT_TYPE, m);
+                    setEntity(cr, e.getMessage(), m, id, entities);
                     cr.write();
                     try {
                         cr.getOutputStream().flush();
@@ -167,6 +195,99 @@ public final class JerseyBroadcasterUtil {
         }
     }
 
+    private static void setEntity(ContainerResponse cr, Object msg, String mediaType, String id, EntityCache entities) throws IOException {
+        SerializedEntity entity = serialize(cr, msg, mediaType, id, entities);
+        cr.setResponse(Response.ok(entity != null ? entity.bytes : msg).build());
+        cr.getHttpHeaders().add(HttpHeaders.CONTENT_TYPE, mediaType);
+        if (entity != null) {
+            // The headers set by the MessageBodyWriter, as if it had written to this response.
+            for (Map.Entry<String, List<Object>> h : entity.headers.entrySet()) {
+                cr.getHttpHeaders().put(h.getKey(), new ArrayList<Object>(h.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Serialize a broadcasted message using the {@link MessageBodyWriter} associated with the media type. Since the
+     * same message is written to every suspended {@link ContainerResponse}, the serialized bytes are kept and reused
+     * for all responses of the {@link Broadcaster} sharing the same media type and resource method annotations,
+     * instead of invoking the {@link MessageBodyWriter} once per {@link AtmosphereResource}. The message id is part
+     * of the key so a mutable message broadcasted twice is serialized again.
+     *
+     * @param cr        the {@link ContainerResponse}
+     * @param msg       the broadcasted message
+     * @param mediaType the media type the message is written with
+     * @param id        the id of the broadcast, see {@link AtmosphereRequest#messageId()}, or null
+     * @param entities  the messages already serialized by the {@link Broadcaster}, or null
+     * @return the serialized message, or null if it can't be serialized ahead of time.
+     */
+    static SerializedEntity serialize(ContainerResponse cr, Object msg, String mediaType, String id, EntityCache entities) throws IOException {
+        if (entities == null || id == null || msg == null || msg instanceof byte[]) return null;
+
+        Object entity = msg;
+        Class<?> rawType = msg.getClass();
+        Type genericType = rawType;
+        if (msg instanceof GenericEntity) {
+            GenericEntity<?> g = (GenericEntity<?>) msg;
+            entity = g.getEntity();
+            rawType = g.getRawType();
+            genericType = g.getType();
+        }
+        Annotation[] annotations = cr.getAnnotations() != null ? cr.getAnnotations() : EMPTY_ANNOTATIONS;
+
+        int slot = ((System.identityHashCode(msg) * 31 + id.hashCode()) * 31 + mediaType.hashCode()) & (entities.slots.length() - 1);
+        SerializedEntity s = entities.slots.get(slot);
+        if (s != null && s.message == msg && s.id.equals(id) && s.mediaType.equals(mediaType)
+                && s.genericType.equals(genericType) && Arrays.equals(s.annotations, annotations)) {
+            return s;
+        }
+
+        MessageBodyWorkers workers = cr.getContainerRequest().getMessageBodyWorkers();
+        MediaType type = MediaType.valueOf(mediaType);
+        MessageBodyWriter writer = workers.getMessageBodyWriter(rawType, genericType, annotations, type);
+        if (writer == null) {
+            // Let Jersey report the error.
+            return null;
+        }
+
+        OutBoundHeaders headers = new OutBoundHeaders();
+        headers.putSingle(HttpHeaders.CONTENT_TYPE, mediaType);
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        writer.writeTo(entity, rawType, genericType, annotations, type, headers, b);
+        s = new SerializedEntity(msg, id, mediaType, genericType, annotations, b.toByteArray(), headers);
+        entities.slots.set(slot, s);
+        return s;
+    }
+
+    /**
+     * The last messages serialized by a {@link Broadcaster}, indexed by message identity, id and media type.
+     */
+    public final static class EntityCache {
+        // Must be a power of two.
+        private final AtomicReferenceArray<SerializedEntity> slots = new AtomicReferenceArray<SerializedEntity>(16);
+    }
+
+    final static class SerializedEntity {
+        private final Object message;
+        private final String id;
+        private final String mediaType;
+        private final Type genericType;
+        private final Annotation[] annotations;
+        final byte[] bytes;
+        final OutBoundHeaders headers;
+
+        private SerializedEntity(Object message, String id, String mediaType, Type genericType, Annotation[] annotations,
+                                 byte[] bytes, OutBoundHeaders headers) {
+            this.message = message;
+            this.id = id;
+            this.mediaType = mediaType;
+            this.genericType = genericType;
+            this.annotations = annotations;
+            this.bytes = bytes;
+            this.headers = headers;
+        }
+    }
+
     final static void onException(Throwable t, AtmosphereResource r) {
         logger.trace("onException()", t);
         r.notifyListeners(new AtmosphereResourceEventImpl((AtmosphereResourceImpl) r, true, false));
@@ -27,8 +27,10 @@ import org.atmosphere.util.SimpleBroadcaster;
  */
 public class JerseySimpleBroadcaster extends SimpleBroadcaster {
 
+    private final JerseyBroadcasterUtil.EntityCache entities = new JerseyBroadcasterUtil.EntityCache();
+
     @Override
     protected void invokeOnStateChange(final AtmosphereResource r, final AtmosphereResourceEvent e) {
-        JerseyBroadcasterUtil.broadcast(r, e, this);
+        JerseyBroadcasterUtil.broadcast(r, e, this, entities);
     }
 }
\ No newline at end of file
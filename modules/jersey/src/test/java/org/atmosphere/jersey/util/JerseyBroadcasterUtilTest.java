@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Jeanfrancois Arcand
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.jersey.util;
+
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.spi.MessageBodyWorkers;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class JerseyBroadcasterUtilTest {
+
+    private final static String TYPE = "text/plain";
+
+    private final MessageBodyWriter<Object> writer = new MessageBodyWriter<Object>() {
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return true;
+        }
+
+        @Override
+        public long getSize(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+            httpHeaders.putSingle("X-Writer", type.getSimpleName());
+            entityStream.write((o + "|" + genericType + "|" + Arrays.toString(annotations) + "|" + mediaType).getBytes());
+        }
+    };
+
+    private ContainerResponse cr;
+    private Annotation[] annotations;
+
+    @Produces(TYPE)
+    public String resource() {
+        return "";
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        annotations = getClass().getMethod("resource").getAnnotations();
+
+        MessageBodyWorkers workers = mock(MessageBodyWorkers.class);
+        when(workers.getMessageBodyWriter(any(Class.class), any(Type.class), any(Annotation[].class), any(MediaType.class))).thenReturn(writer);
+        ContainerRequest request = mock(ContainerRequest.class);
+        when(request.getMessageBodyWorkers()).thenReturn(workers);
+        cr = mock(ContainerResponse.class);
+        when(cr.getContainerRequest()).thenReturn(request);
+        when(cr.getAnnotations()).thenReturn(annotations);
+    }
+
+    /**
+     * The bytes and headers ContainerResponse.write() would produce for the same entity.
+     */
+    private byte[] write(Object entity, Class<?> type, Type genericType, OutBoundHeaders headers) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        headers.putSingle("Content-Type", TYPE);
+        writer.writeTo(entity, type, genericType, annotations, MediaType.valueOf(TYPE), headers, b);
+        return b.toByteArray();
+    }
+
+    @Test
+    public void testSerializeLikeWrite() throws IOException {
+        OutBoundHeaders headers = new OutBoundHeaders();
+        byte[] expected = write("message", String.class, String.class, headers);
+
+        JerseyBroadcasterUtil.SerializedEntity entity = JerseyBroadcasterUtil.serialize(cr, "message", TYPE, "1", new JerseyBroadcasterUtil.EntityCache());
+        assertEquals(entity.bytes, expected);
+        assertEquals(entity.headers, headers);
+    }
+
+    @Test
+    public void testSerializeGenericEntity() throws IOException {
+        List<String> list = Arrays.asList("a", "b");
+        GenericEntity<List<String>> g = new GenericEntity<List<String>>(list) {};
+        OutBoundHeaders headers = new OutBoundHeaders();
+        byte[] expected = write(list, g.getRawType(), g.getType(), headers);
+
+        JerseyBroadcasterUtil.SerializedEntity entity = JerseyBroadcasterUtil.serialize(cr, g, TYPE, "1", new JerseyBroadcasterUtil.EntityCache());
+        assertEquals(entity.bytes, expected);
+        assertEquals(entity.headers, headers);
+    }
+
+    @Test
+    public void testSerializedOncePerBroadcaster() throws IOException {
+        JerseyBroadcasterUtil.EntityCache entities = new JerseyBroadcasterUtil.EntityCache();
+        Object message = "message";
+
+        JerseyBroadcasterUtil.SerializedEntity entity = JerseyBroadcasterUtil.serialize(cr, message, TYPE, "1", entities);
+        assertSame(JerseyBroadcasterUtil.serialize(cr, message, TYPE, "1", entities), entity);
+        // Another broadcast of the same instance
+        assertNotSame(JerseyBroadcasterUtil.serialize(cr, message, TYPE, "2", entities), entity);
+        // Another Broadcaster
+        assertNotSame(JerseyBroadcasterUtil.serialize(cr, message, TYPE, "1", new JerseyBroadcasterUtil.EntityCache()), entity);
+        // No id, or no cache
+        assertNull(JerseyBroadcasterUtil.serialize(cr, message, TYPE, null, entities));
+        assertNull(JerseyBroadcasterUtil.serialize(cr, message, TYPE, "1", null));
+    }
+}